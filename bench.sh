@@ -0,0 +1,9 @@
+#! /usr/bin/env bash
+
+# Name of the JAR file of the benchmarks, built with make bench
+BENCHJARFILE=dist/`grep '^BENCHJAR ' cc.properties | awk '{ print $3 }'`
+
+# Run the JMH benchmarks, all of them by default. The parameters are passed to JMH, for example
+# DataPointBenchmark -p schema=smartplug to run one class for one schema, or -h for all options.
+# The vector kernel of CentroidScanBenchmark needs make VECTOR=1 bench and -jvmArgsAppend --add-modules=jdk.incubator.vector
+java -cp "$BENCHJARFILE:$JMH_HOME/*:$HADOOP_HOME/*:$HADOOP_HOME/lib/*" org.openjdk.jmh.Main "$@"
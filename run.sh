@@ -1,19 +1,34 @@
 #! /usr/bin/env bash
 
 # Base folder for input and output files in HDFS
-BASEFOLDER=`grep 'BASEFOLDER' cc.properties | awk '{ print $3 }'`
+BASEFOLDER=`grep '^BASEFOLDER ' cc.properties | awk '{ print $3 }'`
 
 # Name of the JAR file to be run
-JARFILE=dist/`grep 'JARFILE' cc.properties | awk '{ print $3 }'`
+JARFILE=dist/`grep '^JARFILE ' cc.properties | awk '{ print $3 }'`
 
 # Input Data Set
-DATASET=$BASEFOLDER/input/`grep 'DATASETFILE' cc.properties | awk '{ print $3 }'`
+DATASET=$BASEFOLDER/input/`grep '^DATASETFILE ' cc.properties | awk '{ print $3 }'`
 
 # Inital file containing k-Means Centroids
-KCENTROIDSFILE=$BASEFOLDER/input/`grep 'CENTROIDSFILE' cc.properties | awk '{ print $3 }'`
+KCENTROIDSFILE=$BASEFOLDER/input/`grep '^CENTROIDSFILE ' cc.properties | awk '{ print $3 }'`
 
 # Package Prefix
-PKGPREFIX=`grep 'PKGPREFIX' cc.properties | awk '{ print $3 }'`
+PKGPREFIX=`grep '^PKGPREFIX ' cc.properties | awk '{ print $3 }'`
+
+# Schema and encoding of the Data Points, passed to every step
+SCHEMA="-D dataPointSchema=`grep '^DATAPOINTSCHEMA ' cc.properties | awk '{ print $3 }'` -D dataPointEncoding=`grep '^DATAPOINTENCODING ' cc.properties | awk '{ print $3 }'`"
+
+# Layout of the output of CanopyAssign, passed to every step reading it
+MEMBERSHIP="-D canopyMembership=`grep '^CANOPYMEMBERSHIP ' cc.properties | awk '{ print $3 }'`"
+
+# Number of bucket files of the assign steps, passed to both
+BUCKETS="-D assignBuckets=`grep '^ASSIGNBUCKETS ' cc.properties | awk '{ print $3 }'`"
+
+# Kernel of the distances, passed to the clustering steps. The Vector API kernel also needs its module in the JVM of the drivers
+KERNEL="-D distanceKernel=`grep '^DISTANCEKERNEL ' cc.properties | awk '{ print $3 }'`"
+if [ "$KERNEL" = "-D distanceKernel=vector" ]; then
+	export HADOOP_CLIENT_OPTS="$HADOOP_CLIENT_OPTS --add-modules=jdk.incubator.vector"
+fi
 
 # Output folders in HDFS
 CANOPYCENTERSFOLDER=$BASEFOLDER/output1
@@ -21,27 +36,33 @@ CANOPYASSIGNFOLDER=$BASEFOLDER/output2
 CLUSTERCENTERFOLDER=$BASEFOLDER/output3
 CLUSTERASSIGNFOLDER=$BASEFOLDER/output4
 
-# Output part files
+# Output part files. The assign steps write part files, or bucket files without reducers, so their folders are read instead
 CANOPYCENTERSFILE=$CANOPYCENTERSFOLDER/part-r-00000
-CANOPYASSIGNFILE=$CANOPYASSIGNFOLDER/part-r-00000
 CLUSTERCENTERFILE=$CLUSTERCENTERFOLDER/part-r-00000
-CLUSTERASSIGNFILE=$CLUSTERASSIGNFOLDER/part-r-00000
 
 # Clean the folder
 hadoop dfs -rmr $BASEFOLDER/output*
 
 # CanopyCenter 
 # Parameters: <Data Set> <Output Folder>
-hadoop jar $JARFILE $PKGPREFIX/`grep 'CANOPYCENTERDIR' cc.properties | awk '{ print $3 }'`.CanopyCenterDriver $DATASET $CANOPYCENTERSFOLDER
+hadoop jar $JARFILE $PKGPREFIX/`grep '^CANOPYCENTERDIR ' cc.properties | awk '{ print $3 }'`.CanopyCenterDriver $SCHEMA $DATASET $CANOPYCENTERSFOLDER
 
 # CanopyAssign
 # Parameters: <Data Set> <Canopy Centers File> <Output Folder>
-hadoop jar $JARFILE $PKGPREFIX/`grep 'CANOPYASSIGNDIR' cc.properties | awk '{ print $3 }'`.CanopyAssignDriver $DATASET $CANOPYCENTERSFILE $CANOPYASSIGNFOLDER
+hadoop jar $JARFILE $PKGPREFIX/`grep '^CANOPYASSIGNDIR ' cc.properties | awk '{ print $3 }'`.CanopyAssignDriver $SCHEMA $MEMBERSHIP $BUCKETS $DATASET $CANOPYCENTERSFILE $CANOPYASSIGNFOLDER
+
+# ClusterSeed, only if SEEDK is set, picks the initial k-Means Centroids instead of CENTROIDSFILE
+# Parameters: <Data Set> <Canopy Assign Folder> <Canopy Centers File> <k> <Output File>
+SEEDK=`grep '^SEEDK ' cc.properties | awk '{ print $3 }'`
+if [ -n "$SEEDK" ]; then
+	KCENTROIDSFILE=$BASEFOLDER/outputseed/centroids.txt
+	hadoop jar $JARFILE $PKGPREFIX/`grep '^CLUSTERSEEDDIR ' cc.properties | awk '{ print $3 }'`.ClusterSeedDriver $SCHEMA $MEMBERSHIP $KERNEL $DATASET $CANOPYASSIGNFOLDER $CANOPYCENTERSFILE $SEEDK $KCENTROIDSFILE
+fi
 
 # ClusterCenter
-# Parameters: <Canopy Assign File> <Canopy Centers File> <k-Means Centroids File> <Output Folder>
-time hadoop jar $JARFILE $PKGPREFIX/`grep 'CLUSTERCENTERDIR' cc.properties | awk '{ print $3 }'`.ClusterCenterDriver $CANOPYASSIGNFILE $CANOPYCENTERSFILE $KCENTROIDSFILE $CLUSTERCENTERFOLDER
+# Parameters: <Canopy Assign Folder> <Canopy Centers File> <k-Means Centroids File> <Output Folder>
+time hadoop jar $JARFILE $PKGPREFIX/`grep '^CLUSTERCENTERDIR ' cc.properties | awk '{ print $3 }'`.ClusterCenterDriver $SCHEMA $MEMBERSHIP $KERNEL $CANOPYASSIGNFOLDER $CANOPYCENTERSFILE $KCENTROIDSFILE $CLUSTERCENTERFOLDER
 
 # ClusterAssign
-# Parameters: <Data Set> <k-Means Centroids File> <Output File>
-hadoop jar $JARFILE $PKGPREFIX/`grep 'CLUSTERASSIGNDIR' cc.properties | awk '{ print $3 }'`.ClusterAssignDriver $DATASET $CLUSTERCENTERFILE $CLUSTERASSIGNFOLDER
+# Parameters: <Data Set> <k-Means Centroids Folder> <Output File>
+hadoop jar $JARFILE $PKGPREFIX/`grep '^CLUSTERASSIGNDIR ' cc.properties | awk '{ print $3 }'`.ClusterAssignDriver $SCHEMA $BUCKETS $KERNEL $DATASET $CLUSTERCENTERFOLDER $CLUSTERASSIGNFOLDER
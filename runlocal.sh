@@ -0,0 +1,26 @@
+#! /usr/bin/env bash
+
+# Local folder for output files
+LOCALBASEFOLDER=`grep '^LOCALBASEFOLDER ' cc.properties | awk '{ print $3 }'`
+
+# Name of the JAR file to be run
+JARFILE=dist/`grep '^JARFILE ' cc.properties | awk '{ print $3 }'`
+
+# Input Data Set
+DATASET=input/`grep '^DATASETFILE ' cc.properties | awk '{ print $3 }'`
+
+# Inital file containing k-Means Centroids
+KCENTROIDSFILE=input/`grep '^CENTROIDSFILE ' cc.properties | awk '{ print $3 }'`
+
+# Package Prefix
+PKGPREFIX=`grep '^PKGPREFIX ' cc.properties | awk '{ print $3 }'`
+
+# Schema of the Data Points
+DATAPOINTSCHEMA=`grep '^DATAPOINTSCHEMA ' cc.properties | awk '{ print $3 }'`
+
+# Clean the folder
+rm -rf $LOCALBASEFOLDER/output*
+
+# All steps in one JVM, writing output1, output3 and output4 into the base folder
+# Parameters: <Data Set> <k-Means Centroids File> <Output Folder> [Number of Threads]
+time java -DdataPointSchema=$DATAPOINTSCHEMA -cp "$JARFILE:$HADOOP_HOME/*" $PKGPREFIX.`grep '^LOCALENGINEDIR ' cc.properties | awk '{ print $3 }'`.LocalEngineDriver $DATASET $KCENTROIDSFILE $LOCALBASEFOLDER $@
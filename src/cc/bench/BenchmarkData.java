@@ -0,0 +1,140 @@
+package cc.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import cc.dataset.DataPoint;
+import cc.dataset.DataSchema;
+
+/**
+  * Random Data Points and Canopy Centers shared by the benchmarks.
+  * Every Data Point is generated as a text line of the configured schema, so the benchmarks also cover the parser:
+  * cheap columns are uniform over a spread chosen by the benchmark, other full columns over [0, FULL_SPREAD),
+  * and id columns take one of ID_VALUES values. Float columns have two decimals.
+  * Everything is seeded, so every run of a benchmark reads the same Data Points.
+  */
+public class BenchmarkData
+{
+	/**
+	  * Spread of the full columns that are not cheap, and of all full columns of the k-Means Centroids.
+	  */
+	public static final double FULL_SPREAD = 100;
+
+	/**
+	  * Number of distinct values of an id column.
+	  */
+	public static final int ID_VALUES = 10;
+
+	/**
+	  * Sets the schema of the Data Points.
+	  * Parameters:	String schema, the name of a predefined schema, or the schema written out
+	  * 			String encoding, DataSchema.FIXED or DataSchema.COMPACT
+	  * Returns:	the schema
+	  */
+	public static DataSchema configure(String schema, String encoding)
+	{
+		DataSchema dataSchema = DataSchema.create(schema, null, null, encoding);
+		DataPoint.setSchema(dataSchema);
+		return dataSchema;
+	}
+
+	/**
+	  * Returns the spread of the cheap columns over which a number of Canopy Centers fit at least T2 apart with room to spare,
+	  * so that canopyCenters finds them all.
+	  * Parameters:	int canopies, the number of Canopy Centers
+	  * Returns:	the spread
+	  */
+	public static double canopySpread(int canopies)
+	{
+		return 2 * canopies * DataPoint.simpleKeyRadius(DataPoint.getT2());
+	}
+
+	/**
+	  * Generates text lines of Data Points of the configured schema.
+	  * Parameters:	int count, the number of lines
+	  * 			double cheapSpread, the spread of the cheap columns
+	  * 			long seed, the seed of the random numbers
+	  * Returns:	the lines, without line ends
+	  */
+	public static String[] lines(int count, double cheapSpread, long seed)
+	{
+		DataSchema schema = DataPoint.getSchema();
+		boolean[] cheap = new boolean[schema.size()];
+		for(int c : schema.getCheapColumns())
+			cheap[c] = true;
+
+		Random random = new Random(seed);
+		String[] lines = new String[count];
+		StringBuilder builder = new StringBuilder();
+		for(int i = 0; i < count; i++)
+		{
+			builder.setLength(0);
+			for(int c = 0; c < schema.size(); c++)
+			{
+				if(c > 0)
+					builder.append(',');
+				if(schema.isId(c))
+					builder.append(random.nextInt(ID_VALUES));
+				else
+				{
+					double value = random.nextDouble() * (cheap[c] ? cheapSpread : FULL_SPREAD);
+					if(schema.isFloat(c))
+						builder.append(Math.round(value * 100) / 100.0f);
+					else
+						builder.append((int) value);
+				}
+			}
+			lines[i] = builder.toString();
+		}
+		return lines;
+	}
+
+	/**
+	  * Generates Data Points of the configured schema.
+	  * Parameters:	int count, the number of Data Points
+	  * 			double cheapSpread, the spread of the cheap columns
+	  * 			long seed, the seed of the random numbers
+	  * Returns:	the Data Points, parsed from the lines generated with the same arguments
+	  */
+	public static DataPoint[] points(int count, double cheapSpread, long seed)
+	{
+		String[] lines = lines(count, cheapSpread, seed);
+		DataPoint[] points = new DataPoint[count];
+		for(int i = 0; i < count; i++)
+			points[i] = new DataPoint(lines[i]);
+		return points;
+	}
+
+	/**
+	  * Picks Canopy Centers the way CanopyCenterMapper does: a random Data Point becomes a center if no center is within T2 of it.
+	  * Parameters:	int count, the number of Canopy Centers
+	  * 			double cheapSpread, the spread of the cheap columns, at least canopySpread(count)
+	  * 			long seed, the seed of the random numbers
+	  * Returns:	the Canopy Centers
+	  * Throws:		IllegalArgumentException, if the spread is too small for the Canopy Centers
+	  */
+	public static List<DataPoint> canopyCenters(int count, double cheapSpread, long seed)
+	{
+		List<DataPoint> centers = new ArrayList<DataPoint>();
+		Random random = new Random(seed);
+		for(int attempt = 0; centers.size() < count; attempt++)
+		{
+			if(attempt >= 1000 * count)
+				throw new IllegalArgumentException("Could not fit " + count + " Canopy Centers over a spread of " + cheapSpread);
+			DataPoint candidate = points(1, cheapSpread, random.nextLong())[0];
+			boolean covered = false;
+			for(DataPoint center : centers)
+			{
+				if(center.withinT2(candidate))
+				{
+					covered = true;
+					break;
+				}
+			}
+			if(!covered)
+				centers.add(candidate);
+		}
+		return centers;
+	}
+}
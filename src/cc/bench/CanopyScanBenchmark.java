@@ -0,0 +1,188 @@
+package cc.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cc.dataset.CanopyIndex;
+import cc.dataset.DataPoint;
+import cc.dataset.DataSchema;
+
+/**
+  * Benchmarks of the loops of the Canopy steps over the Canopy Centers, for every schema, kind of index and number of Canopies.
+  * The LINEAR kind checks every Canopy Center in turn, as the mappers did before the index.
+  * The Canopy Centers are picked at least T2 apart over the spread given by BenchmarkData.canopySpread,
+  * and the Data Points are spread over the same range, so a Data Point is within T1 of a few Canopy Centers at most.
+  * Every benchmark reports the time per Data Point.
+  */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CanopyScanBenchmark
+{
+	/**
+	  * Number of Data Points every benchmark runs over.
+	  */
+	public static final int POINTS = 1024;
+
+	/**
+	  * Kind of index scanning the list of Canopy Centers.
+	  */
+	public static final String LINEAR = "linear";
+
+	/**
+	  * Schema of the Data Points.
+	  */
+	@Param({DataSchema.TEMPERATURE, DataSchema.SMART_PLUG})
+	public String schema;
+
+	/**
+	  * Kind of index of the Canopy Centers.
+	  */
+	@Param({LINEAR, CanopyIndex.SORTED, CanopyIndex.GRID})
+	public String index;
+
+	/**
+	  * Number of Canopy Centers.
+	  */
+	@Param({"10", "100", "1000"})
+	public int canopies;
+
+	/**
+	  * The Data Points.
+	  */
+	private DataPoint[] points;
+
+	/**
+	  * The Canopy Centers, and their index unless the kind is LINEAR.
+	  */
+	private List<DataPoint> canopyCenters;
+	private CanopyIndex canopyIndex;
+
+	/**
+	  * List the Canopy Centers within T1 of a Data Point are found into.
+	  */
+	private List<DataPoint> matchingCenters;
+
+	/**
+	  * Picks the Canopy Centers and generates the Data Points.
+	  */
+	@Setup
+	public void setup()
+	{
+		BenchmarkData.configure(schema, DataSchema.FIXED);
+		double spread = BenchmarkData.canopySpread(canopies);
+		canopyCenters = BenchmarkData.canopyCenters(canopies, spread, 1);
+		points = BenchmarkData.points(POINTS, spread, 2);
+		if(!index.equals(LINEAR))
+			canopyIndex = CanopyIndex.create(index, canopyCenters);
+		matchingCenters = new ArrayList<DataPoint>();
+	}
+
+	/**
+	  * Checks if any Canopy Center is within T2 of every Data Point, the test of CanopyCenterMapper.
+	  */
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public int anyWithinT2()
+	{
+		int result = 0;
+		for(int i = 0; i < POINTS; i++)
+		{
+			if(canopyIndex == null ? linearAnyWithinT2(canopyCenters, points[i]) : canopyIndex.anyWithinT2(points[i]))
+				result++;
+		}
+		return result;
+	}
+
+	/**
+	  * Finds the Canopy Centers within T1 of every Data Point, the lookup of CanopyAssignMapper.
+	  */
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public int withinT1()
+	{
+		int result = 0;
+		for(int i = 0; i < POINTS; i++)
+		{
+			if(canopyIndex == null)
+				linearWithinT1(canopyCenters, points[i], matchingCenters);
+			else
+				canopyIndex.withinT1(points[i], matchingCenters);
+			result += matchingCenters.size();
+		}
+		return result;
+	}
+
+	/**
+	  * Runs the map loop of CanopyCenterMapper over the Data Points: starting without Canopy Centers,
+	  * every Data Point with no Canopy Center within T2 becomes one.
+	  */
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public int canopyCenterMapper()
+	{
+		List<DataPoint> centers = new ArrayList<DataPoint>();
+		CanopyIndex centerIndex = (index.equals(LINEAR) ? null : CanopyIndex.create(index));
+		for(int i = 0; i < POINTS; i++)
+		{
+			if(centerIndex == null)
+			{
+				if(!linearAnyWithinT2(centers, points[i]))
+					centers.add(points[i]);
+			}
+			else if(!centerIndex.anyWithinT2(points[i]))
+				centerIndex.add(points[i]);
+		}
+		return (centerIndex == null ? centers.size() : centerIndex.size());
+	}
+
+	/**
+	  * Checks if any Canopy Center of a list is within T2 of a Data Point, one center after the other.
+	  * Parameters:	List<DataPoint> centers, the Canopy Centers
+	  * 			DataPoint dataPoint, the Data Point
+	  * Returns:	true if a Canopy Center is within T2 distance, false otherwise
+	  */
+	private static boolean linearAnyWithinT2(List<DataPoint> centers, DataPoint dataPoint)
+	{
+		for(int i = 0; i < centers.size(); i++)
+		{
+			if(centers.get(i).withinT2(dataPoint))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	  * Finds the Canopy Centers of a list within T1 of a Data Point, one center after the other.
+	  * Parameters:	List<DataPoint> centers, the Canopy Centers
+	  * 			DataPoint dataPoint, the Data Point
+	  * 			List<DataPoint> result, list the Canopy Centers are added to. It is cleared first
+	  * Returns:	Nothing
+	  */
+	private static void linearWithinT1(List<DataPoint> centers, DataPoint dataPoint, List<DataPoint> result)
+	{
+		result.clear();
+		for(int i = 0; i < centers.size(); i++)
+		{
+			if(centers.get(i).withinT1(dataPoint))
+				result.add(centers.get(i));
+		}
+	}
+}
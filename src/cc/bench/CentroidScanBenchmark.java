@@ -0,0 +1,153 @@
+package cc.bench;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cc.dataset.CentroidTable;
+import cc.dataset.DataPoint;
+import cc.dataset.DataSchema;
+import cc.dataset.DistanceMetric;
+
+/**
+  * Benchmarks of the search of the nearest k-Means Centroid of the k-Means steps, for every schema and number of centroids.
+  * Compares the loop over complexDistance the mappers ran before CentroidTable with the table searching one Data Point at a time,
+  * as ClusterCenterMapper does, and a batch at a time, as ClusterAssignMapper does, with the Euclidean metric and every kernel.
+  * The vector kernel only differs from the scalar one when built with make VECTOR=1 bench and run with
+  * -jvmArgsAppend --add-modules=jdk.incubator.vector, otherwise the table falls back to the scalar kernel.
+  * Every benchmark reports the time per Data Point.
+  */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CentroidScanBenchmark
+{
+	/**
+	  * Number of Data Points every benchmark runs over, a multiple of CentroidTable.BATCH_SIZE.
+	  */
+	public static final int POINTS = 4 * CentroidTable.BATCH_SIZE;
+
+	/**
+	  * Schema of the Data Points.
+	  */
+	@Param({DataSchema.TEMPERATURE, DataSchema.SMART_PLUG})
+	public String schema;
+
+	/**
+	  * Number of k-Means Centroids.
+	  */
+	@Param({"10", "100", "1000"})
+	public int centroids;
+
+	/**
+	  * Kernel of the distances of the table.
+	  */
+	@Param({DistanceMetric.SCALAR, DistanceMetric.VECTOR})
+	public String kernel;
+
+	/**
+	  * The Data Points, also split into batches.
+	  */
+	private DataPoint[] points;
+	private DataPoint[][] batches;
+
+	/**
+	  * The k-Means Centroids, and their table.
+	  */
+	private DataPoint[] kCentroids;
+	private CentroidTable table;
+
+	/**
+	  * Offsets of the nearest centroids and ranks of their distances, filled for a batch.
+	  */
+	private int[] nearest;
+	private double[] nearestRanks;
+
+	/**
+	  * Generates the Data Points and the k-Means Centroids.
+	  */
+	@Setup
+	public void setup()
+	{
+		BenchmarkData.configure(schema, DataSchema.FIXED);
+		points = BenchmarkData.points(POINTS, BenchmarkData.FULL_SPREAD, 1);
+		batches = new DataPoint[POINTS / CentroidTable.BATCH_SIZE][];
+		for(int b = 0; b < batches.length; b++)
+			batches[b] = Arrays.copyOfRange(points, b * CentroidTable.BATCH_SIZE, (b + 1) * CentroidTable.BATCH_SIZE);
+		kCentroids = BenchmarkData.points(centroids, BenchmarkData.FULL_SPREAD, 2);
+		table = new CentroidTable(kCentroids, null, DistanceMetric.create(DistanceMetric.EUCLIDEAN, kernel));
+		nearest = new int[CentroidTable.BATCH_SIZE];
+		nearestRanks = new double[CentroidTable.BATCH_SIZE];
+	}
+
+	/**
+	  * Finds the nearest centroid of every Data Point by computing complexDistance to every centroid.
+	  */
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public int complexDistanceLoop()
+	{
+		int result = 0;
+		for(int i = 0; i < POINTS; i++)
+		{
+			int nearestOffset = -1;
+			double nearestDistance = Double.POSITIVE_INFINITY;
+			for(int j = 0; j < kCentroids.length; j++)
+			{
+				double distance = points[i].complexDistance(kCentroids[j]);
+				if(distance < nearestDistance)
+				{
+					nearestDistance = distance;
+					nearestOffset = j;
+				}
+			}
+			result += nearestOffset;
+		}
+		return result;
+	}
+
+	/**
+	  * Finds the nearest centroid of every Data Point with the table, one Data Point at a time.
+	  */
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public int centroidTable()
+	{
+		int result = 0;
+		for(int i = 0; i < POINTS; i++)
+			result += table.nearest(points[i]);
+		return result;
+	}
+
+	/**
+	  * Finds the nearest centroid of every Data Point with the table, one batch at a time.
+	  */
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public int centroidTableBatch()
+	{
+		int result = 0;
+		for(int b = 0; b < batches.length; b++)
+		{
+			table.nearest(batches[b], CentroidTable.BATCH_SIZE, nearest, nearestRanks);
+			for(int j = 0; j < CentroidTable.BATCH_SIZE; j++)
+				result += nearest[j];
+		}
+		return result;
+	}
+}
@@ -0,0 +1,274 @@
+package cc.bench;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import cc.dataset.DataPoint;
+import cc.dataset.DataPointSum;
+import cc.dataset.DataSchema;
+
+/**
+  * Benchmarks of the operations every step runs on single Data Points: parsing a text line, serializing and deserializing,
+  * comparing as objects and as bytes in the shuffle, the simple and complex distances, and averaging.
+  * Every benchmark runs over POINTS Data Points and reports the time per Data Point, for every schema and encoding.
+  * Distances and comparisons are taken between every Data Point and the next one.
+  */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataPointBenchmark
+{
+	/**
+	  * Number of Data Points every benchmark runs over, a power of two.
+	  */
+	public static final int POINTS = 1024;
+
+	/**
+	  * Schema of the Data Points.
+	  */
+	@Param({DataSchema.TEMPERATURE, DataSchema.SMART_PLUG})
+	public String schema;
+
+	/**
+	  * Encoding of the Data Points, which only changes the serialization and the byte comparison.
+	  */
+	@Param({DataSchema.FIXED, DataSchema.COMPACT})
+	public String encoding;
+
+	/**
+	  * The text lines of the Data Points, as UTF-8 bytes.
+	  */
+	private byte[][] lines;
+
+	/**
+	  * The Data Points, and a list of them.
+	  */
+	private DataPoint[] points;
+	private List<DataPoint> pointList;
+
+	/**
+	  * The serialized Data Points, and the offset of every one of them followed by the end.
+	  */
+	private byte[] serialized;
+	private int[] offsets;
+
+	/**
+	  * Reusable objects of the benchmarks.
+	  */
+	private DataPoint dataPoint, average;
+	private DataPointSum sum;
+	private DataOutputBuffer output;
+	private DataInputBuffer input;
+	private DataPoint.Comparator comparator;
+
+	/**
+	  * Generates and serializes the Data Points of the schema.
+	  */
+	@Setup
+	public void setup()
+		throws IOException
+	{
+		BenchmarkData.configure(schema, encoding);
+		String[] text = BenchmarkData.lines(POINTS, BenchmarkData.FULL_SPREAD, 1);
+		lines = new byte[POINTS][];
+		points = new DataPoint[POINTS];
+		for(int i = 0; i < POINTS; i++)
+		{
+			lines[i] = text[i].getBytes("UTF-8");
+			points[i] = new DataPoint(text[i]);
+		}
+		pointList = Arrays.asList(points);
+
+		output = new DataOutputBuffer();
+		offsets = new int[POINTS + 1];
+		for(int i = 0; i < POINTS; i++)
+		{
+			offsets[i] = output.getLength();
+			points[i].write(output);
+		}
+		offsets[POINTS] = output.getLength();
+		serialized = Arrays.copyOf(output.getData(), output.getLength());
+
+		dataPoint = new DataPoint();
+		average = new DataPoint();
+		sum = new DataPointSum();
+		input = new DataInputBuffer();
+		comparator = new DataPoint.Comparator();
+	}
+
+	/**
+	  * Parses the text lines, as the mappers reading the data set do.
+	  */
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public void parse(Blackhole blackhole)
+	{
+		for(int i = 0; i < POINTS; i++)
+		{
+			dataPoint.parse(lines[i], 0, lines[i].length);
+			blackhole.consume(dataPoint);
+		}
+	}
+
+	/**
+	  * Serializes the Data Points.
+	  */
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public int write()
+		throws IOException
+	{
+		output.reset();
+		for(int i = 0; i < POINTS; i++)
+			points[i].write(output);
+		return output.getLength();
+	}
+
+	/**
+	  * Deserializes the Data Points into a reused object, as the reducers do.
+	  */
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public void readFields(Blackhole blackhole)
+		throws IOException
+	{
+		input.reset(serialized, serialized.length);
+		for(int i = 0; i < POINTS; i++)
+		{
+			dataPoint.readFields(input);
+			blackhole.consume(dataPoint);
+		}
+	}
+
+	/**
+	  * Compares the Data Points as objects.
+	  */
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public int compareTo()
+	{
+		int result = 0;
+		for(int i = 0; i < POINTS; i++)
+			result += points[i].compareTo(points[(i + 1) & (POINTS - 1)]);
+		return result;
+	}
+
+	/**
+	  * Compares the serialized Data Points, as the sort of the shuffle does.
+	  */
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public int compareBytes()
+	{
+		int result = 0;
+		for(int i = 0; i < POINTS; i++)
+		{
+			int next = (i + 1) & (POINTS - 1);
+			result += comparator.compare(serialized, offsets[i], offsets[i + 1] - offsets[i],
+				serialized, offsets[next], offsets[next + 1] - offsets[next]);
+		}
+		return result;
+	}
+
+	/**
+	  * Computes the simple distances.
+	  */
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public int simpleDistance()
+	{
+		int result = 0;
+		for(int i = 0; i < POINTS; i++)
+			result += points[i].simpleDistance(points[(i + 1) & (POINTS - 1)]);
+		return result;
+	}
+
+	/**
+	  * Checks the T1 threshold.
+	  */
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public int withinT1()
+	{
+		int result = 0;
+		for(int i = 0; i < POINTS; i++)
+		{
+			if(points[i].withinT1(points[(i + 1) & (POINTS - 1)]))
+				result++;
+		}
+		return result;
+	}
+
+	/**
+	  * Checks the T2 threshold.
+	  */
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public int withinT2()
+	{
+		int result = 0;
+		for(int i = 0; i < POINTS; i++)
+		{
+			if(points[i].withinT2(points[(i + 1) & (POINTS - 1)]))
+				result++;
+		}
+		return result;
+	}
+
+	/**
+	  * Computes the complex distances.
+	  */
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public double complexDistance()
+	{
+		double result = 0;
+		for(int i = 0; i < POINTS; i++)
+			result += points[i].complexDistance(points[(i + 1) & (POINTS - 1)]);
+		return result;
+	}
+
+	/**
+	  * Averages the list of Data Points with DataPoint.getAverageDataPoint.
+	  */
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public DataPoint getAverageDataPoint()
+	{
+		return DataPoint.getAverageDataPoint(pointList);
+	}
+
+	/**
+	  * Averages the Data Points with a DataPointSum, as ClusterCenterReducer and the local engine do.
+	  */
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public DataPoint sumAverageDataPoint()
+	{
+		sum.clear();
+		for(int i = 0; i < POINTS; i++)
+			sum.add(points[i]);
+		return sum.getAverageDataPoint(average);
+	}
+}
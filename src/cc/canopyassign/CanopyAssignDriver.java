@@ -5,15 +5,23 @@
   */
 package cc.canopyassign;
 
-import java.io.IOException;
+import java.util.ArrayList;
 
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.util.GenericOptionsParser;
 
+import cc.dataset.BucketOutput;
+import cc.dataset.CanopyMembership;
 import cc.dataset.DataPoint;
+import cc.dataset.DataPointReader;
+import cc.dataset.PointBlock;
+import cc.dataset.SideData;
+import cc.dataset.StageFormat;
 
 /**
   * Driver class for the package. Initializes the MapReduce job to assign Data Points to Canopy Centers.
@@ -26,11 +34,20 @@ public class CanopyAssignDriver
 	  * @param args Arguments passed to this class.
 	  * args[0] = Path to file containing the input.
 	  * args[1] = Path to file containing the Canopy Centers.
-	  * args[2] = Path to output file. <br>
+	  * args[2] = Path to output file.
+	  * Generic Hadoop options such as -D canopyIndex=grid, -D stageFormat=text, -D pointBlockSize=256,
+	  * -D canopyMembership=true or -D assignBuckets=64 may come first. <br>
 	  */
 	public static void main(String[] args)
 		throws Exception
 	{
+		// Parse the generic Hadoop options into the configuration
+		Configuration configuration = new Configuration();
+		args = new GenericOptionsParser(configuration, args).getRemainingArgs();
+
+		// Use the Data Point schema given with -D dataPointSchema=..., [year, temperature] by default
+		DataPoint.configure(configuration);
+
 		// Check if a sufficient number of arguments are provided.
 		// args[0] = Path to file containing the data points
 		// args[1] = Path to file containing a list of canopy centers produced by the CanopyCenter package
@@ -41,15 +58,17 @@ public class CanopyAssignDriver
 			System.exit(-1);
 		}
 
-		// Add a parameter to the configuration - Path to Cluster Centroids File
-		Configuration configuration = new Configuration();
-		configuration.set("canopyCentersFile", args[1]);
-
 		// Set up the job with the configuration defined above
 		Job job = new Job(configuration);
 		job.setJarByClass(CanopyAssignDriver.class);
 		job.setJobName("Maximum Temperature - Canopy Center Assignment");
 
+		// Read the file of (1, Canopy Center) pairs and ship the Canopy Centers to the mappers through the distributed cache
+		FileSystem filesystem = FileSystem.get(configuration);
+		ArrayList<DataPoint> canopyCenters = DataPointReader.read(filesystem,
+			new Path(configuration.get("fs.default.name") + args[1]), true);
+		SideData.ship(job, new Path(args[2] + SideData.FOLDER_SUFFIX), SideData.CANOPY_CENTERS, canopyCenters);
+
 		// Set the Mapper and Reducer class
 		job.setMapperClass(CanopyAssignMapper.class);
 		job.setReducerClass(CanopyAssignReducer.class);
@@ -58,10 +77,43 @@ public class CanopyAssignDriver
 		FileInputFormat.addInputPath(job, new Path(args[0]));
 		FileOutputFormat.setOutputPath(job, new Path(args[2]));
 
-		// Specify the class types of the key and value produced by the mapper and reducer
-		job.setOutputKeyClass(DataPoint.class);
+		// Specify the class types of the key and value produced by the mapper and reducer.
+		// With memberships every Data Point is written once under the ids of its Canopies, which are sorted as they are.
+		// Otherwise the keys are sorted with the raw comparator, which also sets the schema of the tasks from the job configuration,
+		// and the mapper writes blocks of Data Points if pointBlockSize is above 0
+		if(CanopyMembership.isEnabled(configuration))
+		{
+			if(PointBlock.getBlockSize(configuration) > 0)
+				throw new IllegalArgumentException(PointBlock.CONFIGURATION_KEY + " cannot be combined with " + CanopyMembership.CONFIGURATION_KEY);
+			job.setMapOutputKeyClass(CanopyMembership.class);
+			job.setMapOutputValueClass(DataPoint.class);
+			job.setOutputKeyClass(CanopyMembership.class);
+		}
+		else
+		{
+			job.setMapOutputKeyClass(DataPoint.class);
+			job.setMapOutputValueClass(PointBlock.getBlockSize(configuration) > 0 ? PointBlock.class : DataPoint.class);
+			job.setOutputKeyClass(DataPoint.class);
+			job.setSortComparatorClass(DataPoint.Comparator.class);
+		}
 		job.setOutputValueClass(DataPoint.class);
 
-		System.exit(job.waitForCompletion(true)?0:1);
+		// Write the pairs (Canopy Center, Data Point) or (membership, Data Point) in the format read by ClusterCenter
+		StageFormat.setOutputFormat(job);
+
+		// Without reducers, the mappers write the pairs straight into the bucket files of their Canopies.
+		// Blocks of Data Points only save records in the shuffle, so they do not apply
+		boolean bucketed = BucketOutput.getBuckets(configuration) > 0;
+		if(bucketed)
+		{
+			if(PointBlock.getBlockSize(configuration) > 0)
+				throw new IllegalArgumentException(PointBlock.CONFIGURATION_KEY + " cannot be combined with " + BucketOutput.CONFIGURATION_KEY);
+			BucketOutput.setUp(job);
+		}
+
+		boolean success = job.waitForCompletion(true);
+		if(success && bucketed)
+			System.out.println(BucketOutput.writeManifest(job) + " pairs written into bucket files, listed in " + BucketOutput.MANIFEST);
+		System.exit(success?0:1);
 	}
 }
@@ -2,31 +2,82 @@ package cc.canopyassign;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.fs.FileSystem;
-import org.apache.hadoop.fs.Path;
 
+import cc.dataset.BucketOutput;
 import cc.dataset.DataPoint;
+import cc.dataset.CanopyIndex;
+import cc.dataset.CanopyMembership;
+import cc.dataset.PointBlock;
+import cc.dataset.SideData;
 
 /**
   * Mapper class for the Canopy Assign step.
+  * With a pointBlockSize above 0, the Data Points of every Canopy Center are written in PointBlocks instead of one by one.
+  * With canopyMembership, every Data Point is written once with the ids of all its Canopies instead.
+  * With assignBuckets above 0 the step runs without reducers, and the pairs are written straight into the BucketOutput files
+  * of their Canopies, or of the first Canopy of their membership.
   */
-public class CanopyAssignMapper extends Mapper<LongWritable, Text, DataPoint, DataPoint>
+public class CanopyAssignMapper extends Mapper<LongWritable, Text, Writable, Writable>
 {
 	/**
-	  * ArrayList holding the Canopy Centers read from a file.
+	  * ArrayList holding the Canopy Centers shipped by the driver.
 	  */
 	public static ArrayList<DataPoint> canopyCenters;
 
+	/**
+	  * Index of the Canopy Centers.
+	  */
+	public static CanopyIndex canopyIndex;
+
+	/**
+	  * List reused by every call of map to hold the Canopy Centers within T1 distance of the Data Point.
+	  */
+	private ArrayList<DataPoint> matchingCenters;
+
+	/**
+	  * Data Point every record is parsed into. Reused by every call of map.
+	  */
+	private DataPoint dataPoint;
+
+	/**
+	  * Number of Data Points of a block, 0 to write every Data Point as a record of its own.
+	  */
+	private int blockSize;
+
+	/**
+	  * Block of the Data Points of every Canopy Center not written yet, created when the first Data Point is added.
+	  * The Canopy Centers are the objects of canopyCenters, so they are looked up by identity.
+	  */
+	private IdentityHashMap<DataPoint, PointBlock> blocks;
+
+	/**
+	  * Id of every Canopy Center, its position in canopyCenters starting at 1 as in SideData, looked up by identity.
+	  * Null unless the Data Points are written with their membership or into bucket files.
+	  */
+	private IdentityHashMap<DataPoint, Integer> canopyCenterIds;
+
+	/**
+	  * Membership every Data Point is written with. Reused by every call of map.
+	  */
+	private CanopyMembership membership;
+
+	/**
+	  * Writer of the bucket files, null if the pairs are written to the reducers.
+	  */
+	private BucketOutput<Writable, Writable> bucketOutput;
+
 	/**
 	  * Overridden setup method of Mapper class.
-	  * Reads the file containing canopy centers, parses it and loads the Canopy Centers into the ArrayList canopyCenters.
+	  * Loads the Canopy Centers shipped by the driver through the distributed cache into the ArrayList canopyCenters.
+	  * The Canopy Centers are then indexed in canopyIndex, of the kind given by the canopyIndex parameter of the configuration.
 	  *
 	  * @param context Context object.
 	  */
@@ -37,33 +88,51 @@ public class CanopyAssignMapper extends Mapper<LongWritable, Text, DataPoint, Da
 		// Call setup of super class
 		super.setup(context);
 
-		// Allocate memory for canopyCenters
-		canopyCenters = new ArrayList<DataPoint>();
+		// Use the Data Point schema of the job
+		DataPoint.configure(context.getConfiguration());
 
 		// Get the context's configuration
 		Configuration configuration = context.getConfiguration();
 
-		// Open the file for reading
-		Path path = new Path(configuration.get("fs.default.name") + configuration.get("canopyCentersFile"));
-		FileSystem filesystem = FileSystem.get(configuration);
-		BufferedReader reader = new BufferedReader(new InputStreamReader(filesystem.open(path)));
+		// Memory-map the local copy of the Canopy Centers
+		canopyCenters = SideData.load(configuration, SideData.CANOPY_CENTERS);
+
+		// Index the Canopy Centers
+		canopyIndex = CanopyIndex.create(configuration.get(CanopyIndex.CONFIGURATION_KEY), canopyCenters);
+		matchingCenters = new ArrayList<DataPoint>();
+
+		// Allocate the object every record is parsed into
+		dataPoint = new DataPoint();
+
+		blockSize = PointBlock.getBlockSize(configuration);
+		blocks = new IdentityHashMap<DataPoint, PointBlock>();
+
+		// Open the bucket files
+		int buckets = BucketOutput.getBuckets(configuration);
+		if(buckets > 0)
+			bucketOutput = new BucketOutput<Writable, Writable>(context, "canopy", buckets);
 
-		String line = reader.readLine();
-		while(line != null)
+		// Number the Canopy Centers to write the memberships or find the buckets
+		if(CanopyMembership.isEnabled(configuration) || buckets > 0)
 		{
-			// The first character is 1, the second is \t, All the other characters are parsed to an object of DataPoint
-			DataPoint canopyCenter =  new DataPoint(line.substring(2));
-			canopyCenters.add(canopyCenter);
-			line = reader.readLine();
+			canopyCenterIds = new IdentityHashMap<DataPoint, Integer>();
+			for(int i = 0; i < canopyCenters.size(); i++)
+				canopyCenterIds.put(canopyCenters.get(i), i + 1);
 		}
+		if(CanopyMembership.isEnabled(configuration))
+			membership = new CanopyMembership();
 	}
 
 	/**
 	  * Overridden map function of Mapper Class.
 	  * The function receives a (key, value) pair, parses it and checks if any Canopy Center is within T1 distance of this Data Point.
+	  * Only the Canopy Centers the index finds near the Data Point are checked.
 	  * For every such point, it outputs (key, value) pairs where, 
 	  *	key is a Canopy Center associated with the current Data Point, 
-	  *	value is the Data Point being considered.
+	  *	value is the Data Point being considered,
+	  * or adds the Data Point to the block of the Canopy Center, which is written once it is full.
+	  * With memberships, it outputs one (key, value) pair where key is the membership of the Data Point in all these Canopies.
+	  * Without reducers, the pairs are written into the bucket files instead.
 	  *
 	  * @param key An offset in the input file.
 	  * @param value DataPoint objects in a string format.
@@ -73,15 +142,73 @@ public class CanopyAssignMapper extends Mapper<LongWritable, Text, DataPoint, Da
 	public void map(LongWritable key, Text value, Context context)
 		throws IOException, InterruptedException
 	{
-		// Convert the value to an object of Data Point
-		DataPoint dataPoint = new DataPoint(value.toString());
+		// Parse the bytes of the value into the Data Point
+		dataPoint.parse(value);
 
-		// For each Canopy Center, check if it is within T1 distance of Canopy Center
-		for(DataPoint canopyCenter : canopyCenters)
+		// For each Canopy Center within T1 distance of the Data Point, write the pair (Canopy Center, Data Point)
+		canopyIndex.withinT1(dataPoint, matchingCenters);
+		if(membership != null)
 		{
-			// If the Data Point and a Canopy Center are within T1 distance of each other, write the pair (Canopy Center, Data Point)
-			if(dataPoint.withinT1(canopyCenter))
+			// Write the Data Point once with the ids of its Canopies, a Data Point without any Canopy is left out as in the pairs
+			membership.clear();
+			for(int i = 0; i < matchingCenters.size(); i++)
+				membership.add(canopyCenterIds.get(matchingCenters.get(i)));
+			if(membership.size() > 0 && bucketOutput != null)
+				bucketOutput.write(membership.get(0), membership, dataPoint);
+			else if(membership.size() > 0)
+				context.write(membership, dataPoint);
+			return;
+		}
+		for(int i = 0; i < matchingCenters.size(); i++)
+		{
+			DataPoint canopyCenter = matchingCenters.get(i);
+			if(bucketOutput != null)
+			{
+				bucketOutput.write(canopyCenterIds.get(canopyCenter), canopyCenter, dataPoint);
+				continue;
+			}
+			if(blockSize == 0)
+			{
 				context.write(canopyCenter, dataPoint);
+				continue;
+			}
+
+			// Add the Data Point to the block of the Canopy Center, and write the block once it is full
+			PointBlock block = blocks.get(canopyCenter);
+			if(block == null)
+			{
+				block = new PointBlock(blockSize);
+				blocks.put(canopyCenter, block);
+			}
+			block.add(dataPoint);
+			if(block.isFull())
+			{
+				context.write(canopyCenter, block);
+				block.clear();
+			}
 		}
 	}
+
+	/**
+	  * Overridden cleanup method of Mapper class.
+	  * Writes the blocks that are not full, and closes the bucket files.
+	  *
+	  * @param context Context object.
+	  */
+	@Override
+	public void cleanup(Context context)
+		throws IOException, InterruptedException
+	{
+		for(Map.Entry<DataPoint, PointBlock> entry : blocks.entrySet())
+		{
+			if(entry.getValue().size() > 0)
+				context.write(entry.getKey(), entry.getValue());
+		}
+		blocks.clear();
+		if(bucketOutput != null)
+			bucketOutput.close();
+
+		// Call cleanup of super class
+		super.cleanup(context);
+	}
 }
\ No newline at end of file
@@ -2,32 +2,67 @@ package cc.canopyassign;
 
 import java.io.IOException;
 
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapreduce.Reducer;
 
 import cc.dataset.DataPoint;
+import cc.dataset.PointBlock;
 
 /**
   * Reducer class for the Canopy Assign step.
+  * Reads the Data Points written one by one or in PointBlocks by CanopyAssignMapper,
+  * under their Canopy Center or under their CanopyMembership.
   */
-public class CanopyAssignReducer extends Reducer<DataPoint, DataPoint, DataPoint, DataPoint>
+public class CanopyAssignReducer extends Reducer<Writable, Writable, Writable, DataPoint>
 {
+	/**
+	  * Data Point the Data Points of a block are read into. Reused for every Data Point.
+	  */
+	private final DataPoint dataPoint = new DataPoint();
+
+	/**
+	  * Overridden setup method of the Reduce class.
+	  * Sets the Data Point schema of the job before any key or value is read.
+	  *
+	  * @param context Context object.
+	  */
+	@Override
+	public void setup(Context context)
+		throws IOException, InterruptedException
+	{
+		// Call setup of super class
+		super.setup(context);
+
+		// Use the Data Point schema of the job
+		DataPoint.configure(context.getConfiguration());
+	}
+
 	/**
 	  * Overridden reduce method of the Reduce class.
 	  * The function receives a (key, value) pair, and for every point in the Iterable list
 	  * It outputs (key, value) pairs where, 
-	  *	key is a Canopy Center associated with the current Data Point, 
+	  *	key is a Canopy Center associated with the current Data Point, or the membership of the Data Point,
 	  *	value is one of the Data Points in the Iterable list.
 	  *
-	  * @param key A Canopy Center.
-	  * @param value A list of Data Points associated to this Canopy Center.
+	  * @param key A Canopy Center, or a CanopyMembership.
+	  * @param value A list of Data Points, or of blocks of Data Points, associated to this key.
 	  *	@param context Context object. 
 	  */
 	@Override
-	public void reduce(DataPoint key, Iterable<DataPoint> values, Context context)
+	public void reduce(Writable key, Iterable<Writable> values, Context context)
 		throws IOException, InterruptedException
 	{
-		// For each Data Point in this Canopy Center, write the pair (Canopy Center, Data Point) to output
-		for(DataPoint dataPoint : values)
-			context.write(key, dataPoint);
+		// For each Data Point of this key, write the pair (key, Data Point) to output
+		for(Writable value : values)
+		{
+			if(value instanceof PointBlock)
+			{
+				PointBlock block = (PointBlock) value;
+				for(int i = 0; i < block.size(); i++)
+					context.write(key, block.get(i, dataPoint));
+			}
+			else
+				context.write(key, (DataPoint) value);
+		}
 	}
 }
\ No newline at end of file
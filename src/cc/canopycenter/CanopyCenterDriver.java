@@ -12,8 +12,11 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.util.GenericOptionsParser;
 
 import cc.dataset.DataPoint;
+import cc.dataset.StageFormat;
 
 /**
   * Driver class for the package. Initializes the MapReduce job to find Canopy Centers.
@@ -24,7 +27,8 @@ public class CanopyCenterDriver
 	  * <b>Main function of CanopyCenterDriver. </b><br>
 	  * <b>Parameters:</b>	Strings args[], arguments passed to this class.
 	  * 					args[0] = Path to file containing the input.
-	  * 					args[1] = Path to output file. <br>
+	  * 					args[1] = Path to output file.
+	  * 					Generic Hadoop options such as -D canopyIndex=grid or -D stageFormat=text may come first. <br>
 	  * <b>Returns:</b>		Nothing <br><br>
 	  *
 	  * Initializes and runs the job to find Canopy Centers.
@@ -32,6 +36,13 @@ public class CanopyCenterDriver
 	public static void main(String args[])
 		throws IOException, InterruptedException, ClassNotFoundException
 	{
+		// Parse the generic Hadoop options into the configuration
+		Configuration configuration = new Configuration();
+		args = new GenericOptionsParser(configuration, args).getRemainingArgs();
+
+		// Use the Data Point schema given with -D dataPointSchema=..., [year, temperature] by default
+		DataPoint.configure(configuration);
+
 		// Check if a sufficient number of arguments are provided
 		// args[0] = Path to file containing the input
 		// args[1] = Path to output file
@@ -41,8 +52,8 @@ public class CanopyCenterDriver
 			System.exit(-1);
 		}
 
-		// Set up the job
-		Job job = new Job();
+		// Set up the job with the configuration defined above
+		Job job = new Job(configuration);
 		job.setJarByClass(CanopyCenterDriver.class);
 		job.setJobName("Maximum Temperature - Cluster Center Selection");
 
@@ -54,6 +65,9 @@ public class CanopyCenterDriver
 		job.setOutputKeyClass(IntWritable.class);
 		job.setOutputValueClass(DataPoint.class);
 
+		// Write the Canopy Centers in the format read by the later steps
+		StageFormat.setOutputFormat(job);
+
 		// Set the class for the output key and value types of the Mapper
 		job.setMapperClass(CanopyCenterMapper.class);
 		job.setReducerClass(CanopyCenterReducer.class);
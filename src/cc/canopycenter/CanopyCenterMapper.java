@@ -1,7 +1,6 @@
 package cc.canopycenter;
 
 import java.io.IOException;
-import java.util.ArrayList;
 
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.LongWritable;
@@ -9,6 +8,7 @@ import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
 
 import cc.dataset.DataPoint;
+import cc.dataset.CanopyIndex;
 
 /**
   * Mapper class for the Canopy Center finding step.
@@ -17,16 +17,27 @@ public class CanopyCenterMapper
 	extends Mapper<LongWritable, Text, IntWritable, DataPoint>
 {
 	/**
-	  * ArrayList containing the Canopy Centers found so far.
+	  * Index of the Canopy Centers found so far.
 	  */
-	public static ArrayList<DataPoint> canopyCenters;
+	public static CanopyIndex canopyCenters;
+
+	/**
+	  * Data Point every record is parsed into. Reused by every call of map.
+	  */
+	private DataPoint dataPoint;
+
+	/**
+	  * Output key, always 1. Reused by every call of map.
+	  */
+	private final IntWritable one = new IntWritable(1);
 	
 	/**
 	  * <b>Overridden setup method of Mapper class. </b><br>
 	  * <b>Parameters:</b>	Context context <br>
 	  * <b>Returns:</b>		Nothing <br><br>
 	  * 
-	  * Calls the super class setup method and allocates memory for the canopyCenters ArrayList.
+	  * Calls the super class setup method and allocates memory for the canopyCenters index,
+	  * of the kind given by the canopyIndex parameter of the configuration.
 	  */
 	@Override
 	public void setup(Context context)
@@ -35,8 +46,14 @@ public class CanopyCenterMapper
 		// Call the setup method of super class
 		super.setup(context);
 
-		// Allocate memory for the canopyCenters ArrayList
-		canopyCenters = new ArrayList<DataPoint>();
+		// Use the Data Point schema of the job
+		DataPoint.configure(context.getConfiguration());
+
+		// Allocate memory for the canopyCenters index
+		canopyCenters = CanopyIndex.create(context.getConfiguration().get(CanopyIndex.CONFIGURATION_KEY));
+
+		// Allocate the object every record is parsed into
+		dataPoint = new DataPoint();
 	}
 
 	/**
@@ -50,49 +67,24 @@ public class CanopyCenterMapper
 	  * 
 	  * Receives a (key, value) pair, parses it into the Data Point.
 	  * If this point is within T2 distance of any canopy center found so far, it is ignored.
-	  * Otherwise, it is added into the canopyCenters ArrayList and written to the output as the pair (1, Canopy Center).
+	  * Otherwise, it is added into the canopyCenters index and written to the output as the pair (1, Canopy Center).
+	  * Only the Canopy Centers the index finds near the Data Point are checked.
 	  */
 	@Override
 	public void map(LongWritable key, Text value, Context context)
 		throws IOException, InterruptedException
 	{
-		// Create a new Data Point object for the parameter named value
-		DataPoint dataPoint = new DataPoint(value.toString());
-		
-		// If canopyCenters is empty
-		if(canopyCenters.size() == 0)
-		{
-			// Add the Data Point at the end of the list
-			canopyCenters.add(dataPoint);
+		// Parse the bytes of the value into the Data Point
+		dataPoint.parse(value);
 
-			// Write (1, Data Point) as output
-			context.write(new IntWritable(1), dataPoint);
-		}
-		else
+		// If no Canopy Center found so far is within T2 distance of this Data Point, it is a Canopy Center
+		if(!canopyCenters.anyWithinT2(dataPoint))
 		{
-			boolean insert = true;
+			// Add a copy of the Data Point to the index of Canopy Centers, since the object is reused
+			canopyCenters.add(new DataPoint(dataPoint));
 
-			// Iterate through all Canopy Centers found so far
-			for(DataPoint center : canopyCenters)
-			{
-				// If any Canopy Center is within T2 distnace of this Data Point
-				if(dataPoint.withinT2(center))
-				{
-					// It cannot be a Canopy Center
-					insert = false;
-					break;
-				}	
-			}
-
-			// If the Data Point is a Canopy Center
-			if(insert)
-			{
-				// Add the Data Point to the list of Canopy Centers
-				canopyCenters.add(dataPoint);
-
-				// Write (1, Data Point) as output
-				context.write(new IntWritable(1), dataPoint);
-			}
+			// Write (1, Data Point) as output
+			context.write(one, dataPoint);
 		}
 	}
 }
\ No newline at end of file
@@ -1,13 +1,11 @@
 package cc.canopycenter;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Iterator;
 
 import org.apache.hadoop.io.IntWritable;
-import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
 
+import cc.dataset.CanopyIndex;
 import cc.dataset.DataPoint;
 
 /**
@@ -16,23 +14,25 @@ import cc.dataset.DataPoint;
 public class CanopyCenterReducer extends Reducer<IntWritable, DataPoint, IntWritable, DataPoint>
 {
 	/**
-	  * ArrayList containing the Canopy Centers found so far.
+	  * Index of the Canopy Centers found so far.
 	  */
-	public static ArrayList<DataPoint> canopyCenters;
+	public static CanopyIndex canopyCenters;
 
 	/**
 	  * <b>Overridden setup method of Reducer class. </b><br>
 	  * <b>Parameters:</b>	Context context <br>
 	  * <b>Returns:</b>		Nothing <br><br>
 	  * 
-	  * Calls the super class setup method and allocates memory for the canopyCenters ArrayList.
+	  * Calls the super class setup method and allocates memory for the canopyCenters index,
+	  * of the kind given by the canopyIndex parameter of the configuration.
 	  */
 	@Override
 	public void setup(Context context)
 		throws IOException, InterruptedException
 	{
 		super.setup(context);
-		canopyCenters = new ArrayList<DataPoint>();
+		DataPoint.configure(context.getConfiguration());
+		canopyCenters = CanopyIndex.create(context.getConfiguration().get(CanopyIndex.CONFIGURATION_KEY));
 	}
 
 	/**
@@ -57,28 +57,15 @@ public class CanopyCenterReducer extends Reducer<IntWritable, DataPoint, IntWrit
 
 		for(DataPoint dataPoint : values)
 		{
-			if(canopyCenters.size() == 0)
+			// Only the Canopy Centers the index finds near the Data Point are checked
+			if(!canopyCenters.anyWithinT2(dataPoint))
 			{
 				context.write(key, dataPoint);
+
+				// The framework reuses the value object for every Data Point, so the index keeps a copy.
+				// Only global Canopy Centers are copied, every other value is checked in place.
 				canopyCenters.add(new DataPoint(dataPoint));
 			}
-			else
-			{
-				boolean insert = true;
-				for(DataPoint center : canopyCenters)
-				{
-					if(dataPoint.withinT2(center))
-					{
-						insert = false;
-						break;
-					}
-				}
-				if(insert)
-				{
-					context.write(key, dataPoint);
-					canopyCenters.add(new DataPoint(dataPoint));
-				}
-			}
 		}
 
 	}
@@ -5,15 +5,24 @@
   */
 package cc.clusterassign;
 
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.TreeMap;
 
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.util.GenericOptionsParser;
 
+import cc.dataset.BucketOutput;
 import cc.dataset.DataPoint;
+import cc.dataset.DataPointReader;
+import cc.dataset.DistanceMetric;
+import cc.dataset.PointBlock;
+import cc.dataset.SideData;
 
 /**
   * Driver class for the package. Initializes the MapReduce job to assign Data Points to k-Means Centroids.
@@ -23,25 +32,42 @@ public class ClusterAssignDriver
 	public static void main(String args[])
 		throws Exception
 	{
+		// Parse the generic Hadoop options, such as -D distanceMetric=manhattan, into the configuration
+		Configuration configuration = new Configuration();
+		args = new GenericOptionsParser(configuration, args).getRemainingArgs();
+
+		// Use the Data Point schema given with -D dataPointSchema=..., [year, temperature] by default
+		DataPoint.configure(configuration);
+
 		// Check if a sufficient number of arguments are provided.
 		// args[0] = Path to file containing the Data Points
-		// args[1] = Path to file containing the k-Means Centroids
+		// args[1] = Path to the folder or part file containing the k-Means Centroids
 		// args[2] = Path to output file
 		if(args.length != 3)
 		{
-			System.out.println("Usage: ClusterAssignDriver <input path> <k-Centroids file> <output path>");
+			System.out.println("Usage: ClusterAssignDriver <input path> <k-Centroids folder> <output path>");
 			System.exit(-1);
 		}
 
-		// Create a new configuration and add the path to the k-Means Centroid file as a parameter
-		Configuration configuration = new Configuration();
-		configuration.set("kCentroidsFile", args[1]);
+		// Fail before the job starts if the metric is unknown, and pass the options of its kernel to the tasks
+		DistanceMetric.create(configuration);
+		DistanceMetric.addChildJavaOpts(configuration);
 
 		// Set up the job
 		Job job = new Job(configuration);
 		job.setJarByClass(ClusterAssignDriver.class);
 		job.setJobName("Maximum Temperature - Cluster Assignment");
 
+		// Read the (id, k-Means Centroid) pairs of all part files and ship the centroids to the mappers through the distributed cache
+		FileSystem filesystem = FileSystem.get(configuration);
+		TreeMap<Integer, DataPoint> kCentroidsById = DataPointReader.readById(filesystem,
+			new Path(configuration.get("fs.default.name") + args[1]), true);
+
+		// Ship them in sorted order, so that a Data Point at the same distance from two centroids goes to the smaller one
+		ArrayList<DataPoint> kCentroids = new ArrayList<DataPoint>(kCentroidsById.values());
+		Collections.sort(kCentroids);
+		SideData.ship(job, new Path(args[2] + SideData.FOLDER_SUFFIX), SideData.K_CENTROIDS, kCentroids);
+
 		// Set the Mapper and Reducer class
 		job.setMapperClass(ClusterAssignMapper.class);
 		job.setReducerClass(ClusterAssignReducer.class);
@@ -50,10 +76,29 @@ public class ClusterAssignDriver
 		FileInputFormat.addInputPath(job, new Path(args[0]));
 		FileOutputFormat.setOutputPath(job, new Path(args[2]));
 
-		// Specify the class types of the key and value produced by the mapper and reducer
+		// Specify the class types of the key and value produced by the mapper and reducer.
+		// The mapper writes blocks of Data Points if pointBlockSize is above 0
+		job.setMapOutputKeyClass(DataPoint.class);
+		job.setMapOutputValueClass(PointBlock.getBlockSize(configuration) > 0 ? PointBlock.class : DataPoint.class);
 		job.setOutputKeyClass(DataPoint.class);
 		job.setOutputValueClass(DataPoint.class);
 
-		System.exit(job.waitForCompletion(true)?0:1);
+		// Sort the keys with the raw comparator, which also sets the schema of the tasks from the job configuration
+		job.setSortComparatorClass(DataPoint.Comparator.class);
+
+		// Without reducers, the mappers write the pairs straight into the bucket files of their centroids.
+		// Blocks of Data Points only save records in the shuffle, so they do not apply
+		boolean bucketed = BucketOutput.getBuckets(configuration) > 0;
+		if(bucketed)
+		{
+			if(PointBlock.getBlockSize(configuration) > 0)
+				throw new IllegalArgumentException(PointBlock.CONFIGURATION_KEY + " cannot be combined with " + BucketOutput.CONFIGURATION_KEY);
+			BucketOutput.setUp(job);
+		}
+
+		boolean success = job.waitForCompletion(true);
+		if(success && bucketed)
+			System.out.println(BucketOutput.writeManifest(job) + " pairs written into bucket files, listed in " + BucketOutput.MANIFEST);
+		System.exit(success?0:1);
 	}
 }
\ No newline at end of file
@@ -1,35 +1,71 @@
 package cc.clusterassign;
 
 import java.io.IOException;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapreduce.Mapper;
-import org.apache.hadoop.fs.FileSystem;
-import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.conf.Configuration;
 
+import cc.dataset.BucketOutput;
+import cc.dataset.CentroidTable;
 import cc.dataset.DataPoint;
+import cc.dataset.DistanceMetric;
+import cc.dataset.PointBlock;
+import cc.dataset.SideData;
 
 /**
   * Mapper class for the Clluster Assign step
+  * The Data Points are assigned in batches of CentroidTable.BATCH_SIZE, so the distances of a whole batch to one centroid
+  * are computed together. With a pointBlockSize above 0, the Data Points of every centroid are written in PointBlocks
+  * instead of one by one. With assignBuckets above 0 the step runs without reducers, and the pairs are written straight into
+  * the BucketOutput files of their centroids.
   */
-public class ClusterAssignMapper extends Mapper<LongWritable, Text, DataPoint, DataPoint>
+public class ClusterAssignMapper extends Mapper<LongWritable, Text, DataPoint, Writable>
 {
 	/**
-	  * ArrayList holding the k-Means Centroids read from a file
+	  * ArrayList holding the k-Means Centroids shipped by the driver
 	  */
 	public static ArrayList<DataPoint> kCentroids;
 
+	/**
+	  * The k-Means Centroids in columns, with the metric selected in the configuration
+	  */
+	private CentroidTable kCentroidTable;
+
+	/**
+	  * Data Points of the batch, the first batchCount of which are filled, and the offset of the nearest centroid
+	  * and the rank of its distance for every Data Point of the batch. Reused by every batch
+	  */
+	private DataPoint[] batch;
+	private int batchCount;
+	private int[] nearest;
+	private double[] nearestRanks;
+
+	/**
+	  * Number of Data Points of a block, 0 to write every Data Point as a record of its own
+	  */
+	private int blockSize;
+
+	/**
+	  * Block of the Data Points of every centroid not written yet, at the offset of the centroid in kCentroids,
+	  * created when the first Data Point is added
+	  */
+	private PointBlock[] blocks;
+
+	/**
+	  * Writer of the bucket files, null if the pairs are written to the reducers
+	  */
+	private BucketOutput<DataPoint, Writable> bucketOutput;
+
 	/**
 	  * Overridden setup method of Mapper class
 	  * Parameters:	Context context
 	  * Returns:	Nothing
 	  * 
-	  * Reads the file containing k-Means Centroids, parses it and loads the Centroids into the ArrayList kCentroids
+	  * Loads the k-Means Centroids shipped by the driver through the distributed cache into the ArrayList kCentroids
+	  * and into the table kCentroidTable, and allocates the batch
 	  */
 	@Override
 	public void setup(Context context)
@@ -38,25 +74,28 @@ public class ClusterAssignMapper extends Mapper<LongWritable, Text, DataPoint, D
 		// Call setup of super class
 		super.setup(context);
 
-		// Allocate memory for kCentroids
-		kCentroids = new ArrayList<DataPoint>();
+		// Use the Data Point schema of the job
+		DataPoint.configure(context.getConfiguration());
 
-		// Get the context's configuration
-		Configuration configuration = context.getConfiguration();
+		// Memory-map the local copy of the k-Means Centroids
+		kCentroids = SideData.load(context.getConfiguration(), SideData.K_CENTROIDS);
 
-		// Open the file for reading
-		Path path = new Path(configuration.get("fs.default.name") + configuration.get("kCentroidsFile"));
-		FileSystem filesystem = FileSystem.get(configuration);
-		BufferedReader reader = new BufferedReader(new InputStreamReader(filesystem.open(path)));
+		kCentroidTable = new CentroidTable(kCentroids, DistanceMetric.create(context.getConfiguration()));
 
-		String line = reader.readLine();
-		while(line != null)
-		{
-			// The first character is 1, the second is \t, All the other characters are parsed to an object of DataPoint
-			DataPoint centroid =  new DataPoint(line.substring(2));
-			kCentroids.add(centroid);
-			line = reader.readLine();
-		}
+		// Allocate the objects the records of a batch are parsed into
+		batch = new DataPoint[CentroidTable.BATCH_SIZE];
+		for(int i = 0; i < batch.length; i++)
+			batch[i] = new DataPoint();
+		batchCount = 0;
+		nearest = new int[CentroidTable.BATCH_SIZE];
+		nearestRanks = new double[CentroidTable.BATCH_SIZE];
+
+		blockSize = PointBlock.getBlockSize(context.getConfiguration());
+		blocks = new PointBlock[kCentroids.size()];
+
+		int buckets = BucketOutput.getBuckets(context.getConfiguration());
+		if(buckets > 0)
+			bucketOutput = new BucketOutput<DataPoint, Writable>(context, "cluster", buckets);
 	}
 
 	/**
@@ -68,34 +107,89 @@ public class ClusterAssignMapper extends Mapper<LongWritable, Text, DataPoint, D
 	  *				key is a Canopy Center associated with the current Data Point
 	  *				value is the Data Point being considered
 	  * 
-	  * The function receives a (key, value) pair and nparses it.
-	  * For each k-Means Centroid in kCentroids, it calculates the centroid with the minimum distance.
-	  * It outputs the pair (K-Centroid with minimum distance, Data Point)
+	  * The function receives a (key, value) pair and nparses it into the next Data Point of the batch.
+	  * Once the batch is full, it is assigned by assignBatch
 	  */
 	@Override 
 	public void map(LongWritable key, Text value, Context context)
 		throws IOException, InterruptedException
 	{
-		// Parse the Data Point
-		DataPoint dataPoint = new DataPoint(value.toString());
+		// Parse the bytes of the value into the next Data Point of the batch
+		batch[batchCount++].parse(value);
 
-		// Set up variables to find the centroid with minimum distance
-		double minDistance = Double.MAX_VALUE;
-		double distance;
-		int offset = -1;
+		if(batchCount == batch.length)
+			assignBatch(context);
+	}
 
+	/**
+	  * Assigns the Data Points of the batch
+	  * Parameters:	Context context
+	  * Returns:	(key, value) pairs where
+	  *				key is the k-Means Centroid with the minimum distance to a Data Point of the batch
+	  *				value is the Data Point
+	  *
+	  * For each Data Point of the batch, kCentroidTable finds the first centroid with the minimum distance.
+	  * It outputs the pair (K-Centroid with minimum distance, Data Point) for every Data Point, in the order of the input,
+	  * or adds the Data Point to the block of the centroid, which is written once it is full, and empties the batch.
+	  * Without reducers, the pairs are written into the bucket file of the offset of the centroid in kCentroids instead
+	  */
+	private void assignBatch(Context context)
+		throws IOException, InterruptedException
+	{
 		// Find centroid with minimum distance
-		for(int i = 0; i < kCentroids.size(); i++)
+		kCentroidTable.nearest(batch, batchCount, nearest, nearestRanks);
+
+		// Write the pairs (Centroid, Data Point)
+		for(int i = 0; i < batchCount; i++)
 		{
-			distance = dataPoint.complexDistance(kCentroids.get(i));
-			if(distance < minDistance)
+			if(bucketOutput != null)
 			{
-				minDistance = distance;
-				offset = i;
+				bucketOutput.write(nearest[i], kCentroids.get(nearest[i]), batch[i]);
+				continue;
 			}
+			if(blockSize == 0)
+			{
+				context.write(kCentroids.get(nearest[i]), batch[i]);
+				continue;
+			}
+
+			// Add the Data Point to the block of the centroid, and write the block once it is full
+			PointBlock block = blocks[nearest[i]];
+			if(block == null)
+				block = blocks[nearest[i]] = new PointBlock(blockSize);
+			block.add(batch[i]);
+			if(block.isFull())
+			{
+				context.write(kCentroids.get(nearest[i]), block);
+				block.clear();
+			}
+		}
+		batchCount = 0;
+	}
+
+	/**
+	  * Overridden cleanup method of Mapper class
+	  * Parameters:	Context context
+	  * Returns:	Nothing
+	  *
+	  * Assigns the last Data Points, which did not fill a batch, writes the blocks that are not full and closes the bucket files
+	  */
+	@Override
+	public void cleanup(Context context)
+		throws IOException, InterruptedException
+	{
+		if(batchCount > 0)
+			assignBatch(context);
+
+		for(int i = 0; i < blocks.length; i++)
+		{
+			if(blocks[i] != null && blocks[i].size() > 0)
+				context.write(kCentroids.get(i), blocks[i]);
 		}
+		if(bucketOutput != null)
+			bucketOutput.close();
 
-		// Write the pair (Centroid, Data Point)
-		context.write(kCentroids.get(offset), dataPoint);
+		// Call cleanup of super class
+		super.cleanup(context);
 	}
 }
\ No newline at end of file
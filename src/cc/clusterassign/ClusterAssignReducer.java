@@ -2,19 +2,45 @@ package cc.clusterassign;
 
 import java.io.IOException;
 
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapreduce.Reducer;
 
 import cc.dataset.DataPoint;
+import cc.dataset.PointBlock;
 
 /**
   * Reducer class for the Cluster Assign step
+  * Reads the Data Points written one by one or in PointBlocks by ClusterAssignMapper
   */
-public class ClusterAssignReducer extends Reducer<DataPoint, DataPoint, DataPoint, DataPoint>
+public class ClusterAssignReducer extends Reducer<DataPoint, Writable, DataPoint, DataPoint>
 {
+	/**
+	  * Data Point the Data Points of a block are read into. Reused for every Data Point
+	  */
+	private final DataPoint dataPoint = new DataPoint();
+
+	/**
+	  * Overridden setup method of the Reduce class
+	  * Parameters:	Context context
+	  * Returns:	Nothing
+	  *
+	  * Sets the Data Point schema of the job before any key or value is read.
+	  */
+	@Override
+	public void setup(Context context)
+		throws IOException, InterruptedException
+	{
+		// Call setup of super class
+		super.setup(context);
+
+		// Use the Data Point schema of the job
+		DataPoint.configure(context.getConfiguration());
+	}
+
 	/**
 	  * Overridden reduce method of the Reduce class
 	  * Parameters:	DataPoint key, a k-Means Centroid
-	  * 			Iterable<DataPoint> value, A list of Data Points associated to this Centriod
+	  * 			Iterable<Writable> value, A list of Data Points, or of blocks of Data Points, associated to this Centriod
 	  *				Context context
 	  * Returns:	(key, value) pairs where
 	  *				key is a k-Means Centroid associated with the current Data Point
@@ -24,10 +50,19 @@ public class ClusterAssignReducer extends Reducer<DataPoint, DataPoint, DataPoin
 	  * For every point in the Iterable list, it outputs the pair (k_Means Centroid, Data Point).
 	  */
 	@Override
-	public void reduce(DataPoint key, Iterable<DataPoint> values, Context context)
+	public void reduce(DataPoint key, Iterable<Writable> values, Context context)
 		throws IOException, InterruptedException
 	{
-		for(DataPoint dataPoint : values)
-			context.write(key, dataPoint);
+		for(Writable value : values)
+		{
+			if(value instanceof PointBlock)
+			{
+				PointBlock block = (PointBlock) value;
+				for(int i = 0; i < block.size(); i++)
+					context.write(key, block.get(i, dataPoint));
+			}
+			else
+				context.write(key, (DataPoint) value);
+		}
 	}
 }
\ No newline at end of file
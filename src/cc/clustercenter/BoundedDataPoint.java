@@ -0,0 +1,130 @@
+package cc.clustercenter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Writable;
+
+import cc.dataset.DataPoint;
+
+/**
+  * A Data Point of the working set together with the bounds used to skip distance computations in the bounded assignment mode.
+  * It remembers the id of the k-Means Centroid the Data Point was assigned to in the last iteration,
+  * an upper bound of the distance to that centroid, and a lower bound of the distance to every other centroid of its Canopy.
+  * The bounds are stored as floats, rounded away from the exact value so that they stay bounds.
+  */
+public class BoundedDataPoint implements Writable
+{
+	/**
+	  * Id of a centroid that is not known, such as before the first assignment.
+	  */
+	public static final int NO_CENTROID = -1;
+
+	/**
+	  * The Data Point.
+	  */
+	private final DataPoint dataPoint = new DataPoint();
+
+	/**
+	  * Id of the k-Means Centroid the Data Point is assigned to, or NO_CENTROID.
+	  */
+	private int centroidId = NO_CENTROID;
+
+	/**
+	  * Upper bound of the distance to the assigned centroid, and lower bound of the distance to the other centroids.
+	  */
+	private float upperBound, lowerBound;
+
+	/**
+	  * Returns the Data Point.
+	  */
+	public DataPoint getDataPoint()
+	{
+		return dataPoint;
+	}
+
+	/**
+	  * Returns the id of the assigned k-Means Centroid, or NO_CENTROID.
+	  */
+	public int getCentroidId()
+	{
+		return centroidId;
+	}
+
+	/**
+	  * Returns the upper bound of the distance to the assigned centroid.
+	  */
+	public double getUpperBound()
+	{
+		return upperBound;
+	}
+
+	/**
+	  * Returns the lower bound of the distance to the other centroids.
+	  */
+	public double getLowerBound()
+	{
+		return lowerBound;
+	}
+
+	/**
+	  * Starts over with a Data Point that is not assigned yet.
+	  * Parameters:	DataPoint dataPoint, the Data Point, copied
+	  * Returns:	Nothing
+	  */
+	public void reset(DataPoint dataPoint)
+	{
+		this.dataPoint.set(dataPoint);
+		centroidId = NO_CENTROID;
+		upperBound = 0;
+		lowerBound = 0;
+	}
+
+	/**
+	  * Sets the assignment and its bounds.
+	  * Parameters:	int centroidId, id of the assigned k-Means Centroid, or NO_CENTROID
+	  * 			double upperBound, upper bound of the distance to the assigned centroid, rounded up
+	  * 			double lowerBound, lower bound of the distance to the other centroids, rounded down
+	  * Returns:	Nothing
+	  */
+	public void setAssignment(int centroidId, double upperBound, double lowerBound)
+	{
+		this.centroidId = centroidId;
+		this.upperBound = (float) upperBound;
+		if(this.upperBound < upperBound)
+			this.upperBound = Math.nextUp(this.upperBound);
+		this.lowerBound = (float) lowerBound;
+		if(this.lowerBound > lowerBound)
+			this.lowerBound = Math.nextAfter(this.lowerBound, Double.NEGATIVE_INFINITY);
+	}
+
+	@Override
+	public void readFields(DataInput in)
+		throws IOException
+	{
+		dataPoint.readFields(in);
+		centroidId = in.readInt();
+		upperBound = in.readFloat();
+		lowerBound = in.readFloat();
+	}
+
+	@Override
+	public void write(DataOutput out)
+		throws IOException
+	{
+		dataPoint.write(out);
+		out.writeInt(centroidId);
+		out.writeFloat(upperBound);
+		out.writeFloat(lowerBound);
+	}
+
+	/**
+	  * Returns the Data Point, the id of the assigned centroid and the bounds, separated by tabs.
+	  */
+	@Override
+	public String toString()
+	{
+		return dataPoint + "\t" + centroidId + "\t" + upperBound + "\t" + lowerBound;
+	}
+}
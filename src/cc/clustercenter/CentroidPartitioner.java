@@ -0,0 +1,37 @@
+package cc.clustercenter;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Partitioner;
+
+/**
+  * Partitioner class for the Cluster Center iteration step.
+  * Sends the partial sums of a k-Means Centroid to a reducer chosen by the id of the centroid alone,
+  * so that every centroid is averaged by exactly one reducer and the ids are dealt out evenly over the reducers.
+  */
+public class CentroidPartitioner extends Partitioner<IntWritable, Writable>
+{
+	/**
+	  * Overridden getPartition method of the Partitioner class.
+	  * Parameters:	IntWritable key, the id of a k-Means Centroid
+	  * 			Writable value, a partial sum of Data Points
+	  * 			int numPartitions, number of reducers
+	  * Returns:	the reducer the partial sum is sent to
+	  */
+	@Override
+	public int getPartition(IntWritable key, Writable value, int numPartitions)
+	{
+		return getPartition(key.get(), numPartitions);
+	}
+
+	/**
+	  * Finds the reducer of a k-Means Centroid.
+	  * Parameters:	int id, the id of the centroid
+	  * 			int numPartitions, number of reducers
+	  * Returns:	the reducer, between 0 and numPartitions - 1
+	  */
+	public static int getPartition(int id, int numPartitions)
+	{
+		return (id & Integer.MAX_VALUE) % numPartitions;
+	}
+}
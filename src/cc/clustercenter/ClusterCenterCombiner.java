@@ -0,0 +1,58 @@
+package cc.clustercenter;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import cc.dataset.DataPoint;
+import cc.dataset.DataPointSum;
+
+/**
+  * Combiner class for the Cluster Center iteration step.
+  */
+public class ClusterCenterCombiner extends Reducer<IntWritable, DataPointSum, IntWritable, DataPointSum>
+{
+	/**
+	  * Partial sum written for every key. Reused by every call of reduce.
+	  */
+	private final DataPointSum sum = new DataPointSum();
+
+	/**
+	  * Overridden setup method of the Reduce class.
+	  * Parameters:	Context context
+	  * Returns:	Nothing
+	  *
+	  * Sets the Data Point schema of the job, which gives the number of sums read.
+	  */
+	@Override
+	public void setup(Context context)
+		throws IOException, InterruptedException
+	{
+		// Call setup of super class
+		super.setup(context);
+
+		// Use the Data Point schema of the job
+		DataPoint.configure(context.getConfiguration());
+	}
+
+	/**
+	  * Overridden reduce method of the Reduce class.
+	  * Parameters:	IntWritable key, the id of a k-Means Centroid
+	  * 			Iterable<DataPointSum> values, a list of partial sums of Data Points assigned to this centroid
+	  * 			Context context
+	  * Returns:	Nothing
+	  *
+	  * The function receives the id of a k-Means Centroid and the partial sums of the Data Points of one map task assigned to it,
+	  * and adds them up so that only one partial sum per centroid is shuffled to ClusterCenterReducer.
+	  */
+	@Override
+	public void reduce(IntWritable key, Iterable<DataPointSum> values, Context context)
+		throws IOException, InterruptedException
+	{
+		sum.clear();
+		for(DataPointSum partialSum : values)
+			sum.add(partialSum);
+		context.write(key, sum);
+	}
+}
@@ -0,0 +1,74 @@
+package cc.clustercenter;
+
+/**
+  * Counters published by ClusterCenterReducer for every iteration, from which the driver decides convergence.
+  * The shifts are complex distances between the new and the previous position of a k-Means Centroid, counted in millionths.
+  */
+public enum ClusterCenterCounter
+{
+	/**
+	  * Number of k-Means Centroids written.
+	  */
+	CENTROIDS,
+
+	/**
+	  * Number of k-Means Centroids that moved more than DataPoint.CONVERGENCE_THRESHOLD.
+	  */
+	MOVED_CENTROIDS,
+
+	/**
+	  * Number of Data Points in the clusters of the centroids that moved more than the threshold.
+	  */
+	MOVED_POINTS,
+
+	/**
+	  * Sum of the shifts of all centroids, in millionths.
+	  */
+	TOTAL_SHIFT_MICROS,
+
+	/**
+	  * Number of frozen k-Means Centroids written again at their frozen position.
+	  */
+	FROZEN_CENTROIDS,
+
+	/**
+	  * Number of Data Points skipped by the mappers because all the centroids of their Canopy are frozen.
+	  */
+	FROZEN_POINTS,
+
+	/**
+	  * Number of distances between a Data Point and a k-Means Centroid, or between two centroids, computed by the mappers.
+	  */
+	DISTANCES,
+
+	/**
+	  * Number of Data Points sampled into a mini-batch.
+	  */
+	MINI_BATCH_POINTS;
+
+	/**
+	  * Group of the counters holding the largest shift seen by every reducer, in millionths, one counter per partition.
+	  * Counters of the same name are added up over the tasks, so the largest shift of the iteration is the largest of the group.
+	  */
+	public static final String MAX_SHIFT_GROUP = "ClusterCenterMaxShiftMicros";
+
+	/**
+	  * Converts a shift into the millionths it is counted in.
+	  * Parameters:	double shift, the shift
+	  * Returns:	the shift in millionths, rounded
+	  */
+	public static long toMicros(double shift)
+	{
+		return Math.round(shift * 1000000);
+	}
+
+	/**
+	  * Converts a counted shift back from millionths.
+	  * Parameters:	long micros, the shift in millionths
+	  * Returns:	the shift
+	  */
+	public static double fromMicros(long micros)
+	{
+		return micros / 1000000.0;
+	}
+}
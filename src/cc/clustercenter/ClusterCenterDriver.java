@@ -6,20 +6,35 @@
 package cc.clustercenter;
 
 import java.io.IOException;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.FileUtil;
 import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.util.GenericOptionsParser;
 
+import cc.dataset.BlockFileInputFormat;
+import cc.dataset.CanopyMembership;
+import cc.dataset.BlockFileOutputFormat;
 import cc.dataset.DataPoint;
+import cc.dataset.DataPointReader;
+import cc.dataset.DataPointSum;
+import cc.dataset.DistanceMetric;
+import cc.dataset.SideData;
+import cc.dataset.StageFormat;
 
 /**
   * Driver class for the package. Initializes the MapReduce job to find Cluster Centers.
@@ -27,89 +42,148 @@ import cc.dataset.DataPoint;
 public class ClusterCenterDriver
 {
 	/**
-	  * ArrayLists holding k-Means Centriods before and after an iteration. Used to check convergence.
+	  * Suffix of the folder holding the working set, appended to the output path.
 	  */
-	public static ArrayList<DataPoint> oldKCentroids, newKCentroids;
+	public static final String WORKING_SET_SUFFIX = "_workingset";
 
 	/**
-	  * Name of the output part file.
+	  * Name of the configuration parameter limiting the number of iterations, DataPoint.MAX_ITERATIONS by default.
+	  * The centroids of the last iteration are kept if they have not converged by then.
 	  */
-	public static final String partFile = "/part-r-00000";
+	public static final String MAX_ITERATIONS = "clusterCenterMaxIterations";
 
+	/**
+	  * Name of the configuration parameter enabling incremental k-Means, false by default.
+	  * A centroid is then frozen while it cannot move, see freeze: it is written again at its position,
+	  * and the Data Points of Canopies with only frozen centroids are skipped. The result is the one of plain k-Means.
+	  * Cannot be combined with mini-batches or the membership of the Data Points.
+	  */
+	public static final String INCREMENTAL = "clusterCenterIncremental";
 
 	/**
-	  * Checks if k-Means Centroids have converged
-	  * Parameters: String oldKCentroidsFile, String path to the old k-Means Centroid File
-	  * 			String newKCentroidsFile, String path to the new k-Means Centroid File
-	  * Returns:	Nothing
-	  *
-	  * Converts the String file names to Path objects.
-	  * Then, the files are read from the FileSystem and parsed.
-	  * The oldKCentroids and newKCentroids are populated and checked if they are within the defined thresholds.
+	  * Name of the configuration parameter giving the fraction of the Data Points sampled into every iteration, 1 by default.
+	  * Below 1, every iteration is a mini-batch: each Canopy contributes the fraction of its Data Points,
+	  * and every k-Means Centroid moves towards the average of its sampled Data Points with a learning rate of its own,
+	  * which shrinks with the number of Data Points it was computed from in all mini-batches so far.
+	  * The result approximates plain k-Means. Cannot be combined with incremental k-Means or the bounded assignment.
 	  */
-	public static boolean hasConverged(String oldKCentroidsFile, String newKCentroidsFile)
-		throws Exception
-	{
-		// String to hold lines read from files
-		String line;
+	public static final String MINI_BATCH_FRACTION = "clusterCenterMiniBatchFraction";
 
-		// Allocate memory for oldKCentroids and newKCentroids
-		oldKCentroids = new ArrayList<DataPoint>();
-		newKCentroids = new ArrayList<DataPoint>();
+	/**
+	  * Name of the configuration parameter ending the mini-batches with a full iteration over all Data Points, true by default.
+	  * It runs once the mini-batches have converged or reached the limit of iterations, even beyond the limit.
+	  */
+	public static final String MINI_BATCH_FULL_PASS = "clusterCenterMiniBatchFullPass";
 
-		// Create a new Configuration and obtain a handle on the FileSystem
-		Configuration configuration = new Configuration();
-		FileSystem filesystem = FileSystem.get(configuration);
+	/**
+	  * Name of the configuration parameter seeding the sampling of the mini-batches, 0 by default.
+	  */
+	public static final String MINI_BATCH_SEED = "clusterCenterMiniBatchSeed";
 
-		// Read the Old k-Means Centroid File
-		if(DataPoint.NUM_ITERATIONS == 0)
-		{
-			// If this is the first iteration, the centroids lie in the k-Means Centroid input file
-			BufferedReader oldReader = new BufferedReader(new InputStreamReader(filesystem.open
-				(new Path(configuration.get("fs.default.name") + oldKCentroidsFile))));
+	/**
+	  * Name of the configuration parameter set by the driver to the number of the iteration, so that every mini-batch samples
+	  * different Data Points.
+	  */
+	public static final String ITERATION = "clusterCenterIteration";
 
-			line = oldReader.readLine();
-			while(line != null)
+	/**
+	  * Finds the k-Means Centroids of incremental k-Means that are frozen in the next iteration
+	  * Parameters:	List<DataPoint> canopyCenters, the Canopy Centers in the order of their ids
+	  * 			TreeMap<Integer, DataPoint> kCentroids, the centroids of the iteration by id
+	  * 			TreeMap<Integer, DataPoint> newKCentroids, the centroids computed by the iteration by id
+	  * Returns:	the new centroids that are frozen, by id
+	  *
+	  * A centroid moves in the next iteration only if the assignment of a Data Point of one of its Canopies changes,
+	  * which needs a centroid of that Canopy, before or after the iteration, to have moved or to move itself.
+	  * So the centroids that changed at all, or were left out as empty, move, and so do all the centroids of a Canopy with
+	  * a moving centroid, repeatedly. The other centroids are frozen: their Canopies keep the same centroids at the same
+	  * positions and the same assignments, so the centroids are computed from the same Data Points again, as in plain k-Means.
+	  */
+	private static TreeMap<Integer, DataPoint> freeze(List<DataPoint> canopyCenters, TreeMap<Integer, DataPoint> kCentroids,
+		TreeMap<Integer, DataPoint> newKCentroids)
+	{
+		// The ids of the centroids of every Canopy, before and after the iteration
+		ArrayList<ArrayList<Integer>> canopyKCentroidIds = new ArrayList<ArrayList<Integer>>();
+		for(DataPoint canopyCenter : canopyCenters)
+		{
+			ArrayList<Integer> ids = new ArrayList<Integer>();
+			for(Map.Entry<Integer, DataPoint> entry : kCentroids.entrySet())
 			{
-				oldKCentroids.add(new DataPoint(line));
-				line = oldReader.readLine();
+				DataPoint newKCentroid = newKCentroids.get(entry.getKey());
+				if(canopyCenter.withinT1(entry.getValue()) || (newKCentroid != null && canopyCenter.withinT1(newKCentroid)))
+					ids.add(entry.getKey());
 			}
+			canopyKCentroidIds.add(ids);
+		}
+
+		// Start with the centroids that changed, and spread the moves over the Canopies until no more centroids move
+		TreeSet<Integer> moving = new TreeSet<Integer>();
+		for(Map.Entry<Integer, DataPoint> entry : kCentroids.entrySet())
+		{
+			if(!entry.getValue().equals(newKCentroids.get(entry.getKey())))
+				moving.add(entry.getKey());
 		}
-		else
+		boolean[] movingCanopies = new boolean[canopyKCentroidIds.size()];
+		boolean spread = true;
+		while(spread)
 		{
-			// If this is not the first iteration, the centroids lie in a part file
-			BufferedReader oldReader = new BufferedReader(new InputStreamReader(filesystem.open
-				(new Path(configuration.get("fs.default.name") + oldKCentroidsFile + partFile))));
-			
-			line = oldReader.readLine();
-			while(line != null)
+			spread = false;
+			for(int c = 0; c < movingCanopies.length; c++)
 			{
-				// Since the output is a (key, value) pair, the key is ignored
-				int tabPosition = line.indexOf("\t");
-				oldKCentroids.add(new DataPoint(line.substring(tabPosition + 1)));
-				line = oldReader.readLine();
+				if(movingCanopies[c])
+					continue;
+				for(int id : canopyKCentroidIds.get(c))
+				{
+					if(moving.contains(id))
+					{
+						movingCanopies[c] = true;
+						moving.addAll(canopyKCentroidIds.get(c));
+						spread = true;
+						break;
+					}
+				}
 			}
 		}
 
-		// Read the New k-Means Centroid File
-		BufferedReader newReader = new BufferedReader(new InputStreamReader(filesystem.open(
-			new Path(configuration.get("fs.default.name") + newKCentroidsFile + partFile))));
-		line = newReader.readLine();
-		while(line != null)
+		TreeMap<Integer, DataPoint> frozenKCentroids = new TreeMap<Integer, DataPoint>();
+		for(Map.Entry<Integer, DataPoint> entry : newKCentroids.entrySet())
 		{
-			// Since the file contains a (key, value) pair, the key is ignored
-			int tabPosition = line.indexOf("\t");
-			newKCentroids.add(new DataPoint(line.substring(tabPosition + 1)));
-			line = newReader.readLine();
+			if(!moving.contains(entry.getKey()))
+				frozenKCentroids.put(entry.getKey(), entry.getValue());
 		}
+		return frozenKCentroids;
+	}
 
-		// Check if the corresponding Old and New Centroids have converged
-		for(int i = 0; i < oldKCentroids.size(); i++)
-		{
-			if(oldKCentroids.get(i).complexDistance(newKCentroids.get(i)) > DataPoint.CONVERGENCE_THRESHOLD)
-				return false;
-		}
-		return true;
+	/**
+	  * Checks if k-Means Centroids have converged
+	  * Parameters: Counters counters, the counters of the iteration published by ClusterCenterReducer
+	  * 			int numKCentroids, the number of k-Means Centroids shipped to the iteration
+	  * Returns:	true if the centroids have converged
+	  *
+	  * A centroid no Data Point was assigned to is not written by the reducers, so the centroids have not converged
+	  * while their number changes. Otherwise no centroid may have moved more than the threshold.
+	  * Prints the shifts of the iteration.
+	  */
+	public static boolean hasConverged(Counters counters, int numKCentroids)
+	{
+		long centroids = counters.findCounter(ClusterCenterCounter.CENTROIDS).getValue();
+		long movedCentroids = counters.findCounter(ClusterCenterCounter.MOVED_CENTROIDS).getValue();
+
+		// The largest shift is the largest of the counters published by every reducer
+		long maxShift = 0;
+		for(Counter counter : counters.getGroup(ClusterCenterCounter.MAX_SHIFT_GROUP))
+			maxShift = Math.max(maxShift, counter.getValue());
+
+		System.out.println("Centroids: " + centroids + " of " + numKCentroids + ", moved: " + movedCentroids
+			+ " with " + counters.findCounter(ClusterCenterCounter.MOVED_POINTS).getValue() + " Data Points"
+			+ ", largest shift: " + ClusterCenterCounter.fromMicros(maxShift)
+			+ ", total shift: " + ClusterCenterCounter.fromMicros(counters.findCounter(ClusterCenterCounter.TOTAL_SHIFT_MICROS).getValue())
+			+ ", frozen: " + counters.findCounter(ClusterCenterCounter.FROZEN_CENTROIDS).getValue()
+			+ " skipping " + counters.findCounter(ClusterCenterCounter.FROZEN_POINTS).getValue() + " Data Points"
+			+ ", distances: " + counters.findCounter(ClusterCenterCounter.DISTANCES).getValue()
+			+ ", mini-batch: " + counters.findCounter(ClusterCenterCounter.MINI_BATCH_POINTS).getValue() + " Data Points");
+
+		return centroids == numKCentroids && movedCentroids == 0;
 	}
 
 	/**
@@ -134,27 +208,93 @@ public class ClusterCenterDriver
 	public static void main(String[] args)
 		throws Exception
 	{
+		// Parse the generic Hadoop options, such as -D clusterCenterAggregation=inmapper, into a base configuration
+		Configuration baseConfiguration = new Configuration();
+		args = new GenericOptionsParser(baseConfiguration, args).getRemainingArgs();
+
+		// Use the Data Point schema given with -D dataPointSchema=..., [year, temperature] by default
+		DataPoint.configure(baseConfiguration);
+
 		// Check if a sufficient number of arguments are provided
 		// args[0] = Path to file containing the pairs (Cluster Center, Data Point), output of ClusterAssign package
 		// args[1] = Path to file containing a list of canopy centers produced by the CanopyCenter package
 		// args[2] = Path to file containing intital k Centroids
-		// args[3] = Path to output file
+		// args[3] = Path to output folder
+		// The number of reducers of every iteration is set with -D mapred.reduce.tasks=N
 		if(args.length != 4)
 		{
 			System.out.println("Usage: ClusterCenterDriver <input path> <canopy centers file> <k centroids file> <output path>");
 			System.exit(-1);
 		}
 
+		// Read the file of (1, Canopy Center) pairs once, it is shipped to every iteration
+		FileSystem filesystem = FileSystem.get(baseConfiguration);
+		ArrayList<DataPoint> canopyCenters = DataPointReader.read(filesystem,
+			new Path(baseConfiguration.get("fs.default.name") + args[1]), true);
+
+		// The first iteration writes the working set into its output folder, from where it is moved next to the output folders
+		boolean useWorkingSet = baseConfiguration.getBoolean(ClusterCenterMapper.USE_WORKING_SET, true);
+		Path workingSetFolder = new Path(args[3] + WORKING_SET_SUFFIX);
+
+		// Read the limit of iterations and if centroids are frozen
+		int maxIterations = baseConfiguration.getInt(MAX_ITERATIONS, DataPoint.MAX_ITERATIONS);
+		if(maxIterations < 1)
+			throw new IllegalArgumentException(MAX_ITERATIONS + " must be at least 1: " + maxIterations);
+		boolean incremental = baseConfiguration.getBoolean(INCREMENTAL, false);
+
+		// Read the assignment mode. The bounded mode keeps its bounds in the working set, which it rewrites in every iteration
+		String assignment = baseConfiguration.get(ClusterCenterMapper.ASSIGNMENT, ClusterCenterMapper.FULL);
+		if(!ClusterCenterMapper.FULL.equals(assignment) && !ClusterCenterMapper.BOUNDED.equals(assignment))
+			throw new IllegalArgumentException("Unknown " + ClusterCenterMapper.ASSIGNMENT + ": " + assignment);
+		boolean bounded = ClusterCenterMapper.BOUNDED.equals(assignment);
+		if(bounded && !useWorkingSet)
+			throw new IllegalArgumentException(ClusterCenterMapper.BOUNDED + " assignment requires " + ClusterCenterMapper.USE_WORKING_SET);
+
+		// Read if the output of CanopyAssign holds the membership of every Data Point. The bounds are kept per Canopy,
+		// so they do not apply to a Data Point assigned over several Canopies
+		boolean membership = CanopyMembership.isEnabled(baseConfiguration);
+		if(bounded && membership)
+			throw new IllegalArgumentException(ClusterCenterMapper.BOUNDED + " assignment cannot be combined with " + CanopyMembership.CONFIGURATION_KEY);
+
+		// A Data Point of several Canopies ties their assignments together, so freezing them per Canopy would change the result
+		if(incremental && membership)
+			throw new IllegalArgumentException(INCREMENTAL + " cannot be combined with " + CanopyMembership.CONFIGURATION_KEY);
+
+		// Read the metric of the distances, and pass the options of its kernel to the tasks.
+		// The bounds of the bounded mode rely on the triangle inequality
+		DistanceMetric metric = DistanceMetric.create(baseConfiguration);
+		DistanceMetric.addChildJavaOpts(baseConfiguration);
+		if(bounded && !metric.isMetric())
+			throw new IllegalArgumentException(ClusterCenterMapper.BOUNDED + " assignment requires a metric satisfying the triangle inequality: "
+				+ baseConfiguration.get(DistanceMetric.CONFIGURATION_KEY));
+
+		// Read the fraction of the mini-batches, and if they end with a full iteration
+		float miniBatchFraction = baseConfiguration.getFloat(MINI_BATCH_FRACTION, 1);
+		if(!(miniBatchFraction > 0 && miniBatchFraction <= 1))
+			throw new IllegalArgumentException(MINI_BATCH_FRACTION + " must be above 0 and at most 1: " + miniBatchFraction);
+		boolean miniBatch = miniBatchFraction < 1;
+		if(miniBatch && (incremental || bounded))
+			throw new IllegalArgumentException("Mini-batches cannot be combined with " + INCREMENTAL + " or " + ClusterCenterMapper.BOUNDED + " assignment");
+		boolean miniBatchFullPass = baseConfiguration.getBoolean(MINI_BATCH_FULL_PASS, true);
+
+		// Read the initial k-Means Centroids, with the line number as the id of each centroid
+		TreeMap<Integer, DataPoint> kCentroids = DataPointReader.readById(filesystem,
+			new Path(baseConfiguration.get("fs.default.name") + args[2]), false);
+
+		// The frozen k-Means Centroids by id, none at first
+		TreeMap<Integer, DataPoint> frozenKCentroids = new TreeMap<Integer, DataPoint>();
+
+		// The k-Means Centroids of the previous iteration, which the bounds in the working set were computed with, none at first
+		TreeMap<Integer, DataPoint> previousKCentroids = new TreeMap<Integer, DataPoint>();
+
+		// The number of Data Points every k-Means Centroid was computed from in the mini-batches so far, none at first,
+		// and if the current iteration is the full one after them
+		TreeMap<Integer, LongWritable> kCentroidCounts = new TreeMap<Integer, LongWritable>();
+		boolean fullPass = false;
+
 		while(true)
 		{
-			// Add parameter to the configuration - Path to Cluster Centers and k Centroid files
-			Configuration configuration = new Configuration();
-			configuration.set("canopyCentersFile", args[1]);
-			if(DataPoint.NUM_ITERATIONS == 0)
-				configuration.set("kCentroidsFile", args[2]);
-			else
-				configuration.set("kCentroidsFile", args[3] + "_" + (DataPoint.NUM_ITERATIONS-1) + partFile);
-			configuration.set("NUM_ITERATIONS",DataPoint.NUM_ITERATIONS + "");
+			Configuration configuration = new Configuration(baseConfiguration);
 
 			System.out.println("Iteration: " + DataPoint.NUM_ITERATIONS);
 
@@ -162,38 +302,121 @@ public class ClusterCenterDriver
 			Job job = new Job(configuration);
 			job.setJarByClass(ClusterCenterDriver.class);
 			job.setJobName("Maximum Temperature - Cluster Centers");
+
+			// Ship the Canopy Centers and k-Means Centroids with their ids to the mappers through the distributed cache
+			Path sideDataFolder = new Path(args[3] + SideData.FOLDER_SUFFIX + "/" + DataPoint.NUM_ITERATIONS);
+			SideData.ship(job, sideDataFolder, SideData.CANOPY_CENTERS, canopyCenters);
+			SideData.ship(job, sideDataFolder, SideData.K_CENTROIDS, kCentroids);
+			SideData.ship(job, sideDataFolder, SideData.FROZEN_K_CENTROIDS, frozenKCentroids);
+			if(bounded)
+				SideData.ship(job, sideDataFolder, SideData.PREVIOUS_K_CENTROIDS, previousKCentroids);
+
+			// Sample a mini-batch, and ship the counts of the centroids to the reducers, which write the new counts
+			boolean sampling = miniBatch && !fullPass;
+			job.getConfiguration().setFloat(MINI_BATCH_FRACTION, sampling ? miniBatchFraction : 1);
+			job.getConfiguration().setLong(ITERATION, DataPoint.NUM_ITERATIONS);
+			if(sampling)
+			{
+				SideData.ship(job, sideDataFolder, SideData.K_CENTROID_COUNTS, kCentroidCounts);
+				MultipleOutputs.addNamedOutput(job, ClusterCenterReducer.COUNTS, BlockFileOutputFormat.class,
+					IntWritable.class, LongWritable.class);
+			}
 		
-			// Set paths for input and output files
-			FileInputFormat.setInputPaths(job, new Path(args[0]));
-			FileOutputFormat.setOutputPath(job, new Path(args[3] + "_" + DataPoint.NUM_ITERATIONS));
+			// Set path for output files, and write the k-Means Centroids in the format of the steps
+			Path outputFolder = new Path(args[3] + "_" + DataPoint.NUM_ITERATIONS);
+			FileOutputFormat.setOutputPath(job, outputFolder);
+			StageFormat.setOutputFormat(job);
+
+			if(useWorkingSet && DataPoint.NUM_ITERATIONS > 0)
+			{
+				// Read the working set written by the previous iterations
+				FileInputFormat.setInputPaths(job, workingSetFolder);
+				job.setInputFormatClass(BlockFileInputFormat.class);
+			}
+			else
+			{
+				// Read the output of CanopyAssign in the format of the steps
+				FileInputFormat.setInputPaths(job, new Path(args[0]));
+				StageFormat.setInputFormat(job);
+			}
+
+			// Write the pairs (Canopy id, Data Point) into the working set on the way, with their bounds in the bounded mode,
+			// or the pairs (membership, Data Point) as they are read
+			boolean writeWorkingSet = useWorkingSet && (DataPoint.NUM_ITERATIONS == 0 || bounded);
+			if(writeWorkingSet)
+			{
+				job.getConfiguration().setBoolean(ClusterCenterMapper.WRITE_WORKING_SET, true);
+				MultipleOutputs.addNamedOutput(job, ClusterCenterMapper.WORKING_SET, BlockFileOutputFormat.class,
+					membership ? CanopyMembership.class : IntWritable.class, bounded ? BoundedDataPoint.class : DataPoint.class);
+			}
 		
 			// Set the Mapper and Reducer class
 			job.setMapperClass(ClusterCenterMapper.class);
 			job.setReducerClass(ClusterCenterReducer.class);
+
+			// Send every k-Means Centroid to a reducer chosen by its id
+			job.setPartitionerClass(CentroidPartitioner.class);
+
+			// Merge the partial sums of each map task with the combiner, unless the mapper already aggregates them
+			if(!ClusterCenterMapper.IN_MAPPER.equals(configuration.get(ClusterCenterMapper.AGGREGATION, ClusterCenterMapper.COMBINER)))
+				job.setCombinerClass(ClusterCenterCombiner.class);
 		
 			// Specify the class types of the key and value produced by the mapper
-			job.setMapOutputKeyClass(DataPoint.class);
-			job.setMapOutputValueClass(DataPoint.class);
+			job.setMapOutputKeyClass(IntWritable.class);
+			job.setMapOutputValueClass(DataPointSum.class);
 		
 			// Specify the class types of the key and value produced by the reducer
 			job.setOutputKeyClass(IntWritable.class);
 			job.setOutputValueClass(DataPoint.class);
 	
-			job.waitForCompletion(true);
+			if(!job.waitForCompletion(true))
+				throw new IOException("Iteration " + DataPoint.NUM_ITERATIONS + " failed");
 
-			// Check if the k-Means Centroids have converged
-			if(DataPoint.NUM_ITERATIONS == 0)
+			// Move the working set out of the output folder, so that only the k-Means Centroids are left in it
+			if(writeWorkingSet)
 			{
-				if(hasConverged(args[2], args[3] + "_" + DataPoint.NUM_ITERATIONS))
-					break;
+				filesystem.delete(workingSetFolder, true);
+				if(!filesystem.rename(new Path(outputFolder, ClusterCenterMapper.WORKING_SET), workingSetFolder))
+					throw new IOException("Could not move the working set to " + workingSetFolder);
 			}
-			else
+
+			// Check if the k-Means Centroids have converged, from the counters of the reducers
+			boolean converged = hasConverged(job.getCounters(), kCentroids.size());
+
+			// The full iteration after the mini-batches is the last one
+			if(fullPass)
 			{
-				if(hasConverged(args[3] + "_" + (DataPoint.NUM_ITERATIONS - 1), args[3] + "_" + DataPoint.NUM_ITERATIONS))
-					break;
+				DataPoint.NUM_ITERATIONS++;
+				break;
 			}
+			if(converged && !(miniBatch && miniBatchFullPass))
+				break;
+
+			// Read the new k-Means Centroids from the part files of all reducers, to ship them to the next iteration
+			TreeMap<Integer, DataPoint> newKCentroids = DataPointReader.readById(filesystem, filesystem.makeQualified(outputFolder), true);
+			if(miniBatch)
+				kCentroidCounts = DataPointReader.readCounts(filesystem, new Path(outputFolder, ClusterCenterReducer.COUNTS));
 
+			// Freeze the centroids that cannot move in the next iteration
+			if(incremental)
+				frozenKCentroids = freeze(canopyCenters, kCentroids, newKCentroids);
+			previousKCentroids = kCentroids;
+			kCentroids = newKCentroids;
 			DataPoint.NUM_ITERATIONS++;
+
+			// End the mini-batches with a full iteration once they have converged or reached the limit of iterations
+			if(miniBatch && miniBatchFullPass && (converged || DataPoint.NUM_ITERATIONS >= maxIterations))
+			{
+				System.out.println("Full iteration over all Data Points after " + DataPoint.NUM_ITERATIONS + " mini-batches");
+				fullPass = true;
+			}
+
+			// Stop at the limit of iterations
+			else if(DataPoint.NUM_ITERATIONS >= maxIterations)
+			{
+				System.out.println("Stopping after " + maxIterations + " iterations without convergence");
+				break;
+			}
 		}
 
 		// Copy the final k-Means Centroids File to a fixed location
@@ -2,37 +2,256 @@ package cc.clustercenter;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
 
+import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.fs.FileSystem;
-import org.apache.hadoop.fs.Path;
 
+import cc.dataset.ByteParser;
+import cc.dataset.CanopyMembership;
+import cc.dataset.CentroidTable;
 import cc.dataset.DataPoint;
+import cc.dataset.DataPointSum;
+import cc.dataset.DistanceMetric;
+import cc.dataset.SideData;
 
 /**
   * Mapper class for the Cluster Center iteration step.
+  * Reads the output of CanopyAssign either as text lines or as (Canopy Center, Data Point) pairs of a BlockFile,
+  * or the (Canopy id, Data Point) pairs of the working set written from it in the first iteration.
+  * With canopyMembership, the output of CanopyAssign and the working set hold every Data Point once with the ids of its Canopies,
+  * and the Data Point is assigned to the nearest of the k-Means Centroids of all these Canopies.
+  * Writes the partial sums under the ids of the k-Means Centroids, which CentroidPartitioner spreads over the reducers.
+  * Frozen centroids are not updated any more, so no partial sums are written for them,
+  * and the Data Points of a Canopy whose centroids are all frozen are skipped.
+  * In the bounded assignment mode every iteration rewrites the working set with the assignment of every Data Point
+  * and bounds of its distances, from which the next iteration skips most of the distance computations.
+  * In a mini-batch, only a fraction of the Data Points of every Canopy is assigned.
   */
-public class ClusterCenterMapper extends Mapper<LongWritable, Text, DataPoint, DataPoint>
+public class ClusterCenterMapper extends Mapper<Writable, Writable, IntWritable, DataPointSum>
 {
 	/**
-	  * HashMap with keys as Canopy Centers and values as a list of k-Means Centroids associated in this Canopy.
+	  * Name of the configuration parameter selecting how the Data Points of a cluster are aggregated on the map side.
 	  */
-	HashMap<DataPoint, ArrayList<DataPoint>> canopyCenterKCentroidsMap;
+	public static final String AGGREGATION = "clusterCenterAggregation";
+
+	/**
+	  * Aggregation mode where every Data Point is written as its own partial sum and merged by ClusterCenterCombiner.
+	  */
+	public static final String COMBINER = "combiner";
+
+	/**
+	  * Aggregation mode where the mapper keeps one partial sum per k-Means Centroid and writes them all in cleanup.
+	  */
+	public static final String IN_MAPPER = "inmapper";
+
+	/**
+	  * Name of the configuration parameter enabling the working set, true by default.
+	  * The first iteration then writes every (Canopy id, Data Point) pair it reads into a BlockFile,
+	  * and the later iterations read those instead of the output of CanopyAssign.
+	  */
+	public static final String USE_WORKING_SET = "clusterCenterWorkingSet";
+
+	/**
+	  * Name of the configuration parameter set by the driver for the iteration writing the working set.
+	  */
+	public static final String WRITE_WORKING_SET = "clusterCenterWriteWorkingSet";
+
+	/**
+	  * Name of the output the working set is written to, and of its folder in the output folder of the iteration.
+	  */
+	public static final String WORKING_SET = "workingSet";
+
+	/**
+	  * Name of the configuration parameter selecting how a Data Point is assigned to a k-Means Centroid.
+	  */
+	public static final String ASSIGNMENT = "clusterCenterAssignment";
+
+	/**
+	  * Assignment mode computing the distance to every centroid of the Canopy, the default.
+	  */
+	public static final String FULL = "full";
+
+	/**
+	  * Assignment mode keeping an upper bound of the distance of every Data Point to its centroid and a lower bound of the
+	  * distance to the other centroids of its Canopy, as in Hamerly's variant of k-Means, in the working set.
+	  * After the bounds are moved by how far the centroids moved, the centroid is kept without computing any distance
+	  * as long as the upper bound stays below the lower bound, or below half the distance to the nearest other centroid.
+	  * The assignment is the same as in the full mode. Requires the working set, which is then written in every iteration,
+	  * and a DistanceMetric satisfying the triangle inequality.
+	  */
+	public static final String BOUNDED = "bounded";
+
+	/**
+	  * The metric of the distances, selected in the configuration.
+	  */
+	private DistanceMetric metric;
+
+	/**
+	  * The k-Means Centroids and their ids, in the order of the ids.
+	  */
+	private DataPoint[] kCentroids;
+	private IntWritable[] kCentroidIds;
+
+	/**
+	  * If the k-Means Centroid at the same offset in kCentroids is frozen.
+	  */
+	private boolean[] frozen;
+
+	/**
+	  * HashMap with keys as Canopy Centers and values as their ids, the position in the shipped list starting at 1.
+	  */
+	private HashMap<DataPoint, IntWritable> canopyCenterIds;
+
+	/**
+	  * Offsets in kCentroids of the k-Means Centroids associated with every Canopy, at the id of the Canopy.
+	  * Null for a Canopy without centroids.
+	  */
+	private int[][] canopyKCentroidOffsets;
+
+	/**
+	  * The k-Means Centroids associated with every Canopy in columns, in the order of canopyKCentroidOffsets at the id of the Canopy.
+	  * Used by the full assignment mode.
+	  */
+	private CentroidTable[] canopyKCentroidTables;
+
+	/**
+	  * If all the centroids associated with the Canopy at the same id are frozen.
+	  */
+	private boolean[] frozenCanopies;
+
+	/**
+	  * If the output of CanopyAssign holds the membership of every Data Point rather than (Canopy Center, Data Point) pairs.
+	  */
+	private boolean membershipInput;
+
+	/**
+	  * Membership every text record is parsed into. Reused by every call of map.
+	  */
+	private CanopyMembership membership;
+
+	/**
+	  * The union of the k-Means Centroids of the Canopies of every membership seen so far.
+	  * Data Points near each other share their memberships, so there are few of them.
+	  */
+	private HashMap<CanopyMembership, CanopyUnion> canopyUnions;
+
+	/**
+	  * Number of Data Points skipped in frozen Canopies, added to the counter in cleanup.
+	  */
+	private long frozenPoints;
+
+	/**
+	  * If the partial sums are aggregated in the mapper.
+	  */
+	private boolean inMapperAggregation;
+
+	/**
+	  * Partial sum of the Data Points assigned to every k-Means Centroid so far, at the offset of the centroid in kCentroids.
+	  * Null for a centroid no Data Point was assigned to. Only used for in-mapper aggregation.
+	  */
+	private DataPointSum[] partialSums;
+
+	/**
+	  * Writer of the working set, null unless this iteration writes it.
+	  */
+	private MultipleOutputs<IntWritable, DataPointSum> workingSet;
+
+	/**
+	  * Canopy Center and Data Point every text record is parsed into. Reused by every call of map.
+	  */
+	private DataPoint canopyCenter, dataPoint;
+
+	/**
+	  * If the Data Points are assigned with bounds.
+	  */
+	private boolean bounded;
+
+	/**
+	  * Bounded Data Point every record of the first iteration is copied into in the bounded mode. Reused by every call of map.
+	  */
+	private BoundedDataPoint boundedPoint;
+
+	/**
+	  * Offset in kCentroids of every k-Means Centroid at its id, -1 for ids without a centroid.
+	  */
+	private int[] offsetsById;
+
+	/**
+	  * Distance every k-Means Centroid moved since the previous iteration, at its offset in kCentroids.
+	  * Infinite for a centroid without a previous position.
+	  */
+	private double[] drifts;
+
+	/**
+	  * Half the distance from every centroid of a Canopy to the nearest other centroid of the Canopy,
+	  * in the order of canopyKCentroidOffsets at the id of the Canopy.
+	  */
+	private double[][] canopyHalfGaps;
+
+	/**
+	  * Half the distances between the centroids of every Canopy, in the order of canopyKCentroidOffsets at the id of the Canopy.
+	  * A centroid at least twice as far from the nearest centroid found so far as the Data Point cannot be nearer to it.
+	  */
+	private double[][][] canopyHalfDistances;
+
+	/**
+	  * Distance from the Data Point to every centroid of its Canopy, or a lower bound of it. Reused by every call of assignBounded.
+	  */
+	private double[] candidateDistances;
+
+	/**
+	  * Largest drift of the centroids of every Canopy, the offset of the centroid with that drift and the second largest drift,
+	  * by which the lower bounds of the Data Points of the Canopy are lowered.
+	  * A centroid that was not within T1 of the Canopy in the previous iteration is not covered by the lower bounds,
+	  * so its drift counts as infinite here.
+	  */
+	private double[] canopyMaxDrifts, canopySecondDrifts;
+	private int[] canopyMaxDriftOffsets;
+
+	/**
+	  * Number of distances computed, added to the counter in cleanup.
+	  */
+	private long distances;
+
+	/**
+	  * Fraction of the Data Points sampled into a mini-batch, and the number of Data Points sampled, added to the counter in cleanup.
+	  */
+	private double sampleFraction;
+	private long sampledPoints;
+
+	/**
+	  * Credit of every Canopy towards sampling its next Data Point, at the id of the Canopy. Null unless this iteration is a mini-batch.
+	  */
+	private double[] sampleCredits;
+
+	/**
+	  * Partial sum written for a single Data Point when aggregating with the combiner. Reused by every call of map.
+	  */
+	private DataPointSum pointSum;
 
 	/**
 	  * Overridden setup method of Mapper class.
 	  * Parameters:	Context context
 	  * Returns:	Nothing
-	  * 
-	  * Reads the file containing k-Means Centroids, parses it and loads the Centroids into the ArrayList kCentroids
-	  * Reads the file containing canopy centers, parses it and loads the Canopy Centers into the ArrayList canopyCenters
-	  * Creates a HashMap (Canopy Center, List of Centroids in this canopy)
+	  *
+	  * Loads the k-Means Centroids and their ids shipped by the driver into the arrays kCentroids and kCentroidIds
+	  * Loads the Canopy Centers shipped by the driver with their ids
+	  * Both are memory-mapped from their local copies in the distributed cache
+	  * Loads the ids of the frozen k-Means Centroids
+	  * Creates a HashMap (Canopy Center, Canopy id) and an array of the offsets of the Centroids in every canopy,
+	  * and marks the canopies whose Centroids are all frozen
+	  * Reads the aggregation mode from the configuration, and opens the working set if this iteration writes it
+	  * In the bounded mode, sets up the drifts of the centroids and the bounds of every canopy
+	  * In a mini-batch, starts the sampling of every canopy at a random phase
 	  */
 	@Override
 	public void setup(Context context)
@@ -41,115 +260,643 @@ public class ClusterCenterMapper extends Mapper<LongWritable, Text, DataPoint, D
 		// Call setup of super class
 		super.setup(context);
 
-		// Allocate memory for kCentroids, canopyCenters and the HashMap
-		ArrayList<DataPoint> kCentroids = new ArrayList<DataPoint>();
-		ArrayList<DataPoint> canopyCenters = new ArrayList<DataPoint>();
-		canopyCenterKCentroidsMap = new HashMap<DataPoint, ArrayList<DataPoint>>();
+		// Use the Data Point schema of the job
+		DataPoint.configure(context.getConfiguration());
+
+		// Allocate memory for the HashMap
+		canopyCenterIds = new HashMap<DataPoint, IntWritable>();
 
 		// Get the context's configuration
 		Configuration configuration = context.getConfiguration();
 
-		int NUM_ITERATIONS = Integer.parseInt(configuration.get("NUM_ITERATIONS"));
+		// Set up the aggregation of partial sums
+		inMapperAggregation = IN_MAPPER.equals(configuration.get(AGGREGATION, COMBINER));
+		pointSum = new DataPointSum();
 
-		// Get a handle of the HDFS
-		FileSystem filesystem = FileSystem.get(configuration);
-		
-		// Read the k-Means Centroid File
-		BufferedReader centroidReader = new BufferedReader(new InputStreamReader(filesystem.open(
-			new Path(configuration.get("fs.default.name") + configuration.get("kCentroidsFile")))));
-		String line = centroidReader.readLine();
-		while(line != null)
+		// Open the working set
+		if(configuration.getBoolean(WRITE_WORKING_SET, false))
+			workingSet = new MultipleOutputs<IntWritable, DataPointSum>(context);
+
+		// Allocate the objects the records are parsed into
+		canopyCenter = new DataPoint();
+		dataPoint = new DataPoint();
+		membershipInput = CanopyMembership.isEnabled(configuration);
+		membership = new CanopyMembership();
+		canopyUnions = new HashMap<CanopyMembership, CanopyUnion>();
+
+		metric = DistanceMetric.create(configuration);
+
+		// Load the k-Means Centroids, the frozen ones and the Canopy Centers with their ids
+		TreeMap<Integer, DataPoint> kCentroidsById = SideData.loadById(configuration, SideData.K_CENTROIDS);
+		TreeMap<Integer, DataPoint> frozenKCentroids = SideData.loadById(configuration, SideData.FROZEN_K_CENTROIDS);
+		TreeMap<Integer, DataPoint> canopyCentersById = SideData.loadById(configuration, SideData.CANOPY_CENTERS);
+
+		// Keep the centroids in arrays, with one reusable output key per centroid
+		kCentroids = new DataPoint[kCentroidsById.size()];
+		kCentroidIds = new IntWritable[kCentroidsById.size()];
+		frozen = new boolean[kCentroidsById.size()];
+		int offset = 0;
+		for(Map.Entry<Integer, DataPoint> entry : kCentroidsById.entrySet())
 		{
-			DataPoint kCentroid = null;
-			if(NUM_ITERATIONS == 0)
-				kCentroid =  new DataPoint(line);
-			else
+			kCentroids[offset] = entry.getValue();
+			kCentroidIds[offset] = new IntWritable(entry.getKey());
+			frozen[offset] = frozenKCentroids.containsKey(entry.getKey());
+			offset++;
+		}
+		partialSums = new DataPointSum[kCentroids.length];
+
+		// Set up the HashMap and the array
+		canopyKCentroidOffsets = new int[canopyCentersById.isEmpty() ? 0 : canopyCentersById.lastKey() + 1][];
+		canopyKCentroidTables = new CentroidTable[canopyKCentroidOffsets.length];
+		frozenCanopies = new boolean[canopyKCentroidOffsets.length];
+		frozenPoints = 0;
+		for(Map.Entry<Integer, DataPoint> entry : canopyCentersById.entrySet())
+		{
+			DataPoint canopyCenter = entry.getValue();
+			canopyCenterIds.put(canopyCenter, new IntWritable(entry.getKey()));
+
+			// For each Canopy Center, create an ArrayList of the offsets of all k-Means Centroids within this Canopy
+			ArrayList<Integer> offsetList = new ArrayList<Integer>();
+			boolean allFrozen = true;
+
+			for(int i = 0; i < kCentroids.length; i++)
 			{
-				int tabPosition = line.indexOf("\t");
-				kCentroid =  new DataPoint(line.substring(tabPosition + 1));
+				// If a k-Means Centroid is within this Canopy, add its offset to the ArrayList
+				if(canopyCenter.withinT1(kCentroids[i]))
+				{
+					offsetList.add(i);
+					allFrozen &= frozen[i];
+				}
+			}
+
+			// The Data Points of a Canopy whose centroids are all frozen keep their assignment, and none of the centroids is updated
+			if(offsetList.size() > 0 && allFrozen)
+				frozenCanopies[entry.getKey()] = true;
+
+			// Keep the offsets of all the k-Means Centroids in this Canopy at the id of the Canopy.
+			// Those of a frozen Canopy are only used in the union with other Canopies
+			if(offsetList.size() > 0)
+			{
+				int[] offsets = new int[offsetList.size()];
+				for(int i = 0; i < offsets.length; i++)
+					offsets[i] = offsetList.get(i);
+				canopyKCentroidOffsets[entry.getKey()] = offsets;
+				canopyKCentroidTables[entry.getKey()] = new CentroidTable(kCentroids, offsets, metric);
 			}
-			kCentroids.add(kCentroid);
-			line = centroidReader.readLine();
 		}
 
-		// Read the Canopy Centers file
-		BufferedReader canopyReader = new BufferedReader(new InputStreamReader(filesystem.open(
-			new Path(configuration.get("fs.default.name") + configuration.get("canopyCentersFile")))));
-		line = canopyReader.readLine();
-		while(line != null)
+		// Set up the sampling of a mini-batch. The phases differ in every iteration and every map task
+		sampleFraction = configuration.getFloat(ClusterCenterDriver.MINI_BATCH_FRACTION, 1);
+		sampledPoints = 0;
+		if(sampleFraction < 1)
 		{
-			int tabPosition = line.indexOf("\t");
-			DataPoint canopyCenter =  new DataPoint(line.substring(tabPosition + 1));
-			canopyCenters.add(canopyCenter);
-			line = canopyReader.readLine();
+			Random random = new Random((configuration.getLong(ClusterCenterDriver.MINI_BATCH_SEED, 0) * 1000003
+				+ configuration.getLong(ClusterCenterDriver.ITERATION, 0)) * 1000003 + context.getTaskAttemptID().getTaskID().getId());
+			sampleCredits = new double[canopyKCentroidOffsets.length];
+			for(int i = 0; i < sampleCredits.length; i++)
+				sampleCredits[i] = random.nextDouble();
 		}
 
-		// Set up the HashMap
-		for(DataPoint canopyCenter : canopyCenters)
+		// Set up the bounded assignment
+		distances = 0;
+		bounded = BOUNDED.equals(configuration.get(ASSIGNMENT, FULL));
+		if(bounded)
 		{
-			// For each Canopy Center, create an ArrayList of all Data Points within this Canopy
-			ArrayList<DataPoint> centroidList = new ArrayList<DataPoint>();
+			boundedPoint = new BoundedDataPoint();
+			setupBounds(SideData.loadById(configuration, SideData.PREVIOUS_K_CENTROIDS), canopyCentersById);
+		}
+	}
 
-			for(DataPoint kCentroid : kCentroids)
+	/**
+	  * Sets up the bounded assignment
+	  * Parameters:	TreeMap<Integer, DataPoint> previousKCentroids, the k-Means Centroids of the previous iteration by id
+	  * 			TreeMap<Integer, DataPoint> canopyCentersById, the Canopy Centers by id
+	  * Returns:	Nothing
+	  *
+	  * Finds the offset of every centroid by id and how far it moved since the previous iteration.
+	  * For every Canopy, finds half the distance from each of its centroids to the nearest other one and the two largest drifts.
+	  * A centroid that left the Canopy only raises the distance to the nearest other centroid, so it does not matter
+	  * unless the Data Point was assigned to it, but one that entered the Canopy drops the lower bounds.
+	  */
+	private void setupBounds(TreeMap<Integer, DataPoint> previousKCentroids, TreeMap<Integer, DataPoint> canopyCentersById)
+	{
+		// Find the offsets by id and the drifts of the centroids
+		offsetsById = new int[kCentroids.length == 0 ? 0 : kCentroidIds[kCentroids.length - 1].get() + 1];
+		Arrays.fill(offsetsById, -1);
+		drifts = new double[kCentroids.length];
+		for(int i = 0; i < kCentroids.length; i++)
+		{
+			offsetsById[kCentroidIds[i].get()] = i;
+			DataPoint previousKCentroid = previousKCentroids.get(kCentroidIds[i].get());
+			drifts[i] = (previousKCentroid == null ? Double.POSITIVE_INFINITY : metric.distance(previousKCentroid, kCentroids[i]));
+			distances++;
+		}
+
+		canopyHalfGaps = new double[canopyKCentroidOffsets.length][];
+		canopyHalfDistances = new double[canopyKCentroidOffsets.length][][];
+		candidateDistances = new double[0];
+		canopyMaxDrifts = new double[canopyKCentroidOffsets.length];
+		canopySecondDrifts = new double[canopyKCentroidOffsets.length];
+		canopyMaxDriftOffsets = new int[canopyKCentroidOffsets.length];
+		for(Map.Entry<Integer, DataPoint> entry : canopyCentersById.entrySet())
+		{
+			int[] offsets = canopyKCentroidOffsets[entry.getKey()];
+			if(offsets == null || frozenCanopies[entry.getKey()])
+				continue;
+
+			// Find half the distances between the centroids of the Canopy, and from every centroid to the nearest other one
+			double[][] halfDistances = new double[offsets.length][offsets.length];
+			double[] halfGaps = new double[offsets.length];
+			Arrays.fill(halfGaps, Double.POSITIVE_INFINITY);
+			for(int i = 0; i < offsets.length; i++)
 			{
-				// If a k-Means Centroid is within this Canopy, add it to the ArrayList
-				if(canopyCenter.withinT1(kCentroid))
-						centroidList.add(kCentroid);
+				for(int j = i + 1; j < offsets.length; j++)
+				{
+					double halfDistance = 0.5 * metric.distance(kCentroids[offsets[i]], kCentroids[offsets[j]]);
+					distances++;
+					halfDistances[i][j] = halfDistance;
+					halfDistances[j][i] = halfDistance;
+					halfGaps[i] = Math.min(halfGaps[i], halfDistance);
+					halfGaps[j] = Math.min(halfGaps[j], halfDistance);
+				}
 			}
+			canopyHalfDistances[entry.getKey()] = halfDistances;
+			canopyHalfGaps[entry.getKey()] = halfGaps;
+			if(candidateDistances.length < offsets.length)
+				candidateDistances = new double[offsets.length];
 
-			// Add all the k-Means Centroids in this Canopy to the HashMap as this Canopy Center's value
-			if(centroidList.size() > 0)
-				canopyCenterKCentroidsMap.put(canopyCenter, centroidList);
+			// Find the two largest drifts, infinite for a centroid that entered the Canopy
+			int maxDriftOffset = -1;
+			double maxDrift = 0, secondDrift = 0;
+			for(int i = 0; i < offsets.length; i++)
+			{
+				DataPoint previousKCentroid = previousKCentroids.get(kCentroidIds[offsets[i]].get());
+				double drift = (previousKCentroid != null && entry.getValue().withinT1(previousKCentroid)
+					? drifts[offsets[i]] : Double.POSITIVE_INFINITY);
+				if(maxDriftOffset < 0 || drift > maxDrift)
+				{
+					secondDrift = maxDrift;
+					maxDrift = drift;
+					maxDriftOffset = offsets[i];
+				}
+				else
+					secondDrift = Math.max(secondDrift, drift);
+			}
+			canopyMaxDrifts[entry.getKey()] = maxDrift;
+			canopySecondDrifts[entry.getKey()] = secondDrift;
+			canopyMaxDriftOffsets[entry.getKey()] = maxDriftOffset;
 		}
 	}
 
 	/**
 	  * Overridden map function of Mapper Class
-	  * Parameters:	LongWritable key, an offset in the file
-	  * 			Text value, A tab separated String of Canopy Center and Data Point
+	  * Parameters:	Writable key, an offset in the file, the Canopy Center, the membership, or the Canopy id of a working set record
+	  * 			Writable value, A tab separated Text of Canopy Center or membership and Data Point, or the Data Point
 	  *				Context context
 	  * Returns:	(key, value) pairs where
-	  *				key is a Canopy Center associated with the current Data Point
-	  *				value is the Data Point being considered
-	  * 
-	  * The function receives a (key, value) pair, parses it into the Canopy Center and Data Point.
-	  * The HashMap canopyCenterKCentroidsMap is looked up with the key as the Canopy Center and a list of K-Means Centroids in obtained.
-	  * For each K-Means Centroid, we find the (complex or expensive) distance of the Data Point with the Centroid.
-	  * The pair (K-Means Centroid, DataPoint) with the minimum distance is written as output.
+	  *				key is the id of the k-Means Centroid nearest to the current Data Point
+	  *				value is the partial sum of the Data Point being considered
+	  *
+	  * The function receives a (key, value) pair. A record of the working set already holds the id of its Canopy.
+	  * Otherwise a Text value is parsed into the reused Canopy Center and Data Point objects,
+	  * or the key and value already are the Canopy Center and Data Point, and the Canopy Center is looked up in the HashMap.
+	  * In the iteration writing the working set, the pair (Canopy id, Data Point) is also written to it.
+	  * In the bounded mode, the Data Point is assigned with its bounds, and written to the working set with them.
+	  * A Data Point read with its membership is assigned over the union of its Canopies, and written to the working set as read.
 	  */
 	@Override
-	public void map(LongWritable key, Text value, Context context)
+	public void map(Writable key, Writable value, Context context)
 		throws IOException, InterruptedException
 	{
-		// Convert the value from Text to String 
-		String keyValueString = value.toString();
+		if(key instanceof IntWritable)
+		{
+			if(value instanceof BoundedDataPoint)
+				assignBounded((IntWritable) key, (BoundedDataPoint) value, context);
+			else
+				assign(((IntWritable) key).get(), (DataPoint) value, context);
+			return;
+		}
+
+		if(key instanceof CanopyMembership || (membershipInput && value instanceof Text))
+		{
+			CanopyMembership pairMembership;
+			DataPoint pairDataPoint;
+			if(value instanceof Text)
+			{
+				// Parse the bytes of the value on both sides of the tab into the membership and Data Point
+				Text line = (Text) value;
+				byte[] bytes = line.getBytes();
+				int tabPosition = ByteParser.indexOf(bytes, 0, line.getLength(), (byte) '\t');
+				membership.parse(bytes, 0, tabPosition);
+				dataPoint.parse(bytes, tabPosition + 1, line.getLength());
+				pairMembership = membership;
+				pairDataPoint = dataPoint;
+			}
+			else
+			{
+				pairMembership = (CanopyMembership) key;
+				pairDataPoint = (DataPoint) value;
+			}
+
+			if(workingSet != null)
+				workingSet.write(WORKING_SET, pairMembership, pairDataPoint, WORKING_SET + "/part");
+			assignUnion(pairMembership, pairDataPoint, context);
+			return;
+		}
+
+		DataPoint pairCanopyCenter, pairDataPoint;
+		if(value instanceof Text)
+		{
+			// Parse the bytes of the value on both sides of the tab into the Canopy Center and Data Point
+			Text line = (Text) value;
+			byte[] bytes = line.getBytes();
+			int tabPosition = ByteParser.indexOf(bytes, 0, line.getLength(), (byte) '\t');
+			canopyCenter.parse(bytes, 0, tabPosition);
+			dataPoint.parse(bytes, tabPosition + 1, line.getLength());
+			pairCanopyCenter = canopyCenter;
+			pairDataPoint = dataPoint;
+		}
+		else
+		{
+			pairCanopyCenter = (DataPoint) key;
+			pairDataPoint = (DataPoint) value;
+		}
+
+		// Find the id of the Canopy. A Data Point of an unknown Canopy is never assigned, so it is left out of the working set too
+		IntWritable canopyId = canopyCenterIds.get(pairCanopyCenter);
+		if(canopyId == null)
+			return;
+
+		// Start without an assignment and bounds in the bounded mode
+		if(bounded)
+		{
+			boundedPoint.reset(pairDataPoint);
+			assignBounded(canopyId, boundedPoint, context);
+			return;
+		}
+
+		if(workingSet != null)
+			workingSet.write(WORKING_SET, canopyId, pairDataPoint, WORKING_SET + "/part");
+		assign(canopyId.get(), pairDataPoint, context);
+	}
+
+	/**
+	  * Assigns a Data Point to a k-Means Centroid of its Canopy
+	  * Parameters:	int canopyId, the id of the Canopy of the pair
+	  * 			DataPoint dataPoint, the Data Point of the pair
+	  *				Context context
+	  * Returns:	Nothing
+	  *
+	  * The array canopyKCentroidOffsets is looked up with the Canopy id and the offsets of K-Means Centroids in obtained.
+	  * The table of the K-Means Centroids of the Canopy finds the first centroid with the minimum distance to the Data Point.
+	  * The pair (id of the K-Means Centroid, partial sum of the DataPoint) with the minimum distance is written as output,
+	  * unless the centroid is frozen.
+	  * With in-mapper aggregation, the Data Point is added to the partial sum of the centroid instead, which is written in cleanup.
+	  * In a mini-batch, a Data Point that is not sampled is left out.
+	  */
+	private void assign(int canopyId, DataPoint dataPoint, Context context)
+		throws IOException, InterruptedException
+	{
+		// Count the Data Points skipped because all the centroids of their Canopy are frozen
+		if(frozenCanopies[canopyId])
+		{
+			frozenPoints++;
+			return;
+		}
+
+		// Leave out the Data Points not sampled into the mini-batch
+		if(sampleCredits != null && !sample(canopyId))
+			return;
+
+		// Get the offsets of the k-Means Centroids in this Canopy
+		int[] offsets = canopyKCentroidOffsets[canopyId];
+		if(offsets != null)
+		{
+			// Find the centroid with the minimum distance, computing the distance to every centroid of the Canopy
+			int nearest = canopyKCentroidTables[canopyId].nearest(dataPoint);
+			distances += offsets.length;
+
+			emit(offsets[nearest], dataPoint, context);
+		}
+	}
+
+	/**
+	  * Assigns a Data Point to a k-Means Centroid of any of its Canopies
+	  * Parameters:	CanopyMembership canopyMembership, the ids of the Canopies of the Data Point
+	  * 			DataPoint dataPoint, the Data Point
+	  *				Context context
+	  * Returns:	Nothing
+	  *
+	  * As assign, over the union of the k-Means Centroids of the Canopies, which is found once per membership.
+	  * The Data Point is skipped if the centroids of all its Canopies are frozen,
+	  * and in a mini-batch it is sampled with the credit of its first Canopy.
+	  */
+	private void assignUnion(CanopyMembership canopyMembership, DataPoint dataPoint, Context context)
+		throws IOException, InterruptedException
+	{
+		CanopyUnion union = canopyUnions.get(canopyMembership);
+		if(union == null)
+		{
+			union = new CanopyUnion(canopyMembership);
+			canopyUnions.put(new CanopyMembership(canopyMembership), union);
+		}
+
+		// Count the Data Points skipped because all the centroids of their Canopies are frozen
+		if(union.frozen)
+		{
+			frozenPoints++;
+			return;
+		}
+
+		// A Data Point whose Canopies have no centroids is not assigned
+		if(union.offsets == null)
+			return;
+
+		// Leave out the Data Points not sampled into the mini-batch
+		if(sampleCredits != null && !sample(canopyMembership.get(0)))
+			return;
+
+		// Find the centroid with the minimum distance, computing the distance to every centroid of the union
+		int nearest = union.table.nearest(dataPoint);
+		distances += union.offsets.length;
+
+		emit(union.offsets[nearest], dataPoint, context);
+	}
+
+	/**
+	  * The k-Means Centroids of all the Canopies of a membership
+	  */
+	private class CanopyUnion
+	{
+		/**
+		  * Offsets in kCentroids of the centroids, in increasing order, and the centroids in columns in the same order.
+		  * Null if none of the Canopies has centroids.
+		  */
+		final int[] offsets;
+		final CentroidTable table;
+
+		/**
+		  * If all the Canopies with centroids are frozen
+		  */
+		final boolean frozen;
+
+		/**
+		  * Finds the union of the centroids of the Canopies of a membership
+		  * Parameters:	CanopyMembership canopyMembership, the ids of the Canopies
+		  *
+		  * The ids of unknown Canopies are left out.
+		  */
+		CanopyUnion(CanopyMembership canopyMembership)
+		{
+			boolean[] inUnion = new boolean[kCentroids.length];
+			int count = 0;
+			boolean allFrozen = true;
+			for(int i = 0; i < canopyMembership.size(); i++)
+			{
+				int canopyId = canopyMembership.get(i);
+				if(canopyId < 0 || canopyId >= canopyKCentroidOffsets.length || canopyKCentroidOffsets[canopyId] == null)
+					continue;
+				allFrozen &= frozenCanopies[canopyId];
+				for(int offset : canopyKCentroidOffsets[canopyId])
+				{
+					if(!inUnion[offset])
+					{
+						inUnion[offset] = true;
+						count++;
+					}
+				}
+			}
+
+			if(count == 0)
+			{
+				offsets = null;
+				table = null;
+				frozen = false;
+				return;
+			}
+			offsets = new int[count];
+			count = 0;
+			for(int offset = 0; offset < inUnion.length; offset++)
+			{
+				if(inUnion[offset])
+					offsets[count++] = offset;
+			}
+			table = new CentroidTable(kCentroids, offsets, metric);
+			frozen = allFrozen;
+		}
+	}
 
-		// Parse the value to get Canopy Center and Data Point
-		int tabPosition = keyValueString.indexOf("\t");
-		DataPoint canopyCenter = new DataPoint(keyValueString.substring(0, tabPosition));
-		DataPoint dataPoint = new DataPoint(keyValueString.substring(tabPosition + 1));
+	/**
+	  * Decides if the next Data Point of a Canopy is sampled into the mini-batch
+	  * Parameters:	int canopyId, the id of the Canopy
+	  * Returns:	true if the Data Point is sampled
+	  *
+	  * Every Data Point adds the fraction to the credit of its Canopy, and is sampled when the credit reaches 1.
+	  * So every Canopy contributes the fraction of its Data Points, rounded up or down, to the mini-batch of each map task.
+	  */
+	private boolean sample(int canopyId)
+	{
+		sampleCredits[canopyId] += sampleFraction;
+		if(sampleCredits[canopyId] < 1)
+			return false;
+		sampleCredits[canopyId] -= 1;
+		sampledPoints++;
+		return true;
+	}
+
+	/**
+	  * Assigns a Data Point to a k-Means Centroid of its Canopy with the bounds of its distances
+	  * Parameters:	IntWritable canopyId, the id of the Canopy of the pair
+	  * 			BoundedDataPoint point, the Data Point with its assignment and bounds from the previous iteration
+	  *				Context context
+	  * Returns:	Nothing
+	  *
+	  * The upper bound is raised by the drift of the assigned centroid, and the lower bound lowered by the largest drift
+	  * of the other centroids of the Canopy. The centroid is kept if the upper bound is below the lower bound or below half
+	  * the distance to the nearest other centroid, or else below it once the upper bound is tightened to the exact distance.
+	  * Otherwise, or if the centroid is no longer in the Canopy, the nearest centroid of the Canopy is searched,
+	  * skipping the centroids the table of distances between centroids shows to be farther than the nearest one so far,
+	  * and the bounds are the nearest distance and the second nearest distance or its lower bound.
+	  * The Data Point is written to the working set with its new assignment and bounds, and its partial sum is written
+	  * as in the full mode. The Data Points of frozen Canopies are written to the working set unchanged.
+	  */
+	private void assignBounded(IntWritable canopyId, BoundedDataPoint point, Context context)
+		throws IOException, InterruptedException
+	{
+		// The centroids of a frozen Canopy do not move, so the bounds stay valid
+		if(frozenCanopies[canopyId.get()])
+		{
+			frozenPoints++;
+			workingSet.write(WORKING_SET, canopyId, point, WORKING_SET + "/part");
+			return;
+		}
 
-		// Get the list of k-Means Centroids in this Canopy
-		ArrayList<DataPoint> centroids = canopyCenterKCentroidsMap.get(canopyCenter);
-		if(centroids != null)
+		// A Data Point of a Canopy without centroids is not assigned
+		int[] offsets = canopyKCentroidOffsets[canopyId.get()];
+		if(offsets == null)
 		{
-			// Set the minimum distance to the maximum value a double can hold and create
-			double minDistance = Double.MAX_VALUE;
-			int offset = -1;
+			point.setAssignment(BoundedDataPoint.NO_CENTROID, 0, 0);
+			workingSet.write(WORKING_SET, canopyId, point, WORKING_SET + "/part");
+			return;
+		}
+
+		DataPoint dataPoint = point.getDataPoint();
 
-			for(int i = 0; i < centroids.size(); i++)
+		// Find the position of the assigned centroid in the Canopy
+		int position = -1;
+		int centroidId = point.getCentroidId();
+		if(centroidId >= 0 && centroidId < offsetsById.length)
+		{
+			for(int i = 0; i < offsets.length; i++)
 			{
-				DataPoint centroid = centroids.get(i);
-				double distance = dataPoint.complexDistance(centroid);
+				if(offsets[i] == offsetsById[centroidId])
+					position = i;
+			}
+		}
+
+		int offset = -1;
+		int nearest = -1;
+		double minDistance = Double.POSITIVE_INFINITY;
+		if(position >= 0)
+		{
+			// Move the bounds by the drifts of the centroids, the lower bound is dropped if another centroid entered the Canopy
+			double upperBound = point.getUpperBound() + drifts[offsets[position]];
+			double lowerDrift = (offsets[position] == canopyMaxDriftOffsets[canopyId.get()]
+				? canopySecondDrifts[canopyId.get()] : canopyMaxDrifts[canopyId.get()]);
+			double lowerBound = (lowerDrift == Double.POSITIVE_INFINITY ? Double.NEGATIVE_INFINITY : point.getLowerBound() - lowerDrift);
+			double bound = Math.max(canopyHalfGaps[canopyId.get()][position], lowerBound);
+
+			// Tighten the upper bound to the distance if it is not below the bound, and start the search from it
+			if(upperBound >= bound)
+			{
+				upperBound = metric.distance(dataPoint, kCentroids[offsets[position]]);
+				distances++;
+				nearest = position;
+				minDistance = upperBound;
+			}
+
+			// Keep the centroid
+			if(upperBound < bound)
+			{
+				offset = offsets[position];
+				point.setAssignment(centroidId, upperBound, lowerBound);
+			}
+		}
+
+		if(offset < 0)
+		{
+			// Start from the assigned centroid if its distance is known, or else from the first centroid
+			if(nearest < 0)
+			{
+				nearest = 0;
+				minDistance = metric.distance(dataPoint, kCentroids[offsets[0]]);
+				distances++;
+			}
+			candidateDistances[nearest] = minDistance;
+
+			// Find the nearest centroid, skipping the centroids more than twice as far from the nearest one so far as the Data Point.
+			// Of equally near centroids the first one is taken, as in assign
+			double[][] halfDistances = canopyHalfDistances[canopyId.get()];
+			for(int i = 0; i < offsets.length; i++)
+			{
+				if(i == nearest)
+					continue;
+
+				if(halfDistances[nearest][i] > minDistance)
+				{
+					// By the triangle inequality, the distance is at least this lower bound, which is above minDistance
+					candidateDistances[i] = 2 * halfDistances[nearest][i] - minDistance;
+					continue;
+				}
 
-				// Check if the distance is less than the minimum distance found so far
-				if(distance < minDistance)
+				double distance = metric.distance(dataPoint, kCentroids[offsets[i]]);
+				distances++;
+				candidateDistances[i] = distance;
+				if(distance < minDistance || (distance == minDistance && i < nearest))
 				{
 					minDistance = distance;
-					offset = i;
+					nearest = i;
 				}
 			}
-			context.write(centroids.get(offset), dataPoint);
+
+			// The lower bound is the second nearest distance, or its lower bound
+			double secondDistance = Double.POSITIVE_INFINITY;
+			for(int i = 0; i < offsets.length; i++)
+			{
+				if(i != nearest)
+					secondDistance = Math.min(secondDistance, candidateDistances[i]);
+			}
+			offset = offsets[nearest];
+			point.setAssignment(kCentroidIds[offset].get(), minDistance, secondDistance);
+		}
+
+		workingSet.write(WORKING_SET, canopyId, point, WORKING_SET + "/part");
+		emit(offset, dataPoint, context);
+	}
+
+	/**
+	  * Writes the partial sum of a Data Point assigned to a k-Means Centroid
+	  * Parameters:	int offset, the offset of the centroid in kCentroids
+	  * 			DataPoint dataPoint, the Data Point
+	  *				Context context
+	  * Returns:	Nothing
+	  *
+	  * Nothing is written for a frozen centroid. With in-mapper aggregation, the Data Point is added to the partial sum
+	  * of the centroid instead.
+	  */
+	private void emit(int offset, DataPoint dataPoint, Context context)
+		throws IOException, InterruptedException
+	{
+		// A frozen centroid is not updated, so the Data Points assigned to it are left out
+		if(frozen[offset])
+			return;
+
+		if(inMapperAggregation)
+		{
+			// Add the Data Point to the partial sum of the centroid
+			if(partialSums[offset] == null)
+				partialSums[offset] = new DataPointSum();
+			partialSums[offset].add(dataPoint);
 		}
+		else
+		{
+			// Write the Data Point as a partial sum of its own
+			pointSum.clear();
+			pointSum.add(dataPoint);
+			context.write(kCentroidIds[offset], pointSum);
+		}
+	}
+
+	/**
+	  * Overridden cleanup method of Mapper class.
+	  * Parameters:	Context context
+	  * Returns:	(key, value) pairs where
+	  *				key is the id of a k-Means Centroid
+	  *				value is the partial sum of all the Data Points of this mapper assigned to the centroid
+	  *
+	  * Writes the partial sums aggregated in the mapper, one per k-Means Centroid, and closes the working set.
+	  */
+	@Override
+	public void cleanup(Context context)
+		throws IOException, InterruptedException
+	{
+		for(int i = 0; i < partialSums.length; i++)
+		{
+			if(partialSums[i] != null)
+			{
+				context.write(kCentroidIds[i], partialSums[i]);
+				partialSums[i] = null;
+			}
+		}
+
+		if(workingSet != null)
+			workingSet.close();
+
+		context.getCounter(ClusterCenterCounter.FROZEN_POINTS).increment(frozenPoints);
+		context.getCounter(ClusterCenterCounter.DISTANCES).increment(distances);
+		context.getCounter(ClusterCenterCounter.MINI_BATCH_POINTS).increment(sampledPoints);
+
+		// Call cleanup of super class
+		super.cleanup(context);
 	}
-}
\ No newline at end of file
+}
@@ -1,45 +1,262 @@
 package cc.clustercenter;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
 
 import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.Counter;
 import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 
 import cc.dataset.DataPoint;
+import cc.dataset.DataPointSum;
+import cc.dataset.SideData;
 
 /**
   * Reducer class for the Cluster Center iteration step.
+  * Every k-Means Centroid keeps the id it was given in the initial centroids file, so the centroids can be
+  * averaged by any number of reducers, each writing the centroids of its partition into its own part file.
+  * The shift of every centroid from its previous position is published in the counters of ClusterCenterCounter.
+  * It is the complex distance whatever the metric of the assignment, so the convergence threshold keeps its scale.
+  * The mappers write nothing for a frozen centroid, so the reducer of its partition writes it again at its frozen position,
+  * in id order between the centroids it computes.
+  * In a mini-batch, every centroid is moved towards the average of its sampled Data Points with a learning rate of its own:
+  * the previous centroid is weighted with the number of Data Points of all earlier mini-batches it was computed from.
+  * These counts are written to the COUNTS output for the next mini-batch, and a centroid without sampled Data Points
+  * is written again at its previous position with its count, even 0, like a frozen one. Only the full iteration after
+  * the mini-batches, which is not a mini-batch, leaves out the centroids no Data Point is assigned to.
   */
-public class ClusterCenterReducer extends Reducer<DataPoint, DataPoint, IntWritable, DataPoint>
+public class ClusterCenterReducer extends Reducer<IntWritable, DataPointSum, IntWritable, DataPoint>
 {
 	/**
-	 * Output key for the k-Means Centroid
-	 */
-	public static int CENTROID_KEY = 1;
+	  * Partial sum and new centroid. Reused by every call of reduce.
+	  */
+	private final DataPointSum sum = new DataPointSum();
+	private final DataPoint centroid = new DataPoint();
+
+	/**
+	  * The k-Means Centroids of the previous iteration by id, shipped to the mappers by the driver.
+	  */
+	private TreeMap<Integer, DataPoint> previousKCentroids;
+
+	/**
+	  * Name of the output the counts of Data Points of the centroids are written to in a mini-batch,
+	  * and of its folder in the output folder of the iteration.
+	  */
+	public static final String COUNTS = "counts";
+
+	/**
+	  * The k-Means Centroids of the partition of this reducer that are written again at their previous position if
+	  * no partial sums are received for them, and their ids, in the order of the ids, and the offset of the next one to write.
+	  * These are the frozen centroids, or all the previous centroids of the partition in a mini-batch.
+	  */
+	private int[] keptIds;
+	private DataPoint[] keptKCentroids;
+	private int nextKept;
+
+	/**
+	  * Output key of the kept centroids.
+	  */
+	private final IntWritable keptKey = new IntWritable();
+
+	/**
+	  * If this iteration is a mini-batch.
+	  */
+	private boolean miniBatch;
+
+	/**
+	  * Number of Data Points every previous centroid was computed from, by id, and the writer and value of the new counts.
+	  * Only used in a mini-batch.
+	  */
+	private TreeMap<Integer, LongWritable> previousCounts;
+	private MultipleOutputs<IntWritable, DataPoint> counts;
+	private final LongWritable count = new LongWritable();
+
+	/**
+	  * Counters of the iteration.
+	  */
+	private Counter centroids, movedCentroids, movedPoints, totalShift, frozenCentroids;
+
+	/**
+	  * Largest shift of a centroid of this reducer so far, in millionths.
+	  */
+	private long maxShift;
+
+	/**
+	  * Overridden setup method of Reducer class.
+	  * Parameters:	Context context
+	  * Returns:	Nothing
+	  *
+	  * Loads the k-Means Centroids of the previous iteration and the frozen ones of its partition from the distributed cache,
+	  * and looks up the counters. In a mini-batch, loads the counts of the centroids instead of the frozen ones.
+	  */
+	@Override
+	public void setup(Context context)
+		throws IOException, InterruptedException
+	{
+		// Call setup of super class
+		super.setup(context);
+
+		// Use the Data Point schema of the job
+		DataPoint.configure(context.getConfiguration());
+
+		previousKCentroids = SideData.loadById(context.getConfiguration(), SideData.K_CENTROIDS);
+
+		// Load the counts of a mini-batch
+		miniBatch = context.getConfiguration().getFloat(ClusterCenterDriver.MINI_BATCH_FRACTION, 1) < 1;
+		TreeMap<Integer, DataPoint> keptById;
+		if(miniBatch)
+		{
+			previousCounts = SideData.loadById(context.getConfiguration(), SideData.K_CENTROID_COUNTS, LongWritable.class);
+			counts = new MultipleOutputs<IntWritable, DataPoint>(context);
+			keptById = previousKCentroids;
+		}
+		else
+			keptById = SideData.loadById(context.getConfiguration(), SideData.FROZEN_K_CENTROIDS);
+
+		// Keep the centroids sent to this partition by CentroidPartitioner
+		int partition = context.getTaskAttemptID().getTaskID().getId();
+		ArrayList<Map.Entry<Integer, DataPoint>> partitionKept = new ArrayList<Map.Entry<Integer, DataPoint>>();
+		for(Map.Entry<Integer, DataPoint> entry : keptById.entrySet())
+		{
+			if(CentroidPartitioner.getPartition(entry.getKey(), context.getNumReduceTasks()) == partition)
+				partitionKept.add(entry);
+		}
+		keptIds = new int[partitionKept.size()];
+		keptKCentroids = new DataPoint[partitionKept.size()];
+		for(int i = 0; i < keptIds.length; i++)
+		{
+			keptIds[i] = partitionKept.get(i).getKey();
+			keptKCentroids[i] = partitionKept.get(i).getValue();
+		}
+		nextKept = 0;
+
+		centroids = context.getCounter(ClusterCenterCounter.CENTROIDS);
+		movedCentroids = context.getCounter(ClusterCenterCounter.MOVED_CENTROIDS);
+		movedPoints = context.getCounter(ClusterCenterCounter.MOVED_POINTS);
+		totalShift = context.getCounter(ClusterCenterCounter.TOTAL_SHIFT_MICROS);
+		frozenCentroids = context.getCounter(ClusterCenterCounter.FROZEN_CENTROIDS);
+		maxShift = 0;
+	}
+
 	/**
 	  * Overridden reduce method of the Reduce class
-	  * Parameters:	DataPoint key, a Canopy Center
-	  * 			Iterable<DataPoint> value, A list of Data Points associated to this Canopy Center
+	  * Parameters:	IntWritable key, the id of a k-Means Centroid
+	  * 			Iterable<DataPointSum> value, A list of partial sums of the Data Points in this Cluster
 	  *				Context context
 	  * Returns:	(key, value) pairs where
-	  *				key is a k-Means Cluster Centroid
-	  *				value is one of the Data Points in the Iterable list
+	  *				key is the id of the k-Means Cluster Centroid
+	  *				value is the new k-Means Cluster Centroid
 	  * 
 	  * The function receives a (key, value) pair, where 
-	  * the key is a k-Means Cluster Centroid
-	  * the value is a Iterable list of Data Points in this Cluster
-	  * It calculates the average of all the Data Points as the new Cluster Centroid
-	  * It outputs the pair (1, New Cluster Centroid, that is Average of all Data Points)
+	  * the key is the id of a k-Means Cluster Centroid
+	  * the value is a Iterable list of partial sums of the Data Points in this Cluster
+	  * It adds up the partial sums and calculates the average of all the Data Points as the new Cluster Centroid
+	  * In a mini-batch, the previous centroid is added as often as the number of Data Points it was computed from
+	  * It outputs the pair (id, New Cluster Centroid, that is Average of all Data Points)
+	  * and counts the shift of the centroid from its previous position
+	  */
+	@Override
+	public void reduce(IntWritable key, Iterable<DataPointSum> values, Context context)
+		throws IOException, InterruptedException
+	{
+		// Add up the partial sums
+		sum.clear();
+		for(DataPointSum partialSum : values)
+			sum.add(partialSum);
+		long points = sum.getCount();
+
+		// Write the kept centroids coming before this one
+		writeKept(key.get(), context);
+
+		// In a mini-batch, weight the previous centroid with the Data Points it was computed from, and write the new count
+		DataPoint previousCentroid = previousKCentroids.get(key.get());
+		if(miniBatch)
+		{
+			LongWritable previousCount = previousCounts.get(key.get());
+			if(previousCentroid != null && previousCount != null)
+				sum.add(previousCentroid, previousCount.get());
+			count.set(sum.getCount());
+			counts.write(COUNTS, key, count, COUNTS + "/part");
+		}
+
+		// Find average Data Point and output it under the id of the centroid
+		context.write(key, sum.getAverageDataPoint(centroid));
+
+		// Count the shift of the centroid in the space of the coordinates. A centroid without a previous position always counts as moved
+		centroids.increment(1);
+		double shift = (previousCentroid == null ? Double.POSITIVE_INFINITY : previousCentroid.complexDistance(centroid));
+		if(shift > DataPoint.CONVERGENCE_THRESHOLD)
+		{
+			movedCentroids.increment(1);
+			movedPoints.increment(points);
+		}
+		if(previousCentroid != null)
+		{
+			long shiftMicros = ClusterCenterCounter.toMicros(shift);
+			totalShift.increment(shiftMicros);
+			maxShift = Math.max(maxShift, shiftMicros);
+		}
+	}
+
+	/**
+	  * Writes the kept centroids of this partition with ids up to a bound, which have not been written yet.
+	  * Parameters:	long toId, the bound
+	  * 			Context context
+	  * Returns:	Nothing
+	  *
+	  * A centroid with the id of the bound is skipped, since reduce computes it instead.
+	  * They count as centroids that did not move. In a mini-batch, their counts are written unchanged,
+	  * 0 for a centroid without Data Points in all the mini-batches so far.
+	  */
+	private void writeKept(long toId, Context context)
+		throws IOException, InterruptedException
+	{
+		while(nextKept < keptIds.length && keptIds[nextKept] <= toId)
+		{
+			// In a mini-batch, a centroid that no sampled Data Point was assigned to is not empty, so it is kept,
+			// with a count of 0 if it has never been sampled
+			if(keptIds[nextKept] < toId)
+			{
+				keptKey.set(keptIds[nextKept]);
+				context.write(keptKey, keptKCentroids[nextKept]);
+				centroids.increment(1);
+				if(miniBatch)
+				{
+					LongWritable previousCount = previousCounts.get(keptIds[nextKept]);
+					count.set(previousCount == null ? 0 : previousCount.get());
+					counts.write(COUNTS, keptKey, count, COUNTS + "/part");
+				}
+				else
+					frozenCentroids.increment(1);
+			}
+			nextKept++;
+		}
+	}
+
+	/**
+	  * Overridden cleanup method of Reducer class.
+	  * Parameters:	Context context
+	  * Returns:	Nothing
+	  *
+	  * Writes the remaining kept centroids and publishes the largest shift of this reducer in a counter of its own partition.
+	  * Closes the counts of a mini-batch.
 	  */
 	@Override
-	public void reduce(DataPoint key, Iterable<DataPoint> values, Context context)
+	public void cleanup(Context context)
 		throws IOException, InterruptedException
 	{
-		// Find average Data Point and output it
-		DataPoint dataPoint = DataPoint.getAverageDataPoint(values);
-		context.write(new IntWritable(ClusterCenterReducer.CENTROID_KEY), dataPoint);
+		writeKept(Long.MAX_VALUE, context);
+		if(counts != null)
+			counts.close();
+
+		int partition = context.getTaskAttemptID().getTaskID().getId();
+		context.getCounter(ClusterCenterCounter.MAX_SHIFT_GROUP, Integer.toString(partition)).increment(maxShift);
 
-		// Increment the centroid key
-		ClusterCenterReducer.CENTROID_KEY++;
+		// Call cleanup of super class
+		super.cleanup(context);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,125 @@
+package cc.clusterseed;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.TreeMap;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+import cc.dataset.CentroidTable;
+import cc.dataset.DataPoint;
+import cc.dataset.DistanceMetric;
+import cc.dataset.SideData;
+
+/**
+  * Mapper class weighting the candidates of k-means|| seeding.
+  * Counts the Data Points of the data set nearest to every candidate in the mapper, and writes the counts under the ids
+  * of the candidates in cleanup. The sum of the squared distances to the nearest candidates is counted in ClusterSeedCounter.COST.
+  */
+public class CandidateCountMapper extends Mapper<LongWritable, Text, IntWritable, LongWritable>
+{
+	/**
+	  * The candidates in columns and their ids, in the order of the ids.
+	  */
+	private CentroidTable candidates;
+	private int[] candidateIds;
+
+	/**
+	  * Number of Data Points nearest to every candidate so far, at the offset of the candidate.
+	  */
+	private long[] counts;
+
+	/**
+	  * Sum of the squared distances, added to the counter in cleanup.
+	  */
+	private double cost;
+
+	/**
+	  * Data Point every record is parsed into. Reused by every call of map.
+	  */
+	private DataPoint dataPoint;
+
+	/**
+	  * Overridden setup method of Mapper class.
+	  * Parameters:	Context context
+	  * Returns:	Nothing
+	  *
+	  * Loads the candidates shipped by the driver with their ids.
+	  */
+	@Override
+	public void setup(Context context)
+		throws IOException, InterruptedException
+	{
+		// Call setup of super class
+		super.setup(context);
+
+		// Use the Data Point schema of the job
+		DataPoint.configure(context.getConfiguration());
+
+		TreeMap<Integer, DataPoint> candidatesById = SideData.loadById(context.getConfiguration(), SideData.SEED_CANDIDATES);
+		candidates = new CentroidTable(new ArrayList<DataPoint>(candidatesById.values()),
+			DistanceMetric.create(context.getConfiguration()));
+		candidateIds = new int[candidatesById.size()];
+		int offset = 0;
+		for(Integer candidateId : candidatesById.keySet())
+			candidateIds[offset++] = candidateId;
+		counts = new long[candidates.size()];
+		cost = 0;
+		dataPoint = new DataPoint();
+	}
+
+	/**
+	  * Overridden map function of Mapper Class.
+	  * Parameters:	LongWritable key, an offset in the input file
+	  * 			Text value, a Data Point in a string format
+	  * 			Context context
+	  * Returns:	Nothing
+	  *
+	  * Parses the Data Point and counts it for the nearest candidate, the first one of equally near candidates.
+	  */
+	@Override
+	public void map(LongWritable key, Text value, Context context)
+		throws IOException, InterruptedException
+	{
+		dataPoint.parse(value);
+
+		int nearest = candidates.nearest(dataPoint);
+		if(nearest >= 0)
+		{
+			counts[nearest]++;
+			cost += candidates.getNearestSquaredDistance();
+		}
+	}
+
+	/**
+	  * Overridden cleanup method of Mapper class.
+	  * Parameters:	Context context
+	  * Returns:	Nothing
+	  *
+	  * Writes the pairs (candidate id, count) of the candidates with Data Points in this mapper, and counts the cost.
+	  */
+	@Override
+	public void cleanup(Context context)
+		throws IOException, InterruptedException
+	{
+		IntWritable candidateId = new IntWritable();
+		LongWritable count = new LongWritable();
+		for(int i = 0; i < counts.length; i++)
+		{
+			if(counts[i] > 0)
+			{
+				candidateId.set(candidateIds[i]);
+				count.set(counts[i]);
+				context.write(candidateId, count);
+			}
+		}
+
+		context.getCounter(ClusterSeedCounter.COST).increment(Math.round(cost));
+
+		// Call cleanup of super class
+		super.cleanup(context);
+	}
+}
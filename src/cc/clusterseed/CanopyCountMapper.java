@@ -0,0 +1,154 @@
+package cc.clusterseed;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Mapper;
+
+import cc.dataset.ByteParser;
+import cc.dataset.CanopyMembership;
+import cc.dataset.DataPoint;
+import cc.dataset.SideData;
+
+/**
+  * Mapper class counting the Data Points of every Canopy.
+  * Reads the output of CanopyAssign either as text lines or as (Canopy Center, Data Point) pairs of a BlockFile,
+  * counts the pairs of every Canopy in the mapper and writes the counts under the ids of the Canopies in cleanup.
+  * With canopyMembership, a Data Point written once with the ids of its Canopies counts once in each of them.
+  */
+public class CanopyCountMapper extends Mapper<Writable, Writable, IntWritable, LongWritable>
+{
+	/**
+	  * HashMap with keys as Canopy Centers and values as their ids, the position in the shipped list starting at 1.
+	  */
+	private HashMap<DataPoint, Integer> canopyCenterIds;
+
+	/**
+	  * Number of pairs of every Canopy so far, at the id of the Canopy.
+	  */
+	private long[] counts;
+
+	/**
+	  * Canopy Center every text record is parsed into. Reused by every call of map.
+	  */
+	private DataPoint canopyCenter;
+
+	/**
+	  * If the output of CanopyAssign holds the membership of every Data Point, and the membership every text record is parsed into.
+	  */
+	private boolean membershipInput;
+	private CanopyMembership membership;
+
+	/**
+	  * Overridden setup method of Mapper class.
+	  * Parameters:	Context context
+	  * Returns:	Nothing
+	  *
+	  * Loads the Canopy Centers shipped by the driver with their ids.
+	  */
+	@Override
+	public void setup(Context context)
+		throws IOException, InterruptedException
+	{
+		// Call setup of super class
+		super.setup(context);
+
+		// Use the Data Point schema of the job
+		DataPoint.configure(context.getConfiguration());
+
+		TreeMap<Integer, DataPoint> canopyCentersById = SideData.loadById(context.getConfiguration(), SideData.CANOPY_CENTERS);
+		canopyCenterIds = new HashMap<DataPoint, Integer>();
+		for(Map.Entry<Integer, DataPoint> entry : canopyCentersById.entrySet())
+			canopyCenterIds.put(entry.getValue(), entry.getKey());
+		counts = new long[canopyCentersById.isEmpty() ? 0 : canopyCentersById.lastKey() + 1];
+
+		canopyCenter = new DataPoint();
+		membershipInput = CanopyMembership.isEnabled(context.getConfiguration());
+		membership = new CanopyMembership();
+	}
+
+	/**
+	  * Overridden map function of Mapper Class.
+	  * Parameters:	Writable key, an offset in the file, the Canopy Center, or the membership
+	  * 			Writable value, a tab separated Text of Canopy Center or membership and Data Point, or the Data Point
+	  * 			Context context
+	  * Returns:	Nothing
+	  *
+	  * Finds the Canopy Center of the pair, parsing only the part of a Text value before the tab, and counts the pair.
+	  * A pair of an unknown Canopy is not counted.
+	  *
+	  * A membership counts in every Canopy it holds.
+	  */
+	@Override
+	public void map(Writable key, Writable value, Context context)
+		throws IOException, InterruptedException
+	{
+		if(key instanceof CanopyMembership || (membershipInput && value instanceof Text))
+		{
+			CanopyMembership pairMembership;
+			if(value instanceof Text)
+			{
+				Text line = (Text) value;
+				membership.parse(line.getBytes(), 0, ByteParser.indexOf(line.getBytes(), 0, line.getLength(), (byte) '\t'));
+				pairMembership = membership;
+			}
+			else
+				pairMembership = (CanopyMembership) key;
+
+			for(int i = 0; i < pairMembership.size(); i++)
+			{
+				int canopyId = pairMembership.get(i);
+				if(canopyId >= 0 && canopyId < counts.length)
+					counts[canopyId]++;
+			}
+			return;
+		}
+
+		DataPoint pairCanopyCenter;
+		if(value instanceof Text)
+		{
+			Text line = (Text) value;
+			canopyCenter.parse(line.getBytes(), 0, ByteParser.indexOf(line.getBytes(), 0, line.getLength(), (byte) '\t'));
+			pairCanopyCenter = canopyCenter;
+		}
+		else
+			pairCanopyCenter = (DataPoint) key;
+
+		Integer canopyId = canopyCenterIds.get(pairCanopyCenter);
+		if(canopyId != null)
+			counts[canopyId]++;
+	}
+
+	/**
+	  * Overridden cleanup method of Mapper class.
+	  * Parameters:	Context context
+	  * Returns:	Nothing
+	  *
+	  * Writes the pairs (Canopy id, count) of the Canopies with pairs in this mapper.
+	  */
+	@Override
+	public void cleanup(Context context)
+		throws IOException, InterruptedException
+	{
+		IntWritable canopyId = new IntWritable();
+		LongWritable count = new LongWritable();
+		for(int i = 0; i < counts.length; i++)
+		{
+			if(counts[i] > 0)
+			{
+				canopyId.set(i);
+				count.set(counts[i]);
+				context.write(canopyId, count);
+			}
+		}
+
+		// Call cleanup of super class
+		super.cleanup(context);
+	}
+}
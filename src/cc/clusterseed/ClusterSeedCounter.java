@@ -0,0 +1,12 @@
+package cc.clusterseed;
+
+/**
+  * Counters published by the mappers of the seeding jobs.
+  */
+public enum ClusterSeedCounter
+{
+	/**
+	  * Sum of the squared distances of the Data Points to the nearest candidate picked so far, rounded.
+	  */
+	COST
+}
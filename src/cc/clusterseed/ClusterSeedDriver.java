@@ -0,0 +1,339 @@
+/**
+  * Package to pick the initial k-Means Centroids
+  */
+package cc.clusterseed;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.reduce.LongSumReducer;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.util.GenericOptionsParser;
+
+import cc.dataset.BlockFileOutputFormat;
+import cc.dataset.DataPoint;
+import cc.dataset.DataPointReader;
+import cc.dataset.DataPointSum;
+import cc.dataset.DistanceMetric;
+import cc.dataset.SideData;
+import cc.dataset.StageFormat;
+
+/**
+  * Driver class for the package. Picks the initial k-Means Centroids read by ClusterCenterDriver, instead of a file of random points.
+  *
+  * By default the centroids are picked from the Canopy Centers with k-means++, each Canopy weighted with its number of Data Points,
+  * which one job counts in the output of CanopyAssign.
+  * With k-means|| (Bahmani et al.), a few rounds over the data set each sample candidates with probabilities proportional to their
+  * squared distance to the candidates so far. One more job weights every candidate with the number of Data Points nearest to it,
+  * and the centroids are picked from the weighted candidates with k-means++ and refined with k-Means, both in the driver.
+  */
+public class ClusterSeedDriver
+{
+	/**
+	  * Name of the configuration parameter selecting how the centroids are picked.
+	  */
+	public static final String METHOD = "clusterSeedMethod";
+
+	/**
+	  * Method picking the centroids from the Canopy Centers, the default.
+	  */
+	public static final String CANOPY = "canopy";
+
+	/**
+	  * Method picking the centroids with k-means||.
+	  */
+	public static final String K_MEANS_PARALLEL = "kmeansparallel";
+
+	/**
+	  * Name of the configuration parameter giving the number of candidates sampled in every round of k-means||, 2k by default.
+	  */
+	public static final String OVERSAMPLING = "clusterSeedOversampling";
+
+	/**
+	  * Name of the configuration parameter giving the number of rounds of k-means|| after the first candidate, 5 by default.
+	  */
+	public static final String ROUNDS = "clusterSeedRounds";
+
+	/**
+	  * Name of the configuration parameter seeding the random numbers, 0 by default.
+	  */
+	public static final String RANDOM_SEED = "clusterSeedRandomSeed";
+
+	/**
+	  * Names of the configuration parameters set by the driver to the sample size and the number of a round of k-means||.
+	  */
+	public static final String SAMPLE_SIZE = "clusterSeedSampleSize", ROUND = "clusterSeedRound";
+
+	/**
+	  * Picks centroids from weighted candidates with k-means++
+	  * Parameters:	List<DataPoint> candidates, the candidates
+	  * 			long[] weights, the weight of every candidate, such as its number of Data Points
+	  * 			int k, the number of centroids to pick
+	  * 			Random random, the random numbers
+	  * 			DistanceMetric metric, the metric of the distances
+	  * Returns:	ArrayList<DataPoint>, the centroids, fewer than k if fewer candidates have a weight
+	  *
+	  * The first centroid is picked with probabilities proportional to the weights,
+	  * every further one with probabilities proportional to the weight times the squared distance to the nearest centroid so far.
+	  */
+	public static ArrayList<DataPoint> kMeansPlusPlus(List<DataPoint> candidates, long[] weights, int k, Random random,
+		DistanceMetric metric)
+	{
+		ArrayList<DataPoint> centroids = new ArrayList<DataPoint>();
+
+		// Squared distance of every candidate to the nearest centroid so far
+		double[] costs = new double[candidates.size()];
+		for(int i = 0; i < costs.length; i++)
+			costs[i] = 1;
+
+		while(centroids.size() < k)
+		{
+			double total = 0;
+			for(int i = 0; i < costs.length; i++)
+				total += weights[i] * costs[i];
+			if(total == 0)
+				break;
+
+			// Pick the candidate the random number falls on
+			double target = random.nextDouble() * total;
+			int picked = -1;
+			for(int i = 0; i < costs.length && target >= 0; i++)
+			{
+				if(weights[i] * costs[i] > 0)
+				{
+					picked = i;
+					target -= weights[i] * costs[i];
+				}
+			}
+			DataPoint centroid = candidates.get(picked);
+			centroids.add(centroid);
+
+			// Update the squared distances
+			for(int i = 0; i < costs.length; i++)
+			{
+				double distance = metric.distance(candidates.get(i), centroid);
+				costs[i] = (centroids.size() == 1 ? distance * distance : Math.min(costs[i], distance * distance));
+			}
+		}
+		return centroids;
+	}
+
+	/**
+	  * Refines centroids with k-Means over weighted candidates
+	  * Parameters:	List<DataPoint> centroids, the centroids, replaced by the refined ones
+	  * 			List<DataPoint> candidates, the candidates
+	  * 			long[] weights, the weight of every candidate
+	  * 			DistanceMetric metric, the metric of the distances
+	  * Returns:	Nothing
+	  *
+	  * Every candidate is assigned to the nearest centroid, and every centroid moved to the weighted average of its candidates,
+	  * until no centroid moves or DataPoint.MAX_ITERATIONS is reached.
+	  */
+	public static void refine(List<DataPoint> centroids, List<DataPoint> candidates, long[] weights, DistanceMetric metric)
+	{
+		for(int iteration = 0; iteration < DataPoint.MAX_ITERATIONS; iteration++)
+		{
+			DataPointSum[] sums = new DataPointSum[centroids.size()];
+			for(int i = 0; i < candidates.size(); i++)
+			{
+				if(weights[i] == 0)
+					continue;
+
+				double minDistance = Double.MAX_VALUE;
+				int nearest = -1;
+				for(int j = 0; j < centroids.size(); j++)
+				{
+					double distance = metric.distance(candidates.get(i), centroids.get(j));
+					if(distance < minDistance)
+					{
+						minDistance = distance;
+						nearest = j;
+					}
+				}
+				if(sums[nearest] == null)
+					sums[nearest] = new DataPointSum();
+				sums[nearest].add(candidates.get(i), weights[i]);
+			}
+
+			boolean moved = false;
+			for(int j = 0; j < centroids.size(); j++)
+			{
+				if(sums[j] != null)
+				{
+					DataPoint centroid = sums[j].getAverageDataPoint();
+					moved |= !centroid.equals(centroids.get(j));
+					centroids.set(j, centroid);
+				}
+			}
+			if(!moved)
+				break;
+		}
+	}
+
+	/**
+	  * Runs a job counting Data Points, set up with its mapper, input and side data
+	  * Parameters:	Job job, the job
+	  * 			Path outputFolder, the output folder of the job
+	  * 			int size, the number of ids counted, from 1
+	  * Returns:	long[], the count of every id at the offset id - 1
+	  *
+	  * The counts of the mappers are added up by LongSumReducer and written into BlockFiles.
+	  */
+	private static long[] count(Job job, Path outputFolder, int size)
+		throws IOException, InterruptedException, ClassNotFoundException
+	{
+		FileOutputFormat.setOutputPath(job, outputFolder);
+		job.setOutputFormatClass(BlockFileOutputFormat.class);
+		job.setReducerClass(LongSumReducer.class);
+		job.setOutputKeyClass(IntWritable.class);
+		job.setOutputValueClass(LongWritable.class);
+
+		if(!job.waitForCompletion(true))
+			throw new IOException(job.getJobName() + " failed");
+
+		FileSystem filesystem = outputFolder.getFileSystem(job.getConfiguration());
+		TreeMap<Integer, LongWritable> counts = DataPointReader.readCounts(filesystem, filesystem.makeQualified(outputFolder));
+		long[] weights = new long[size];
+		for(int i = 0; i < size; i++)
+			weights[i] = (counts.containsKey(i + 1) ? counts.get(i + 1).get() : 0);
+		return weights;
+	}
+
+	/**
+	  * <b>Main function of ClusterSeedDriver. </b><br>
+	  * <b>Parameters:</b>	Strings args[], arguments passed to this class.
+	  * 					args[0] = Path to file containing the input, read by k-means||.
+	  * 					args[1] = Path to the output of CanopyAssign, read when picking from the Canopy Centers.
+	  * 					args[2] = Path to file containing the Canopy Centers produced by CanopyCenter.
+	  * 					args[3] = Number of k-Means Centroids to pick.
+	  * 					args[4] = Path to the file of k-Means Centroids written, one per line.
+	  * 					Generic Hadoop options such as -D clusterSeedMethod=kmeansparallel may come first. <br>
+	  * <b>Returns:</b>		Nothing <br><br>
+	  *
+	  * Runs the jobs of the seeding method and writes the k-Means Centroids.
+	  */
+	public static void main(String[] args)
+		throws Exception
+	{
+		// Parse the generic Hadoop options into a base configuration
+		Configuration baseConfiguration = new Configuration();
+		args = new GenericOptionsParser(baseConfiguration, args).getRemainingArgs();
+
+		// Use the Data Point schema given with -D dataPointSchema=..., [year, temperature] by default
+		DataPoint.configure(baseConfiguration);
+
+		if(args.length != 5)
+		{
+			System.out.println("Usage: ClusterSeedDriver <input path> <canopy assign path> <canopy centers file> <k> <output file>");
+			System.exit(-1);
+		}
+
+		int k = Integer.parseInt(args[3]);
+		if(k < 1)
+			throw new IllegalArgumentException("k must be at least 1: " + k);
+		String method = baseConfiguration.get(METHOD, CANOPY);
+		if(!CANOPY.equals(method) && !K_MEANS_PARALLEL.equals(method))
+			throw new IllegalArgumentException("Unknown " + METHOD + ": " + method);
+		Random random = new Random(baseConfiguration.getLong(RANDOM_SEED, 0));
+		DistanceMetric metric = DistanceMetric.create(baseConfiguration);
+		DistanceMetric.addChildJavaOpts(baseConfiguration);
+
+		FileSystem filesystem = FileSystem.get(baseConfiguration);
+		Path sideDataFolder = new Path(args[4] + SideData.FOLDER_SUFFIX);
+		ArrayList<DataPoint> candidates;
+		long[] weights;
+
+		if(CANOPY.equals(method))
+		{
+			// The candidates are the Canopy Centers, weighted with their number of Data Points in the output of CanopyAssign
+			candidates = DataPointReader.read(filesystem, new Path(baseConfiguration.get("fs.default.name") + args[2]), true);
+
+			Job job = new Job(new Configuration(baseConfiguration));
+			job.setJarByClass(ClusterSeedDriver.class);
+			job.setJobName("Maximum Temperature - Canopy Counts");
+			SideData.ship(job, new Path(sideDataFolder, "canopy"), SideData.CANOPY_CENTERS, candidates);
+			FileInputFormat.setInputPaths(job, new Path(args[1]));
+			StageFormat.setInputFormat(job);
+			job.setMapperClass(CanopyCountMapper.class);
+			weights = count(job, new Path(args[4] + "_canopycounts"), candidates.size());
+		}
+		else
+		{
+			int oversampling = baseConfiguration.getInt(OVERSAMPLING, 2 * k);
+			int rounds = baseConfiguration.getInt(ROUNDS, 5);
+
+			// Sample one candidate uniformly, then oversampling candidates in every round
+			candidates = new ArrayList<DataPoint>();
+			for(int round = 0; round <= rounds; round++)
+			{
+				Job job = new Job(new Configuration(baseConfiguration));
+				job.setJarByClass(ClusterSeedDriver.class);
+				job.setJobName("Maximum Temperature - Seed Sample " + round);
+				job.getConfiguration().setInt(SAMPLE_SIZE, round == 0 ? 1 : oversampling);
+				job.getConfiguration().setInt(ROUND, round);
+				SideData.ship(job, new Path(sideDataFolder, Integer.toString(round)), SideData.SEED_CANDIDATES, candidates);
+
+				// A single reducer merges the samples of all mappers
+				Path outputFolder = new Path(args[4] + "_round" + round);
+				FileInputFormat.setInputPaths(job, new Path(args[0]));
+				FileOutputFormat.setOutputPath(job, outputFolder);
+				job.setMapperClass(SeedSampleMapper.class);
+				job.setReducerClass(SeedSampleReducer.class);
+				job.setNumReduceTasks(1);
+				job.setOutputFormatClass(BlockFileOutputFormat.class);
+				job.setOutputKeyClass(DoubleWritable.class);
+				job.setOutputValueClass(DataPoint.class);
+				if(!job.waitForCompletion(true))
+					throw new IOException(job.getJobName() + " failed");
+
+				ArrayList<DataPoint> sample = DataPointReader.read(filesystem,
+					filesystem.makeQualified(new Path(outputFolder, "part-r-00000")), true);
+				candidates.addAll(sample);
+				System.out.println("Round " + round + ": cost " + job.getCounters().findCounter(ClusterSeedCounter.COST).getValue()
+					+ ", " + sample.size() + " candidates sampled");
+			}
+
+			// Weight the candidates with their number of nearest Data Points
+			Job job = new Job(new Configuration(baseConfiguration));
+			job.setJarByClass(ClusterSeedDriver.class);
+			job.setJobName("Maximum Temperature - Seed Candidate Counts");
+			SideData.ship(job, new Path(sideDataFolder, "candidates"), SideData.SEED_CANDIDATES, candidates);
+			FileInputFormat.setInputPaths(job, new Path(args[0]));
+			job.setMapperClass(CandidateCountMapper.class);
+			weights = count(job, new Path(args[4] + "_candidatecounts"), candidates.size());
+			System.out.println("Candidates: " + candidates.size() + ", cost "
+				+ job.getCounters().findCounter(ClusterSeedCounter.COST).getValue());
+		}
+
+		// Pick the centroids from the weighted candidates, and refine the candidates of k-means||
+		ArrayList<DataPoint> kCentroids = kMeansPlusPlus(candidates, weights, k, random, metric);
+		if(K_MEANS_PARALLEL.equals(method))
+			refine(kCentroids, candidates, weights, metric);
+		if(kCentroids.size() < k)
+			System.out.println("Only " + kCentroids.size() + " of " + k + " k-Means Centroids picked, from as many candidates with Data Points");
+
+		// Write the centroids one per line, as read by ClusterCenterDriver
+		FSDataOutputStream out = filesystem.create(new Path(baseConfiguration.get("fs.default.name") + args[4]), true);
+		try
+		{
+			for(DataPoint kCentroid : kCentroids)
+				out.write((kCentroid + "\n").getBytes("UTF-8"));
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+}
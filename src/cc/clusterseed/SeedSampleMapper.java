@@ -0,0 +1,164 @@
+package cc.clusterseed;
+
+import java.io.IOException;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+import cc.dataset.CentroidTable;
+import cc.dataset.DataPoint;
+import cc.dataset.DistanceMetric;
+import cc.dataset.SideData;
+
+/**
+  * Mapper class of a round of k-means|| seeding.
+  * Every Data Point of the data set is weighted with its squared distance to the nearest candidate picked in the earlier rounds,
+  * or with 1 in the first round, and given the key E / weight, where E is drawn from the exponential distribution.
+  * The Data Points with the smallest keys are a sample drawn without replacement with probabilities proportional to the weights
+  * (Efraimidis and Spirakis), so the mapper keeps only the sample size smallest keys, and writes them in cleanup.
+  */
+public class SeedSampleMapper extends Mapper<LongWritable, Text, DoubleWritable, DataPoint>
+{
+	/**
+	  * A Data Point kept in the sample with its key.
+	  */
+	private static class Sample implements Comparable<Sample>
+	{
+		private final double key;
+		private final DataPoint dataPoint;
+
+		private Sample(double key, DataPoint dataPoint)
+		{
+			this.key = key;
+			this.dataPoint = dataPoint;
+		}
+
+		/**
+		  * Orders the largest key first, so that the head of the queue is the Sample to replace.
+		  */
+		public int compareTo(Sample sample)
+		{
+			return Double.compare(sample.key, key);
+		}
+	}
+
+	/**
+	  * The candidates picked in the earlier rounds, in columns.
+	  */
+	private CentroidTable candidates;
+
+	/**
+	  * Number of Data Points sampled in this round, and the samples with the smallest keys so far.
+	  */
+	private int sampleSize;
+	private PriorityQueue<Sample> samples;
+
+	/**
+	  * Random numbers of the keys, seeded differently in every round and map task.
+	  */
+	private Random random;
+
+	/**
+	  * Sum of the weights, added to the counter in cleanup.
+	  */
+	private double cost;
+
+	/**
+	  * Data Point every record is parsed into. Reused by every call of map.
+	  */
+	private DataPoint dataPoint;
+
+	/**
+	  * Overridden setup method of Mapper class.
+	  * Parameters:	Context context
+	  * Returns:	Nothing
+	  *
+	  * Loads the candidates shipped by the driver, and reads the sample size of the round.
+	  */
+	@Override
+	public void setup(Context context)
+		throws IOException, InterruptedException
+	{
+		// Call setup of super class
+		super.setup(context);
+
+		// Use the Data Point schema of the job
+		DataPoint.configure(context.getConfiguration());
+
+		Configuration configuration = context.getConfiguration();
+		candidates = new CentroidTable(SideData.load(configuration, SideData.SEED_CANDIDATES), DistanceMetric.create(configuration));
+		sampleSize = configuration.getInt(ClusterSeedDriver.SAMPLE_SIZE, 1);
+		samples = new PriorityQueue<Sample>(sampleSize + 1);
+		random = new Random((configuration.getLong(ClusterSeedDriver.RANDOM_SEED, 0) * 1000003
+			+ configuration.getInt(ClusterSeedDriver.ROUND, 0)) * 1000003 + context.getTaskAttemptID().getTaskID().getId());
+		cost = 0;
+		dataPoint = new DataPoint();
+	}
+
+	/**
+	  * Overridden map function of Mapper Class.
+	  * Parameters:	LongWritable key, an offset in the input file
+	  * 			Text value, a Data Point in a string format
+	  * 			Context context
+	  * Returns:	Nothing
+	  *
+	  * Parses the Data Point, weights it and keeps it if its key is among the sample size smallest ones so far.
+	  * A Data Point at a candidate has no weight and is never sampled.
+	  */
+	@Override
+	public void map(LongWritable key, Text value, Context context)
+		throws IOException, InterruptedException
+	{
+		dataPoint.parse(value);
+
+		// Weight the Data Point with the squared distance to the nearest candidate
+		double weight = 1;
+		if(candidates.size() > 0)
+		{
+			candidates.nearest(dataPoint);
+			weight = candidates.getNearestSquaredDistance();
+		}
+		cost += weight;
+		if(weight == 0)
+			return;
+
+		// Keep a copy of the Data Point if its key is small enough, since the object is reused
+		double sampleKey = -Math.log(1 - random.nextDouble()) / weight;
+		if(samples.size() < sampleSize)
+			samples.add(new Sample(sampleKey, new DataPoint(dataPoint)));
+		else if(sampleKey < samples.peek().key)
+		{
+			samples.poll();
+			samples.add(new Sample(sampleKey, new DataPoint(dataPoint)));
+		}
+	}
+
+	/**
+	  * Overridden cleanup method of Mapper class.
+	  * Parameters:	Context context
+	  * Returns:	Nothing
+	  *
+	  * Writes the pairs (key, Data Point) of the sample, and counts the cost.
+	  */
+	@Override
+	public void cleanup(Context context)
+		throws IOException, InterruptedException
+	{
+		DoubleWritable sampleKey = new DoubleWritable();
+		for(Sample sample : samples)
+		{
+			sampleKey.set(sample.key);
+			context.write(sampleKey, sample.dataPoint);
+		}
+
+		context.getCounter(ClusterSeedCounter.COST).increment(Math.round(cost));
+
+		// Call cleanup of super class
+		super.cleanup(context);
+	}
+}
@@ -0,0 +1,64 @@
+package cc.clusterseed;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import cc.dataset.DataPoint;
+
+/**
+  * Reducer class of a round of k-means|| seeding.
+  * The job has a single reducer, which receives the samples of all the mappers in the order of their keys,
+  * and writes the sample size first ones, the sample of the whole data set.
+  */
+public class SeedSampleReducer extends Reducer<DoubleWritable, DataPoint, DoubleWritable, DataPoint>
+{
+	/**
+	  * Number of Data Points sampled in this round, and written so far.
+	  */
+	private int sampleSize, written;
+
+	/**
+	  * Overridden setup method of Reducer class.
+	  * Parameters:	Context context
+	  * Returns:	Nothing
+	  *
+	  * Reads the sample size of the round.
+	  */
+	@Override
+	public void setup(Context context)
+		throws IOException, InterruptedException
+	{
+		// Call setup of super class
+		super.setup(context);
+
+		// Use the Data Point schema of the job
+		DataPoint.configure(context.getConfiguration());
+
+		sampleSize = context.getConfiguration().getInt(ClusterSeedDriver.SAMPLE_SIZE, 1);
+		written = 0;
+	}
+
+	/**
+	  * Overridden reduce method of Reducer class.
+	  * Parameters:	DoubleWritable key, the key of the Data Points
+	  * 			Iterable<DataPoint> values, the Data Points with this key
+	  * 			Context context
+	  * Returns:	Nothing
+	  *
+	  * Writes the pairs (key, Data Point) until the sample is complete.
+	  */
+	@Override
+	public void reduce(DoubleWritable key, Iterable<DataPoint> values, Context context)
+		throws IOException, InterruptedException
+	{
+		for(DataPoint dataPoint : values)
+		{
+			if(written == sampleSize)
+				return;
+			context.write(key, dataPoint);
+			written++;
+		}
+	}
+}
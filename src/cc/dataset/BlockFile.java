@@ -0,0 +1,394 @@
+package cc.dataset;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.rmi.server.UID;
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.MD5Hash;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.util.GenericOptionsParser;
+import org.apache.hadoop.util.ReflectionUtils;
+
+/**
+  * A splittable binary file of (key, value) pairs of Writables, used to hand data from one step to the next.
+  *
+  * The file starts with a header: the magic bytes, the names of the key and value classes and a random sync marker.
+  * The pairs follow in blocks of about BLOCK_SIZE bytes. Every block is the sync marker, the number of pairs,
+  * the length of the pairs in bytes, and the pairs as written by Writable.write.
+  * A block is read with a single readFully and its pairs are deserialized from memory.
+  * A split starts at the first sync marker after its start and reads the blocks starting before its end.
+  */
+public final class BlockFile
+{
+	/**
+	  * First bytes of every block file: "CCB" and the version.
+	  */
+	static final byte[] MAGIC = { 'C', 'C', 'B', 1 };
+
+	/**
+	  * Length of the sync marker.
+	  */
+	static final int SYNC_SIZE = 16;
+
+	/**
+	  * Size in bytes after which a block is written.
+	  */
+	public static final int BLOCK_SIZE = 64 * 1024;
+
+	private BlockFile()
+	{
+	}
+
+	/**
+	  * Checks if a file is a block file by its magic bytes.
+	  * Parameters:	FileSystem filesystem, the file system holding the file
+	  * 			Path path, path to the file
+	  * Returns:	true for a block file, false otherwise
+	  */
+	public static boolean isBlockFile(FileSystem filesystem, Path path)
+		throws IOException
+	{
+		FSDataInputStream in = filesystem.open(path);
+		try
+		{
+			for(int i = 0; i < MAGIC.length; i++)
+			{
+				if(in.read() != MAGIC[i])
+					return false;
+			}
+			return true;
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	/**
+	  * Prints the pairs of block files as tab separated text, one pair per line.
+	  * Parameters:	String[] args, paths to the block files. Generic Hadoop options may come first
+	  * Returns:	Nothing
+	  */
+	public static void main(String[] args)
+		throws IOException
+	{
+		Configuration configuration = new Configuration();
+		args = new GenericOptionsParser(configuration, args).getRemainingArgs();
+		if(args.length < 1)
+		{
+			System.out.println("Usage: BlockFile <block file>...");
+			System.exit(-1);
+		}
+
+		BufferedWriter out = new BufferedWriter(new OutputStreamWriter(System.out, "UTF-8"));
+		for(String fileName : args)
+		{
+			Path path = new Path(fileName);
+			Reader reader = new Reader(path.getFileSystem(configuration), path, configuration);
+			try
+			{
+				Writable key = (Writable) ReflectionUtils.newInstance(reader.getKeyClass(), configuration);
+				Writable value = (Writable) ReflectionUtils.newInstance(reader.getValueClass(), configuration);
+				while(reader.next(key, value))
+				{
+					out.write(key + "\t" + value);
+					out.newLine();
+				}
+			}
+			finally
+			{
+				reader.close();
+			}
+		}
+		out.flush();
+	}
+
+	/**
+	  * Writes the pairs of a block file.
+	  */
+	public static class Writer
+		implements Closeable
+	{
+		private final FSDataOutputStream out;
+
+		/**
+		  * Sync marker of the file.
+		  */
+		private final byte[] sync;
+
+		/**
+		  * Pairs of the current block and their number.
+		  */
+		private final DataOutputBuffer block = new DataOutputBuffer();
+		private int count = 0;
+
+		/**
+		  * Creates a writer and writes the header.
+		  * Parameters:	FSDataOutputStream out, stream to write to. Closed by close
+		  * 			Class<?> keyClass, class of the keys
+		  * 			Class<?> valueClass, class of the values
+		  */
+		public Writer(FSDataOutputStream out, Class<?> keyClass, Class<?> valueClass)
+			throws IOException
+		{
+			this.out = out;
+			sync = MD5Hash.digest(new UID() + "@" + System.currentTimeMillis()).getDigest();
+
+			out.write(MAGIC);
+			Text.writeString(out, keyClass.getName());
+			Text.writeString(out, valueClass.getName());
+			out.write(sync);
+		}
+
+		/**
+		  * Appends a pair to the file.
+		  * Parameters:	Writable key, the key
+		  * 			Writable value, the value
+		  * Returns:	Nothing
+		  */
+		public void append(Writable key, Writable value)
+			throws IOException
+		{
+			key.write(block);
+			value.write(block);
+			count++;
+			if(block.getLength() >= BLOCK_SIZE)
+				writeBlock();
+		}
+
+		/**
+		  * Writes the pairs appended since the last block, if any.
+		  */
+		private void writeBlock()
+			throws IOException
+		{
+			if(count == 0)
+				return;
+			out.write(sync);
+			WritableUtils.writeVInt(out, count);
+			WritableUtils.writeVInt(out, block.getLength());
+			out.write(block.getData(), 0, block.getLength());
+			block.reset();
+			count = 0;
+		}
+
+		/**
+		  * Writes the last block and closes the stream.
+		  */
+		public void close()
+			throws IOException
+		{
+			writeBlock();
+			out.close();
+		}
+	}
+
+	/**
+	  * Reads the pairs of a block file, or of the blocks starting in a range of it.
+	  */
+	public static class Reader
+		implements Closeable
+	{
+		private final FSDataInputStream in;
+
+		/**
+		  * Classes of the keys and values.
+		  */
+		private final Class<?> keyClass, valueClass;
+
+		/**
+		  * Sync marker of the file.
+		  */
+		private final byte[] sync = new byte[SYNC_SIZE];
+
+		/**
+		  * Sync marker read in front of a block.
+		  */
+		private final byte[] blockSync = new byte[SYNC_SIZE];
+
+		/**
+		  * Position from which no more blocks are read.
+		  */
+		private final long end;
+
+		/**
+		  * Pairs of the current block and the number not read yet.
+		  */
+		private final ByteBufferDataInput block = new ByteBufferDataInput();
+		private byte[] blockBytes = new byte[0];
+		private int remaining = 0;
+
+		/**
+		  * Opens a whole file.
+		  * Parameters:	FileSystem filesystem, the file system holding the file
+		  * 			Path path, path to the file
+		  * 			Configuration configuration, configuration used to load the key and value classes
+		  */
+		public Reader(FileSystem filesystem, Path path, Configuration configuration)
+			throws IOException
+		{
+			this(filesystem.open(path), 0, filesystem.getFileStatus(path).getLen(), configuration);
+		}
+
+		/**
+		  * Opens the blocks starting in a range of a file.
+		  * Parameters:	FSDataInputStream in, stream of the file. Closed by close
+		  * 			long start, start of the range
+		  * 			long end, end of the range, at most the length of the file
+		  * 			Configuration configuration, configuration used to load the key and value classes
+		  */
+		public Reader(FSDataInputStream in, long start, long end, Configuration configuration)
+			throws IOException
+		{
+			this.in = in;
+			this.end = end;
+
+			// Read the header
+			byte[] magic = new byte[MAGIC.length];
+			in.readFully(magic);
+			if(!Arrays.equals(magic, MAGIC))
+				throw new IOException("Not a block file");
+			try
+			{
+				keyClass = configuration.getClassByName(Text.readString(in));
+				valueClass = configuration.getClassByName(Text.readString(in));
+			}
+			catch(ClassNotFoundException e)
+			{
+				throw new IOException(e);
+			}
+			in.readFully(sync);
+
+			// Skip to the first block starting in the range
+			if(start > in.getPos())
+				seekToSync(start);
+		}
+
+		/**
+		  * Returns the class of the keys.
+		  */
+		public Class<?> getKeyClass()
+		{
+			return keyClass;
+		}
+
+		/**
+		  * Returns the class of the values.
+		  */
+		public Class<?> getValueClass()
+		{
+			return valueClass;
+		}
+
+		/**
+		  * Returns the position in the file.
+		  */
+		public long getPosition()
+			throws IOException
+		{
+			return in.getPos();
+		}
+
+		/**
+		  * Reads the next pair into the given objects.
+		  * Parameters:	Writable key, the key to read into
+		  * 			Writable value, the value to read into
+		  * Returns:	true if a pair was read, false at the end of the range
+		  */
+		public boolean next(Writable key, Writable value)
+			throws IOException
+		{
+			while(remaining == 0)
+			{
+				if(!readBlock())
+					return false;
+			}
+			key.readFields(block);
+			value.readFields(block);
+			remaining--;
+			return true;
+		}
+
+		/**
+		  * Reads the next block into memory, if it starts in the range.
+		  * Returns:	true if a block was read, false at the end of the range
+		  */
+		private boolean readBlock()
+			throws IOException
+		{
+			if(in.getPos() >= end)
+				return false;
+
+			in.readFully(blockSync);
+			if(!Arrays.equals(blockSync, sync))
+				throw new IOException("Sync marker not found at position " + (in.getPos() - SYNC_SIZE));
+
+			remaining = WritableUtils.readVInt(in);
+			int length = WritableUtils.readVInt(in);
+			if(blockBytes.length < length)
+				blockBytes = new byte[length];
+			in.readFully(blockBytes, 0, length);
+			block.reset(blockBytes, 0, length);
+			return true;
+		}
+
+		/**
+		  * Moves the stream to the first sync marker at or after a position, or to the end of the range if there is none.
+		  * Parameters:	long position, the position
+		  * Returns:	Nothing
+		  */
+		private void seekToSync(long position)
+			throws IOException
+		{
+			in.seek(position);
+
+			// Compare the last SYNC_SIZE bytes read, kept in a circular buffer, with the sync marker
+			byte[] window = new byte[SYNC_SIZE];
+			int read = 0;
+			while(true)
+			{
+				int b = in.read();
+				if(b == -1)
+					return;
+				window[read % SYNC_SIZE] = (byte) b;
+				read++;
+
+				if(read >= SYNC_SIZE)
+				{
+					int i = 0;
+					while(i < SYNC_SIZE && window[(read + i) % SYNC_SIZE] == sync[i])
+						i++;
+					if(i == SYNC_SIZE)
+					{
+						in.seek(in.getPos() - SYNC_SIZE);
+						return;
+					}
+				}
+
+				// A block starting at or after the end of the range belongs to the next one
+				if(position + read - SYNC_SIZE >= end)
+					return;
+			}
+		}
+
+		/**
+		  * Closes the stream.
+		  */
+		public void close()
+			throws IOException
+		{
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package cc.dataset;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.util.ReflectionUtils;
+
+/**
+  * Input format reading the pairs of BlockFiles. Files are split at their sync markers.
+  * The key and value objects are reused for every pair.
+  */
+public class BlockFileInputFormat<K extends Writable, V extends Writable> extends FileInputFormat<K, V>
+{
+	@Override
+	public RecordReader<K, V> createRecordReader(InputSplit split, TaskAttemptContext context)
+	{
+		return new BlockFileRecordReader<K, V>();
+	}
+
+	/**
+	  * Reads the blocks starting in a FileSplit.
+	  */
+	static class BlockFileRecordReader<K extends Writable, V extends Writable> extends RecordReader<K, V>
+	{
+		private BlockFile.Reader reader;
+		private long start, end;
+		private K key;
+		private V value;
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public void initialize(InputSplit inputSplit, TaskAttemptContext context)
+			throws IOException
+		{
+			FileSplit split = (FileSplit) inputSplit;
+			Configuration configuration = context.getConfiguration();
+			Path path = split.getPath();
+
+			start = split.getStart();
+			end = start + split.getLength();
+			reader = new BlockFile.Reader(path.getFileSystem(configuration).open(path), start, end, configuration);
+			key = (K) ReflectionUtils.newInstance(reader.getKeyClass(), configuration);
+			value = (V) ReflectionUtils.newInstance(reader.getValueClass(), configuration);
+		}
+
+		@Override
+		public boolean nextKeyValue()
+			throws IOException
+		{
+			return reader.next(key, value);
+		}
+
+		@Override
+		public K getCurrentKey()
+		{
+			return key;
+		}
+
+		@Override
+		public V getCurrentValue()
+		{
+			return value;
+		}
+
+		@Override
+		public float getProgress()
+			throws IOException
+		{
+			if(end == start)
+				return 1.0f;
+			return Math.min(1.0f, (reader.getPosition() - start) / (float) (end - start));
+		}
+
+		@Override
+		public void close()
+			throws IOException
+		{
+			if(reader != null)
+				reader.close();
+		}
+	}
+}
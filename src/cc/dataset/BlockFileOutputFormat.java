@@ -0,0 +1,41 @@
+package cc.dataset;
+
+import java.io.IOException;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+/**
+  * Output format writing the pairs of a reducer into a BlockFile.
+  */
+public class BlockFileOutputFormat<K extends Writable, V extends Writable> extends FileOutputFormat<K, V>
+{
+	@Override
+	public RecordWriter<K, V> getRecordWriter(TaskAttemptContext context)
+		throws IOException, InterruptedException
+	{
+		Path path = getDefaultWorkFile(context, "");
+		final BlockFile.Writer writer = new BlockFile.Writer(path.getFileSystem(context.getConfiguration()).create(path, false),
+			context.getOutputKeyClass(), context.getOutputValueClass());
+
+		return new RecordWriter<K, V>()
+		{
+			@Override
+			public void write(K key, V value)
+				throws IOException
+			{
+				writer.append(key, value);
+			}
+
+			@Override
+			public void close(TaskAttemptContext context)
+				throws IOException
+			{
+				writer.close();
+			}
+		};
+	}
+}
@@ -0,0 +1,211 @@
+package cc.dataset;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.LazyOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+
+/**
+  * Output of the assign steps, CanopyAssign and ClusterAssign, when they run without reducers.
+  * Their reducers only write the pairs they receive, so instead of sorting and shuffling the whole data set to group the pairs,
+  * every mapper writes each pair straight into the file of its bucket, in the output format of the job.
+  * The bucket is the id of the Canopy of the pair, or the position of its k-Means Centroid in the shipped list,
+  * modulo the number of buckets. A bucket file is named after the bucket and the map task,
+  * such as canopy-00003-m-00000, so with at least as many buckets as Canopies or centroids every file holds a single one.
+  *
+  * Every mapper also writes the number of pairs of each of its files, which the driver gathers into the manifest,
+  * a text file of the lines "file name, tab, number of pairs" in the order of the names.
+  * The manifest starts with an underscore, so the steps reading the output folder skip it like the _SUCCESS file.
+  */
+public class BucketOutput<K, V>
+{
+	/**
+	  * Name of the configuration parameter giving the number of buckets of the assign steps.
+	  * 0, the default, runs them with reducers, which write the part files.
+	  */
+	public static final String CONFIGURATION_KEY = "assignBuckets";
+
+	/**
+	  * Name of the manifest in the output folder.
+	  */
+	public static final String MANIFEST = "_manifest";
+
+	/**
+	  * Name of the output the mappers write their part of the manifest to.
+	  */
+	private static final String MANIFEST_OUTPUT = "manifest";
+
+	/**
+	  * Writer of the bucket files and of the part of the manifest of this mapper.
+	  */
+	private final MultipleOutputs<K, V> outputs;
+
+	/**
+	  * Context of the map task, which names the files.
+	  */
+	private final TaskInputOutputContext<?, ?, K, V> context;
+
+	/**
+	  * Start of the names of the bucket files, such as canopy.
+	  */
+	private final String prefix;
+
+	/**
+	  * Number of pairs written to every bucket so far.
+	  */
+	private final long[] counts;
+
+	/**
+	  * Returns the number of buckets selected in a configuration.
+	  * Parameters:	Configuration configuration, the configuration of a job
+	  * Returns:	the number of buckets, or 0 if the assign steps run with reducers
+	  */
+	public static int getBuckets(Configuration configuration)
+	{
+		int buckets = configuration.getInt(CONFIGURATION_KEY, 0);
+		if(buckets < 0)
+			throw new IllegalArgumentException(CONFIGURATION_KEY + " must not be negative: " + buckets);
+		return buckets;
+	}
+
+	/**
+	  * Sets up a job to run without reducers and write bucket files. Called once its output format is set.
+	  * Parameters:	Job job, the job
+	  * Returns:	Nothing
+	  *
+	  * The output format only creates the files written to, so there are no empty part files.
+	  */
+	public static void setUp(Job job)
+		throws ClassNotFoundException
+	{
+		job.setNumReduceTasks(0);
+		LazyOutputFormat.setOutputFormatClass(job, job.getOutputFormatClass());
+		MultipleOutputs.addNamedOutput(job, MANIFEST_OUTPUT, TextOutputFormat.class, Text.class, LongWritable.class);
+	}
+
+	/**
+	  * Gathers the parts of the manifest written by the mappers of a job into the manifest, once the job has completed.
+	  * Parameters:	Job job, the job
+	  * Returns:	the number of pairs in all the bucket files
+	  */
+	public static long writeManifest(Job job)
+		throws IOException
+	{
+		Path folder = FileOutputFormat.getOutputPath(job);
+		FileSystem filesystem = folder.getFileSystem(job.getConfiguration());
+
+		// Read the lines of every part, sorted by the name of the file
+		TreeMap<String, Long> counts = new TreeMap<String, Long>();
+		FileStatus[] parts = filesystem.globStatus(new Path(folder, MANIFEST + "-*"));
+		if(parts == null)
+			parts = new FileStatus[0];
+		for(FileStatus part : parts)
+		{
+			BufferedReader reader = new BufferedReader(new InputStreamReader(filesystem.open(part.getPath()), "UTF-8"));
+			try
+			{
+				String line;
+				while((line = reader.readLine()) != null)
+				{
+					int tabPosition = line.indexOf('\t');
+					counts.put(line.substring(0, tabPosition), Long.parseLong(line.substring(tabPosition + 1)));
+				}
+			}
+			finally
+			{
+				reader.close();
+			}
+		}
+
+		// Write the manifest and remove the parts
+		long total = 0;
+		FSDataOutputStream out = filesystem.create(new Path(folder, MANIFEST), true);
+		try
+		{
+			for(Map.Entry<String, Long> entry : counts.entrySet())
+			{
+				out.write((entry.getKey() + "\t" + entry.getValue() + "\n").getBytes("UTF-8"));
+				total += entry.getValue();
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+		for(FileStatus part : parts)
+			filesystem.delete(part.getPath(), false);
+		return total;
+	}
+
+	/**
+	  * Opens the bucket files of a map task.
+	  * Parameters:	TaskInputOutputContext<?, ?, K, V> context, the context of the map task
+	  * 			String prefix, start of the names of the bucket files
+	  * 			int buckets, the number of buckets
+	  */
+	public BucketOutput(TaskInputOutputContext<?, ?, K, V> context, String prefix, int buckets)
+	{
+		this.context = context;
+		this.prefix = prefix;
+		outputs = new MultipleOutputs<K, V>(context);
+		counts = new long[buckets];
+	}
+
+	/**
+	  * Writes a pair into the file of its bucket.
+	  * Parameters:	int id, the id of the Canopy or the position of the k-Means Centroid of the pair, not negative
+	  * 			K key, the key of the pair
+	  * 			V value, the value of the pair
+	  * Returns:	Nothing
+	  */
+	public void write(int id, K key, V value)
+		throws IOException, InterruptedException
+	{
+		int bucket = id % counts.length;
+		outputs.write(key, value, getBaseName(bucket));
+		counts[bucket]++;
+	}
+
+	/**
+	  * Writes the part of the manifest of this map task and closes the files.
+	  */
+	public void close()
+		throws IOException, InterruptedException
+	{
+		Text name = new Text();
+		LongWritable count = new LongWritable();
+		for(int bucket = 0; bucket < counts.length; bucket++)
+		{
+			if(counts[bucket] > 0)
+			{
+				name.set(FileOutputFormat.getUniqueFile(context, getBaseName(bucket), ""));
+				count.set(counts[bucket]);
+				outputs.write(MANIFEST_OUTPUT, name, count, MANIFEST);
+			}
+		}
+		outputs.close();
+	}
+
+	/**
+	  * Returns the name of the files of a bucket, before the task part.
+	  */
+	private String getBaseName(int bucket)
+	{
+		return String.format("%s-%05d", prefix, bucket);
+	}
+}
@@ -0,0 +1,144 @@
+package cc.dataset;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+  * DataInput reading straight from a ByteBuffer, used to deserialize Writables held in memory,
+  * such as the pairs of a block or a memory-mapped file.
+  * Unlike a DataInputBuffer, every number is read from the buffer at once, without a synchronized read per byte.
+  */
+class ByteBufferDataInput
+	implements DataInput
+{
+	private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+	/**
+	  * Starts reading a range of a byte array.
+	  * Parameters:	byte[] bytes, the bytes
+	  * 			int start, start of the range
+	  * 			int length, length of the range
+	  * Returns:	Nothing
+	  */
+	public void reset(byte[] bytes, int start, int length)
+	{
+		buffer = ByteBuffer.wrap(bytes, start, length);
+	}
+
+	/**
+	  * Starts reading the remaining bytes of a buffer. The position of the buffer advances as it is read.
+	  * Parameters:	ByteBuffer buffer, the buffer
+	  * Returns:	Nothing
+	  */
+	public void reset(ByteBuffer buffer)
+	{
+		this.buffer = buffer;
+	}
+
+	/**
+	  * Checks that a number of bytes remain in the buffer.
+	  */
+	private ByteBuffer require(int count)
+		throws EOFException
+	{
+		if(buffer.remaining() < count)
+			throw new EOFException();
+		return buffer;
+	}
+
+	public void readFully(byte[] b)
+		throws IOException
+	{
+		readFully(b, 0, b.length);
+	}
+
+	public void readFully(byte[] b, int offset, int length)
+		throws IOException
+	{
+		require(length).get(b, offset, length);
+	}
+
+	public int skipBytes(int n)
+	{
+		int skipped = Math.min(n, buffer.remaining());
+		buffer.position(buffer.position() + skipped);
+		return skipped;
+	}
+
+	public boolean readBoolean()
+		throws IOException
+	{
+		return require(1).get() != 0;
+	}
+
+	public byte readByte()
+		throws IOException
+	{
+		return require(1).get();
+	}
+
+	public int readUnsignedByte()
+		throws IOException
+	{
+		return require(1).get() & 0xFF;
+	}
+
+	public short readShort()
+		throws IOException
+	{
+		return require(2).getShort();
+	}
+
+	public int readUnsignedShort()
+		throws IOException
+	{
+		return require(2).getShort() & 0xFFFF;
+	}
+
+	public char readChar()
+		throws IOException
+	{
+		return require(2).getChar();
+	}
+
+	public int readInt()
+		throws IOException
+	{
+		return require(4).getInt();
+	}
+
+	public long readLong()
+		throws IOException
+	{
+		return require(8).getLong();
+	}
+
+	public float readFloat()
+		throws IOException
+	{
+		return require(4).getFloat();
+	}
+
+	public double readDouble()
+		throws IOException
+	{
+		return require(8).getDouble();
+	}
+
+	/**
+	  * Not supported, since Writables do not write lines.
+	  */
+	public String readLine()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	public String readUTF()
+		throws IOException
+	{
+		return DataInputStream.readUTF(this);
+	}
+}
@@ -0,0 +1,185 @@
+package cc.dataset;
+
+import java.nio.charset.Charset;
+
+/**
+  * Parses numbers straight from the bytes of a UTF-8 line, such as the contents of a Text, without building Strings.
+  * Used by the parse methods of the Data Point classes.
+  */
+public final class ByteParser
+{
+	/**
+	  * Charset used to build a String when a number has to be parsed by the JDK.
+	  */
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+
+	/**
+	  * Powers of ten that are exactly representable as a double.
+	  */
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+		1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	/**
+	  * Largest number of significant digits for which the fast path of parseFloat is exact.
+	  */
+	private static final int MAX_FAST_DIGITS = 15;
+
+	private ByteParser()
+	{
+	}
+
+	/**
+	  * Finds the first occurrence of a byte in a range.
+	  * Parameters:	byte[] bytes, the bytes
+	  * 			int start, start of the range (inclusive)
+	  * 			int end, end of the range (exclusive)
+	  * 			byte b, the byte to look for
+	  * Returns:	the position of the byte, or end if it does not occur
+	  */
+	public static int indexOf(byte[] bytes, int start, int end, byte b)
+	{
+		for(int i = start; i < end; i++)
+		{
+			if(bytes[i] == b)
+				return i;
+		}
+		return end;
+	}
+
+	/**
+	  * Parses a decimal integer, with an optional sign, like Integer.parseInt.
+	  * Parameters:	byte[] bytes, the bytes
+	  * 			int start, start of the number (inclusive)
+	  * 			int end, end of the number (exclusive)
+	  * Returns:	the integer
+	  * Throws:		NumberFormatException, if the range is not a valid integer
+	  */
+	public static int parseInt(byte[] bytes, int start, int end)
+	{
+		int i = start;
+		boolean negative = false;
+		if(i < end && (bytes[i] == '-' || bytes[i] == '+'))
+		{
+			negative = (bytes[i] == '-');
+			i++;
+		}
+		if(i == end)
+			throw invalid(bytes, start, end);
+
+		// Accumulate the magnitude in a long, which cannot overflow before the limit is passed.
+		// A negative number may reach -Integer.MIN_VALUE, one more than Integer.MAX_VALUE
+		long limit = (negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE);
+		long value = 0;
+		for(; i < end; i++)
+		{
+			int digit = bytes[i] - '0';
+			if(digit < 0 || digit > 9)
+				throw invalid(bytes, start, end);
+			value = 10 * value + digit;
+			if(value > limit)
+				throw invalid(bytes, start, end);
+		}
+		return (int) (negative ? -value : value);
+	}
+
+	/**
+	  * Parses a decimal floating point number, with an optional sign, fraction and exponent, like Float.parseFloat.
+	  * Parameters:	byte[] bytes, the bytes
+	  * 			int start, start of the number (inclusive)
+	  * 			int end, end of the number (exclusive)
+	  * Returns:	the float
+	  * Throws:		NumberFormatException, if the range is not a valid number
+	  *
+	  * Numbers with at most 15 significant digits and a small exponent are computed directly;
+	  * the others, and the rare results that could be rounded differently, are handed to Float.parseFloat.
+	  */
+	public static float parseFloat(byte[] bytes, int start, int end)
+	{
+		int i = start;
+		boolean negative = false;
+		if(i < end && (bytes[i] == '-' || bytes[i] == '+'))
+		{
+			negative = (bytes[i] == '-');
+			i++;
+		}
+
+		// Digits of the mantissa, ignoring leading zeros, and position of the decimal point
+		long mantissa = 0;
+		int digits = 0, exponent = 0;
+		boolean seenDigit = false, seenPoint = false;
+		for(; i < end; i++)
+		{
+			byte b = bytes[i];
+			if(b >= '0' && b <= '9')
+			{
+				seenDigit = true;
+				if(digits < 18)
+				{
+					if(mantissa != 0 || b != '0')
+					{
+						mantissa = 10 * mantissa + (b - '0');
+						digits++;
+					}
+					if(seenPoint)
+						exponent--;
+				}
+				else
+				{
+					// Too many digits for the fast path
+					digits++;
+					if(!seenPoint)
+						exponent++;
+				}
+			}
+			else if(b == '.' && !seenPoint)
+				seenPoint = true;
+			else
+				break;
+		}
+		if(!seenDigit)
+			return slowParseFloat(bytes, start, end);
+
+		// Optional exponent
+		if(i < end && (bytes[i] == 'e' || bytes[i] == 'E'))
+		{
+			if(i + 1 == end)
+				throw invalid(bytes, start, end);
+			exponent += parseInt(bytes, i + 1, end);
+			i = end;
+		}
+		if(i != end)
+			return slowParseFloat(bytes, start, end);
+
+		if(digits > MAX_FAST_DIGITS || exponent < -22 || exponent > 22)
+			return slowParseFloat(bytes, start, end);
+
+		// The mantissa and the power of ten are exact doubles, so this is the correctly rounded double
+		double value = (exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent]);
+
+		// Rounding the double to a float is only wrong if the double lies exactly halfway between two floats
+		long bits = Double.doubleToRawLongBits(value);
+		if((bits & 0x1FFFFFFFL) == 0x10000000L)
+			return slowParseFloat(bytes, start, end);
+
+		float result = (float) value;
+		return (negative ? -result : result);
+	}
+
+	/**
+	  * Parses a floating point number with Float.parseFloat.
+	  */
+	private static float slowParseFloat(byte[] bytes, int start, int end)
+	{
+		return Float.parseFloat(new String(bytes, start, end - start, ASCII));
+	}
+
+	/**
+	  * Builds the exception thrown for an invalid number.
+	  */
+	private static NumberFormatException invalid(byte[] bytes, int start, int end)
+	{
+		return new NumberFormatException("For input string: \"" + new String(bytes, start, end - start, ASCII) + "\"");
+	}
+}
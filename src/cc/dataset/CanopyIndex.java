@@ -0,0 +1,90 @@
+package cc.dataset;
+
+import java.util.List;
+
+/**
+  * A set of Canopy Centers that can be searched for the centers within T1 or T2 distance of a Data Point
+  * without checking every center.
+  */
+public abstract class CanopyIndex
+{
+	/**
+	  * Name of the configuration parameter selecting the kind of index used by the Canopy steps.
+	  */
+	public static final String CONFIGURATION_KEY = "canopyIndex";
+
+	/**
+	  * Index keeping the Canopy Centers sorted by simpleKey. Only usable if the simple distance has one dimension.
+	  */
+	public static final String SORTED = "sorted";
+
+	/**
+	  * Index placing the Canopy Centers in the cells of a uniform grid over the simple coordinates.
+	  */
+	public static final String GRID = "grid";
+
+	/**
+	  * Creates an empty index of the given kind.
+	  * Parameters:	String type, SORTED or GRID. If null, SORTED is used for a one-dimensional simple distance and GRID otherwise
+	  * Returns:	the index
+	  */
+	public static CanopyIndex create(String type)
+	{
+		if(type == null)
+			type = (DataPoint.getSimpleDimensions() == 1 ? SORTED : GRID);
+
+		if(type.equals(SORTED))
+		{
+			if(DataPoint.getSimpleDimensions() != 1)
+				throw new IllegalArgumentException("A sorted canopy index needs a one-dimensional simple distance");
+			return new SortedCanopyIndex();
+		}
+		if(type.equals(GRID))
+			return new GridCanopyIndex();
+		throw new IllegalArgumentException("Unknown canopy index: " + type);
+	}
+
+	/**
+	  * Creates an index of the given kind holding the given Canopy Centers.
+	  * Parameters:	String type, SORTED, GRID or null, as for create(String)
+	  * 			List<DataPoint> canopyCenters, Canopy Centers to add
+	  * Returns:	the index
+	  */
+	public static CanopyIndex create(String type, List<DataPoint> canopyCenters)
+	{
+		CanopyIndex index = create(type);
+		for(DataPoint canopyCenter : canopyCenters)
+			index.add(canopyCenter);
+		return index;
+	}
+
+	/**
+	  * Returns the number of Canopy Centers in the index.
+	  * Returns:	number of Canopy Centers
+	  */
+	public abstract int size();
+
+	/**
+	  * Adds a Canopy Center to the index.
+	  * Parameters:	DataPoint canopyCenter, the Canopy Center
+	  * Returns:	Nothing
+	  *
+	  * The object is stored as is, so it must not be modified afterwards.
+	  */
+	public abstract void add(DataPoint canopyCenter);
+
+	/**
+	  * Checks if any Canopy Center in the index is within T2 distance of a Data Point.
+	  * Parameters:	DataPoint dataPoint, the Data Point
+	  * Returns:	true if a Canopy Center is within T2 distance, false otherwise
+	  */
+	public abstract boolean anyWithinT2(DataPoint dataPoint);
+
+	/**
+	  * Finds all the Canopy Centers in the index within T1 distance of a Data Point.
+	  * Parameters:	DataPoint dataPoint, the Data Point
+	  * 			List<DataPoint> result, list the Canopy Centers are added to. It is cleared first
+	  * Returns:	result
+	  */
+	public abstract List<DataPoint> withinT1(DataPoint dataPoint, List<DataPoint> result);
+}
@@ -0,0 +1,223 @@
+package cc.dataset;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.WritableComparable;
+
+/**
+  * The ids of the Canopies a Data Point belongs to, the position of their Canopy Centers in the shipped list starting at 1.
+  * With the canopyMembership parameter, CanopyAssign writes every Data Point once under its membership,
+  * instead of once under every Canopy Center within T1, so that its output stays about the size of the input
+  * however much the Canopies overlap.
+  *
+  * The ids are kept sorted and distinct. They are written as their number, the first id and the difference of every id
+  * to the one before, as VarInts, so a Data Point in a few neighbouring Canopies takes a few bytes.
+  * As text, the ids are separated by commas.
+  */
+public class CanopyMembership implements WritableComparable<CanopyMembership>
+{
+	/**
+	  * Name of the configuration parameter making CanopyAssign write the membership of every Data Point, false by default.
+	  * The steps reading the output of CanopyAssign must be given the same value.
+	  */
+	public static final String CONFIGURATION_KEY = "canopyMembership";
+
+	/**
+	  * Ids of the Canopies, the first size of which are used, in increasing order.
+	  */
+	private int[] ids;
+
+	/**
+	  * Number of Canopies.
+	  */
+	private int size;
+
+	/**
+	  * Returns if the Data Points are written with their membership in a configuration.
+	  * Parameters:	Configuration configuration, the configuration of a job
+	  * Returns:	true for memberships, false for (Canopy Center, Data Point) pairs
+	  */
+	public static boolean isEnabled(Configuration configuration)
+	{
+		return configuration.getBoolean(CONFIGURATION_KEY, false);
+	}
+
+	/**
+	  * Creates an empty membership.
+	  */
+	public CanopyMembership()
+	{
+		ids = new int[4];
+		size = 0;
+	}
+
+	/**
+	  * Creates a copy of a membership, to keep it while the original is reused.
+	  * Parameters:	CanopyMembership membership, the membership to copy
+	  */
+	public CanopyMembership(CanopyMembership membership)
+	{
+		ids = Arrays.copyOf(membership.ids, Math.max(membership.size, 1));
+		size = membership.size;
+	}
+
+	/**
+	  * Returns the number of Canopies.
+	  */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	  * Returns the id of a Canopy.
+	  * Parameters:	int index, the position of the id, in increasing order of the ids
+	  * Returns:	the id
+	  */
+	public int get(int index)
+	{
+		return ids[index];
+	}
+
+	/**
+	  * Empties the membership.
+	  */
+	public void clear()
+	{
+		size = 0;
+	}
+
+	/**
+	  * Adds a Canopy, keeping the ids in order. An id already in the membership is not added again.
+	  * Parameters:	int id, the id of the Canopy
+	  * Returns:	Nothing
+	  */
+	public void add(int id)
+	{
+		// Find the position of the id from the end, as the ids are mostly added in order
+		int position = size;
+		while(position > 0 && ids[position - 1] > id)
+			position--;
+		if(position > 0 && ids[position - 1] == id)
+			return;
+
+		if(size == ids.length)
+			ids = Arrays.copyOf(ids, 2 * size);
+		System.arraycopy(ids, position, ids, position + 1, size - position);
+		ids[position] = id;
+		size++;
+	}
+
+	/**
+	  * Sets the membership from its text, the ids separated by commas, without creating any String.
+	  * Parameters:	byte[] bytes, UTF-8 bytes holding the text
+	  * 			int start, position of the first byte (inclusive)
+	  * 			int end, position after the last byte (exclusive)
+	  * Returns:	Nothing
+	  */
+	public void parse(byte[] bytes, int start, int end)
+	{
+		clear();
+		while(start < end)
+		{
+			int commaPosition = ByteParser.indexOf(bytes, start, end, (byte) ',');
+			add(ByteParser.parseInt(bytes, start, commaPosition));
+			start = commaPosition + 1;
+		}
+	}
+
+	/**
+	  * Serializes the membership: the number of ids, the first id and the differences between following ids, as VarInts.
+	  * Parameters:	DataOutput out, to write the fields serially
+	  * Returns:	Nothing
+	  */
+	public void write(DataOutput out)
+		throws IOException
+	{
+		VarInt.writeUnsigned(out, size);
+		int previous = 0;
+		for(int i = 0; i < size; i++)
+		{
+			VarInt.writeUnsigned(out, ids[i] - previous);
+			previous = ids[i];
+		}
+	}
+
+	/**
+	  * Reads the fields in the order they were written.
+	  * Parameters:	DataInput in, to read the fields serially
+	  * Returns:	Nothing
+	  */
+	public void readFields(DataInput in)
+		throws IOException
+	{
+		size = (int) VarInt.readUnsigned(in);
+		if(ids.length < size)
+			ids = new int[size];
+		int previous = 0;
+		for(int i = 0; i < size; i++)
+		{
+			previous += (int) VarInt.readUnsigned(in);
+			ids[i] = previous;
+		}
+	}
+
+	/**
+	  * Compares the ids in order, a membership being before the longer ones it starts.
+	  * Parameters:	CanopyMembership membership, the membership to compare to
+	  * Returns:	a negative, zero or positive value if this membership is before, equal to or after the other one
+	  *
+	  * Sorting by membership puts the Data Points of the same Canopies next to each other.
+	  */
+	public int compareTo(CanopyMembership membership)
+	{
+		int length = Math.min(size, membership.size);
+		for(int i = 0; i < length; i++)
+		{
+			if(ids[i] != membership.ids[i])
+				return (ids[i] < membership.ids[i] ? -1 : 1);
+		}
+		return size - membership.size;
+	}
+
+	/**
+	  * Returns true if the other object is a membership with the same ids.
+	  */
+	@Override
+	public boolean equals(Object object)
+	{
+		return (object instanceof CanopyMembership) && compareTo((CanopyMembership) object) == 0;
+	}
+
+	/**
+	  * Returns a hash code of the ids.
+	  */
+	@Override
+	public int hashCode()
+	{
+		int hash = 1;
+		for(int i = 0; i < size; i++)
+			hash = 31 * hash + ids[i];
+		return hash;
+	}
+
+	/**
+	  * Returns the ids separated by commas.
+	  */
+	@Override
+	public String toString()
+	{
+		StringBuilder builder = new StringBuilder();
+		for(int i = 0; i < size; i++)
+		{
+			if(i > 0)
+				builder.append(',');
+			builder.append(ids[i]);
+		}
+		return builder.toString();
+	}
+}
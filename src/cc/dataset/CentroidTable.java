@@ -0,0 +1,173 @@
+package cc.dataset;
+
+import java.util.List;
+
+/**
+  * k-Means Centroids kept in columns, one array of coordinates per dimension of the complex distance metric,
+  * with kernels finding the nearest centroid of a Data Point or of a batch of Data Points under a DistanceMetric.
+  * The kernels of the metric compare ranks, such as squared distances, which have the same order as the distances,
+  * and run over primitive arrays in loops the JIT compiler can turn into SIMD instructions.
+  * Of equally near centroids the first one is taken, as in the loops over complexDistance it replaces.
+  * The ranks are computed in double precision, so the squared Euclidean distances are exact for integer attributes.
+  */
+public class CentroidTable
+{
+	/**
+	  * Number of Data Points a batch holds at most.
+	  */
+	public static final int BATCH_SIZE = 256;
+
+	/**
+	  * The metric of the distances.
+	  */
+	private final DistanceMetric metric;
+
+	/**
+	  * Coordinates of the centroids, at the offset of the centroid in the array of every dimension.
+	  */
+	private final double[][] columns;
+
+	/**
+	  * Number of centroids.
+	  */
+	private final int size;
+
+	/**
+	  * Ranks of the distances from a Data Point to every centroid, and the rank of the nearest centroid last found.
+	  * Reused by every call of nearest.
+	  */
+	private final double[] ranks;
+	private double nearestRank;
+
+	/**
+	  * Coordinates of a batch of Data Points in columns, and the ranks of the distances of the batch to one centroid.
+	  * Allocated by the first call of the batch kernel.
+	  */
+	private double[][] batchColumns;
+	private double[] batchRanks;
+
+	/**
+	  * Creates the table of a list of centroids.
+	  * Parameters:	List<DataPoint> centroids, the centroids, in the order of their offsets in the table
+	  * 			DistanceMetric metric, the metric of the distances
+	  */
+	public CentroidTable(List<DataPoint> centroids, DistanceMetric metric)
+	{
+		this(centroids.toArray(new DataPoint[centroids.size()]), null, metric);
+	}
+
+	/**
+	  * Creates the table of some of the centroids of an array.
+	  * Parameters:	DataPoint[] centroids, the centroids
+	  * 			int[] offsets, the offsets in centroids of the centroids kept in the table, in the order of their offsets in the table,
+	  * 			or null to keep all of them
+	  * 			DistanceMetric metric, the metric of the distances
+	  */
+	public CentroidTable(DataPoint[] centroids, int[] offsets, DistanceMetric metric)
+	{
+		this.metric = metric;
+		size = (offsets == null ? centroids.length : offsets.length);
+		columns = new double[DataPoint.getComplexDimensions()][size];
+		for(int i = 0; i < size; i++)
+		{
+			DataPoint centroid = centroids[offsets == null ? i : offsets[i]];
+			for(int d = 0; d < columns.length; d++)
+				columns[d][i] = centroid.complexCoordinate(d);
+		}
+		ranks = new double[size];
+	}
+
+	/**
+	  * Returns the number of centroids.
+	  */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	  * Finds the centroid nearest to a Data Point.
+	  * Parameters:	DataPoint dataPoint, the Data Point
+	  * Returns:	the offset of the nearest centroid in the table, or -1 if the table is empty
+	  *
+	  * The metric computes the ranks of the distances to all the centroids, then the smallest one is searched.
+	  */
+	public int nearest(DataPoint dataPoint)
+	{
+		metric.ranks(columns, size, dataPoint, ranks);
+
+		// Find the first smallest rank
+		int nearest = -1;
+		nearestRank = Double.POSITIVE_INFINITY;
+		for(int i = 0; i < size; i++)
+		{
+			if(ranks[i] < nearestRank)
+			{
+				nearestRank = ranks[i];
+				nearest = i;
+			}
+		}
+		return nearest;
+	}
+
+	/**
+	  * Returns the distance of the Data Point of the last call of nearest to its nearest centroid, infinite if the table is empty.
+	  */
+	public double getNearestDistance()
+	{
+		return metric.rankToDistance(nearestRank);
+	}
+
+	/**
+	  * Returns the squared distance of the Data Point of the last call of nearest to its nearest centroid,
+	  * infinite if the table is empty.
+	  */
+	public double getNearestSquaredDistance()
+	{
+		return metric.rankToSquaredDistance(nearestRank);
+	}
+
+	/**
+	  * Finds the centroid nearest to every Data Point of a batch.
+	  * Parameters:	DataPoint[] dataPoints, the Data Points of the batch
+	  * 			int count, the number of Data Points in the batch, at most BATCH_SIZE
+	  * 			int[] nearest, filled with the offset of the nearest centroid of every Data Point of the batch, -1 if the table is empty
+	  * 			double[] nearestRanks, filled with the rank of the distance of every Data Point of the batch to its nearest centroid
+	  * Returns:	Nothing
+	  *
+	  * The coordinates of the batch are copied into columns, and the metric computes the ranks of the distances
+	  * of the whole batch for one centroid at a time, so every centroid is read once per batch instead of once per Data Point.
+	  */
+	public void nearest(DataPoint[] dataPoints, int count, int[] nearest, double[] nearestRanks)
+	{
+		if(batchColumns == null)
+		{
+			batchColumns = new double[DataPoint.getComplexDimensions()][BATCH_SIZE];
+			batchRanks = new double[BATCH_SIZE];
+		}
+
+		// Copy the coordinates of the batch into columns
+		for(int j = 0; j < count; j++)
+		{
+			for(int d = 0; d < batchColumns.length; d++)
+				batchColumns[d][j] = dataPoints[j].complexCoordinate(d);
+			nearest[j] = -1;
+			nearestRanks[j] = Double.POSITIVE_INFINITY;
+		}
+
+		for(int i = 0; i < size; i++)
+		{
+			metric.ranks(batchColumns, count, columns, i, batchRanks);
+
+			// Keep the centroid for the Data Points it is strictly nearer to, so the first of equally near centroids is kept
+			for(int j = 0; j < count; j++)
+			{
+				if(batchRanks[j] < nearestRanks[j])
+				{
+					nearestRanks[j] = batchRanks[j];
+					nearest[j] = i;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package cc.dataset;
+
+/**
+  * Chebyshev distance, the largest absolute difference of the complex coordinates. Its ranks are the distances.
+  */
+public final class ChebyshevMetric extends DistanceMetric
+{
+	@Override
+	public double distance(DataPoint dataPoint, DataPoint other)
+	{
+		double max = 0;
+		for(int d = 0; d < DataPoint.getComplexDimensions(); d++)
+			max = Math.max(max, Math.abs(dataPoint.complexCoordinate(d) - other.complexCoordinate(d)));
+		return max;
+	}
+
+	@Override
+	public double rankToDistance(double rank)
+	{
+		return rank;
+	}
+
+	@Override
+	public boolean isMetric()
+	{
+		return true;
+	}
+
+	@Override
+	public void ranks(double[][] columns, int size, DataPoint dataPoint, double[] ranks)
+	{
+		for(int d = 0; d < columns.length; d++)
+		{
+			double[] column = columns[d];
+			double coordinate = dataPoint.complexCoordinate(d);
+			if(d == 0)
+			{
+				for(int i = 0; i < size; i++)
+					ranks[i] = Math.abs(column[i] - coordinate);
+			}
+			else
+			{
+				for(int i = 0; i < size; i++)
+					ranks[i] = Math.max(ranks[i], Math.abs(column[i] - coordinate));
+			}
+		}
+	}
+
+	@Override
+	public void ranks(double[][] batchColumns, int count, double[][] columns, int offset, double[] ranks)
+	{
+		for(int d = 0; d < batchColumns.length; d++)
+		{
+			double[] batchColumn = batchColumns[d];
+			double coordinate = columns[d][offset];
+			if(d == 0)
+			{
+				for(int j = 0; j < count; j++)
+					ranks[j] = Math.abs(batchColumn[j] - coordinate);
+			}
+			else
+			{
+				for(int j = 0; j < count; j++)
+					ranks[j] = Math.max(ranks[j], Math.abs(batchColumn[j] - coordinate));
+			}
+		}
+	}
+}
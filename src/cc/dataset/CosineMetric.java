@@ -0,0 +1,85 @@
+package cc.dataset;
+
+/**
+  * Cosine distance, one minus the cosine of the angle between the complex coordinates of the Data Points as vectors.
+  * A Data Point at the origin has no direction and is at distance 1 from every other one. Its ranks are the distances.
+  * It does not satisfy the triangle inequality.
+  */
+public final class CosineMetric extends DistanceMetric
+{
+	@Override
+	public double distance(DataPoint dataPoint, DataPoint other)
+	{
+		double dot = 0, norm = 0, otherNorm = 0;
+		for(int d = 0; d < DataPoint.getComplexDimensions(); d++)
+		{
+			double coordinate = dataPoint.complexCoordinate(d), otherCoordinate = other.complexCoordinate(d);
+			dot += coordinate * otherCoordinate;
+			norm += coordinate * coordinate;
+			otherNorm += otherCoordinate * otherCoordinate;
+		}
+		return cosineDistance(dot, norm, otherNorm);
+	}
+
+	@Override
+	public double rankToDistance(double rank)
+	{
+		return rank;
+	}
+
+	@Override
+	public boolean isMetric()
+	{
+		return false;
+	}
+
+	@Override
+	public void ranks(double[][] columns, int size, DataPoint dataPoint, double[] ranks)
+	{
+		double norm = 0;
+		for(int d = 0; d < columns.length; d++)
+			norm += dataPoint.complexCoordinate(d) * dataPoint.complexCoordinate(d);
+
+		for(int i = 0; i < size; i++)
+		{
+			double dot = 0, columnNorm = 0;
+			for(int d = 0; d < columns.length; d++)
+			{
+				double coordinate = columns[d][i];
+				dot += coordinate * dataPoint.complexCoordinate(d);
+				columnNorm += coordinate * coordinate;
+			}
+			ranks[i] = cosineDistance(dot, norm, columnNorm);
+		}
+	}
+
+	@Override
+	public void ranks(double[][] batchColumns, int count, double[][] columns, int offset, double[] ranks)
+	{
+		double norm = 0;
+		for(int d = 0; d < columns.length; d++)
+			norm += columns[d][offset] * columns[d][offset];
+
+		for(int j = 0; j < count; j++)
+		{
+			double dot = 0, batchNorm = 0;
+			for(int d = 0; d < batchColumns.length; d++)
+			{
+				double coordinate = batchColumns[d][j];
+				dot += coordinate * columns[d][offset];
+				batchNorm += coordinate * coordinate;
+			}
+			ranks[j] = cosineDistance(dot, batchNorm, norm);
+		}
+	}
+
+	/**
+	  * Returns the cosine distance of two vectors from their dot product and squared norms, 1 if either is at the origin.
+	  */
+	private static double cosineDistance(double dot, double norm, double otherNorm)
+	{
+		if(norm == 0 || otherNorm == 0)
+			return 1;
+		return 1 - dot / Math.sqrt(norm * otherNorm);
+	}
+}
@@ -8,42 +8,148 @@ import java.io.IOException;
 import java.io.DataInput;
 import java.io.DataOutput;
 
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
 
 /**
-  * A class to model a simple [year, temperature] Data Set.
+  * A class to model a Data Point of any Data Set as an array of columns, laid out by a DataSchema.
+  * The schema is selected at run time with the dataPointSchema configuration parameter and shared by all the Data Points
+  * of the JVM, [year, temperature] by default, so the same jar clusters every Data Set.
   */
 public class DataPoint implements WritableComparable<DataPoint>
 {
 	/**
-	  * Attributes for the class: year and temperature.
+	  * The schema of all the Data Points.
 	  */
-	public int year, temperature;
+	private static DataSchema schema = DataSchema.DEFAULT;
 
 	/**
-	  * T1 and T2 thresholds for this Data Set.
+	  * Attributes of the Data Point, one per column of the schema. Int and float columns are both held as doubles.
 	  */
-	public final static double T1 = 10, T2 = 6;
+	private double[] values;
+
 	/**
 	  * Threshold for convergence. A distance value below the specified value denotes the point has converged.
 	  */
 	public final static double CONVERGENCE_THRESHOLD = 1.0;
 
+	/**
+	  * Default limit of the number of k-Means iterations, after which the centroids are kept even if they have not converged.
+	  */
+	public final static int MAX_ITERATIONS = 100;
+
 	/**
 	 * The number of iterations so far.
 	 */
 	public static long NUM_ITERATIONS = 0;
 
+	/**
+	  * Primes weighting the attributes in hashCode.
+	  */
+	private static final int[] HASH_PRIMES = {17, 31, 37, 41, 43, 47, 53, 59};
+
+	/**
+	  * <b>Returns the schema of the Data Points. </b><br>
+	  * <b>Parameters:</b>	None <br>
+	  * <b>Returns:</b>		DataSchema <br>
+	  */
+	public static DataSchema getSchema()
+	{
+		return schema;
+	}
+
+	/**
+	  * <b>Sets the schema of the Data Points. </b><br>
+	  * <b>Parameters:</b>	DataSchema dataSchema, the new schema. <br>
+	  * <b>Returns:</b>		Nothing <br><br>
+	  *
+	  * Data Points created before keep their attributes until they are set, parsed or read again.
+	  */
+	public static void setSchema(DataSchema dataSchema)
+	{
+		schema = dataSchema;
+	}
+
+	/**
+	  * <b>Sets the schema of the Data Points from a configuration. </b><br>
+	  * <b>Parameters:</b>	Configuration configuration, the configuration of a job. <br>
+	  * <b>Returns:</b>		Nothing <br>
+	  * <b>Uses:</b>		DataSchema create(Configuration) <br><br>
+	  *
+	  * Called by the drivers and by the setup of every Mapper and Reducer. Keeps the current schema if it is the same one.
+	  */
+	public static void configure(Configuration configuration)
+	{
+		DataSchema configured = DataSchema.create(configuration);
+		if(!configured.getDescription().equals(schema.getDescription()))
+			schema = configured;
+	}
+
+	/**
+	  * <b>Returns the T1 threshold of the Data Set. </b><br>
+	  * <b>Parameters:</b>	None <br>
+	  * <b>Returns:</b>		double <br>
+	  */
+	public static double getT1()
+	{
+		return schema.getT1();
+	}
+
+	/**
+	  * <b>Returns the T2 threshold of the Data Set. </b><br>
+	  * <b>Parameters:</b>	None <br>
+	  * <b>Returns:</b>		double <br>
+	  */
+	public static double getT2()
+	{
+		return schema.getT2();
+	}
+
+	/**
+	  * <b>Returns the number of attributes averaged into a k-Means Centroid. </b><br>
+	  * <b>Parameters:</b>	None <br>
+	  * <b>Returns:</b>		int, the number of full columns of the schema. <br>
+	  */
+	public static int getNumAttributes()
+	{
+		return schema.getFullColumns().length;
+	}
+
+	/**
+	  * <b>Returns the number of coordinates the simple distance metric depends on. </b><br>
+	  * <b>Parameters:</b>	None <br>
+	  * <b>Returns:</b>		int, the number of cheap columns of the schema. <br>
+	  */
+	public static int getSimpleDimensions()
+	{
+		return schema.getCheapColumns().length;
+	}
+
+	/**
+	  * <b>Returns the number of coordinates the complex distance metric depends on. </b><br>
+	  * <b>Parameters:</b>	None <br>
+	  * <b>Returns:</b>		int, the number of full columns of the schema. <br><br>
+	  *
+	  * The complex distance is their Euclidean distance.
+	  */
+	public static int getComplexDimensions()
+	{
+		return schema.getFullColumns().length;
+	}
+
 	/**
 	  * <b>Default Constructor. </b><br>
 	  * <b>Parameters:</b>	None <br>
 	  * <b>Returns:</b>		Nothing <br/><br>
 	  *
-	  * Sets the year and temperature values to 0.
+	  * Sets every attribute to 0.
 	  */
 	public DataPoint()
 	{
-		year = temperature = 0;
+		values = new double[schema.size()];
 	}
 
 	/**
@@ -55,9 +161,51 @@ public class DataPoint implements WritableComparable<DataPoint>
 	  */
 	public DataPoint(String dataPointString)
 	{
-		int commaPosition = dataPointString.indexOf(",");
-		year = Integer.parseInt(dataPointString.substring(0, commaPosition));
-		temperature = Integer.parseInt(dataPointString.substring(commaPosition + 1));
+		values = new double[schema.size()];
+		int start = 0;
+		for(int c = 0; c < values.length; c++)
+		{
+			int commaPosition = (c == values.length - 1 ? dataPointString.length() : dataPointString.indexOf(",", start));
+			String column = dataPointString.substring(start, commaPosition);
+			values[c] = (schema.isFloat(c) ? Float.parseFloat(column) : Integer.parseInt(column));
+			start = commaPosition + 1;
+		}
+	}
+
+	/**
+	  * <b>Parses a Data Point from bytes. </b><br>
+	  * <b>Parameters:</b>	byte[] bytes, UTF-8 bytes holding a string representation of an object of the class.
+	  * 					int start, position of the first byte (inclusive).
+	  * 					int end, position after the last byte (exclusive). <br>
+	  * <b>Returns:</b>		Nothing <br>
+	  * <b>Uses:</b>		ByteParser <br><br>
+	  *
+	  * Sets the fields of this object from the bytes without creating any String, so that an object can be reused for every record.
+	  * Same result as the String constructor.
+	  */
+	public void parse(byte[] bytes, int start, int end)
+	{
+		fit();
+		for(int c = 0; c < values.length; c++)
+		{
+			int commaPosition = (c == values.length - 1 ? end : ByteParser.indexOf(bytes, start, end, (byte) ','));
+			values[c] = (schema.isFloat(c) ? ByteParser.parseFloat(bytes, start, commaPosition)
+				: ByteParser.parseInt(bytes, start, commaPosition));
+			start = commaPosition + 1;
+		}
+	}
+
+	/**
+	  * <b>Parses a Data Point from a Text. </b><br>
+	  * <b>Parameters:</b>	Text text, a string representation of an object of the class. <br>
+	  * <b>Returns:</b>		Nothing <br>
+	  * <b>Uses:</b>		void parse(byte[], int, int) <br><br>
+	  *
+	  * Sets the fields of this object from the bytes of the Text.
+	  */
+	public void parse(Text text)
+	{
+		parse(text.getBytes(), 0, text.getLength());
 	}
 
 	/**
@@ -69,8 +217,56 @@ public class DataPoint implements WritableComparable<DataPoint>
 	  */
 	public DataPoint(DataPoint dataPoint)
 	{
-		year = dataPoint.year;
-		temperature = dataPoint.temperature;
+		values = dataPoint.values.clone();
+	}
+
+	/**
+	  * <b>set method (DataPoint). </b><br>
+	  * <b>Parameters:</b>	DataPoint dataPoint, the reference Data Point whose fields are to be copied into this object <br>
+	  * <b>Returns:</b>		Nothing <br><br>
+	  *
+	  * Sets this object's fields to the corresponding fields of the passed object, like the copy constructor, so that an object can be reused.
+	  */
+	public void set(DataPoint dataPoint)
+	{
+		if(values.length != dataPoint.values.length)
+			values = new double[dataPoint.values.length];
+		System.arraycopy(dataPoint.values, 0, values, 0, values.length);
+	}
+
+	/**
+	  * <b>Returns an attribute. </b><br>
+	  * <b>Parameters:</b>	int column, the column of the attribute in the schema. <br>
+	  * <b>Returns:</b>		double, the attribute. <br>
+	  */
+	public double get(int column)
+	{
+		return values[column];
+	}
+
+	/**
+	  * <b>Sets an attribute. </b><br>
+	  * <b>Parameters:</b>	int column, the column of the attribute in the schema.
+	  * 					double value, the new value, which should already have the type of the column. <br>
+	  * <b>Returns:</b>		Nothing <br>
+	  */
+	public void set(int column, double value)
+	{
+		fit();
+		values[column] = value;
+	}
+
+	/**
+	  * <b>Resizes the attributes to the schema. </b><br>
+	  * <b>Parameters:</b>	None <br>
+	  * <b>Returns:</b>		Nothing <br><br>
+	  *
+	  * Only allocates when the schema has changed since the Data Point was created.
+	  */
+	private void fit()
+	{
+		if(values.length != schema.size())
+			values = new double[schema.size()];
 	}
 
 	/**
@@ -78,13 +274,35 @@ public class DataPoint implements WritableComparable<DataPoint>
 	  * <b>Parameters:</b>	DataOutput out, to write the fields of this object serially <br>
 	  * <b>Returns:</b>		Nothing <br><br>
 	  *
-	  * Serializes the object by writing the fields in a specific serial order to out.
+	  * Serializes the object by writing the columns in the order of the schema, each as a 4 byte int or float,
+	  * or with the int columns as zig-zag VarInts in the compact encoding.
 	  */
 	public void write(DataOutput out)
 		throws IOException
 	{
-		out.writeInt(year);
-		out.writeInt(temperature);
+		write(out, schema.isCompact());
+	}
+
+	/**
+	  * <b>Serializes the object in a given encoding. </b><br>
+	  * <b>Parameters:</b>	DataOutput out, to write the fields of this object serially.
+	  * 					boolean compact, true for the compact encoding, false for the fixed one. <br>
+	  * <b>Returns:</b>		Nothing <br><br>
+	  *
+	  * Lets files that need records of a fixed width, such as side data, use the fixed encoding whatever the schema.
+	  */
+	public void write(DataOutput out, boolean compact)
+		throws IOException
+	{
+		for(int c = 0; c < values.length; c++)
+		{
+			if(schema.isFloat(c))
+				out.writeFloat((float) values[c]);
+			else if(compact)
+				VarInt.writeSigned(out, (int) values[c]);
+			else
+				out.writeInt((int) values[c]);
+		}
 	}
 
 	/**
@@ -97,8 +315,26 @@ public class DataPoint implements WritableComparable<DataPoint>
 	public void readFields(DataInput in)
 		throws IOException
 	{
-		year = in.readInt();
-		temperature = in.readInt();
+		readFields(in, schema.isCompact());
+	}
+
+	/**
+	  * <b>Reads the fields of the object in a given encoding. </b><br>
+	  * <b>Parameters:</b> 	DataInput in, to read the fields of this object serially.
+	  * 					boolean compact, true for the compact encoding, false for the fixed one. <br>
+	  * <b>Returns:</b>		Nothing <br>
+	  */
+	public void readFields(DataInput in, boolean compact)
+		throws IOException
+	{
+		fit();
+		for(int c = 0; c < values.length; c++)
+		{
+			if(schema.isFloat(c))
+				values[c] = in.readFloat();
+			else
+				values[c] = (compact ? (int) VarInt.readSigned(in) : in.readInt());
+		}
 	}
 
 	/**
@@ -114,7 +350,106 @@ public class DataPoint implements WritableComparable<DataPoint>
 	{
 		DataPoint dataPoint = new DataPoint();
 		dataPoint.readFields(in);
-		return dataPoint;	
+		return dataPoint;
+	}
+
+	/**
+	  * <b>Comparator that compares serialized DataPoints without deserializing them. </b><br><br>
+	  *
+	  * Gives the same ordering as compareTo. In the fixed encoding every column is written as 4 bytes,
+	  * so a column is read at 4 times its position. In the compact encoding the columns before it are skipped.
+	  * Registered for the class, so it is used to sort and group DataPoint keys during the shuffle.
+	  * Set as the sort comparator of a job, it also configures the schema of the task from the job configuration.
+	  */
+	public static class Comparator extends WritableComparator implements Configurable
+	{
+		/**
+		  * The configuration of the job, if any.
+		  */
+		private Configuration configuration;
+
+		public Comparator()
+		{
+			super(DataPoint.class);
+		}
+
+		/**
+		  * <b>Sets the configuration of the job and the schema it holds. </b><br>
+		  * <b>Parameters:</b>	Configuration configuration, the configuration of the job. <br>
+		  * <b>Returns:</b>		Nothing <br>
+		  */
+		public void setConf(Configuration configuration)
+		{
+			this.configuration = configuration;
+			if(configuration != null)
+				configure(configuration);
+		}
+
+		/**
+		  * <b>Returns the configuration of the job. </b><br>
+		  * <b>Parameters:</b>	None <br>
+		  * <b>Returns:</b>		Configuration <br>
+		  */
+		public Configuration getConf()
+		{
+			return configuration;
+		}
+
+		/**
+		  * <b>Compares two serialized DataPoints. </b><br>
+		  * <b>Parameters:</b>	byte[] b1, int s1, int l1, the bytes, start and length of the first Data Point.
+		  * 					byte[] b2, int s2, int l2, the bytes, start and length of the second Data Point. <br>
+		  * <b>Returns:</b>		int ,possible values are -1, 0 and 1 <br>
+		  */
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2)
+		{
+			DataSchema dataSchema = schema;
+			boolean compact = dataSchema.isCompact();
+			for(int c : dataSchema.getOrderColumns())
+			{
+				int comparison;
+				int position1 = (compact ? offset(dataSchema, b1, s1, c) : s1 + 4 * c);
+				int position2 = (compact ? offset(dataSchema, b2, s2, c) : s2 + 4 * c);
+				if(dataSchema.isFloat(c))
+				{
+					float value1 = readFloat(b1, position1), value2 = readFloat(b2, position2);
+					comparison = (value1 < value2 ? -1 : (value1 == value2 ? 0 : 1));
+				}
+				else
+				{
+					long value1 = (compact ? VarInt.readSigned(b1, position1) : readInt(b1, position1));
+					long value2 = (compact ? VarInt.readSigned(b2, position2) : readInt(b2, position2));
+					comparison = (value1 < value2 ? -1 : (value1 == value2 ? 0 : 1));
+				}
+				if(comparison != 0)
+					return comparison;
+			}
+			return 0;
+		}
+
+		/**
+		  * <b>Finds a column in a Data Point serialized in the compact encoding. </b><br>
+		  * <b>Parameters:</b>	DataSchema dataSchema, the schema of the Data Point.
+		  * 					byte[] bytes, int start, the bytes and start of the Data Point.
+		  * 					int column, the column. <br>
+		  * <b>Returns:</b>		int, the position of the first byte of the column. <br><br>
+		  *
+		  * Skips the columns before it: 4 bytes for a float, the length of its VarInt for an int.
+		  */
+		private static int offset(DataSchema dataSchema, byte[] bytes, int start, int column)
+		{
+			int position = start;
+			for(int c = 0; c < column; c++)
+				position += (dataSchema.isFloat(c) ? 4 : VarInt.length(bytes, position));
+			return position;
+		}
+	}
+
+	static
+	{
+		// Register the raw comparator for the class
+		WritableComparator.define(DataPoint.class, new Comparator());
 	}
 
 	/**
@@ -122,12 +457,17 @@ public class DataPoint implements WritableComparable<DataPoint>
 	  * <b>Parameters:</b>	DataPoint dataPoint, the object to compare this object to <br>
 	  * <b>Returns:</b>		int ,possible values are -1, 0 and 1 <br><br>
 	  *
-	  * Compares the fields of two objects to obtain an ordering.
+	  * Compares the columns of two objects to obtain an ordering: the cheap columns first, then the other full columns.
+	  * The id columns are not compared.
 	  */
 	public int compareTo(DataPoint dataPoint)
 	{
-		return (temperature < dataPoint.temperature ? -1 : 
-			(temperature == dataPoint.temperature ? (year < dataPoint.year ? -1 : (year == dataPoint.year ? 0 : 1)) : 1));
+		for(int c : schema.getOrderColumns())
+		{
+			if(values[c] != dataPoint.values[c])
+				return (values[c] < dataPoint.values[c] ? -1 : 1);
+		}
+		return 0;
 	}
 
 	/**
@@ -141,7 +481,7 @@ public class DataPoint implements WritableComparable<DataPoint>
 	  */
 	public boolean withinT1(DataPoint dataPoint)
 	{
-		return (simpleDistance(dataPoint) < T1);
+		return (simpleDistance(dataPoint) < schema.getT1());
 	}
 
 	/**
@@ -155,7 +495,7 @@ public class DataPoint implements WritableComparable<DataPoint>
 	  */
 	public boolean withinT2(DataPoint dataPoint)
 	{
-		return (simpleDistance(dataPoint) < T2);
+		return (simpleDistance(dataPoint) < schema.getT2());
 	}
 
 	/**
@@ -163,12 +503,68 @@ public class DataPoint implements WritableComparable<DataPoint>
 	  * <b>Parameters:</b>	DataPoint dataPoint, the object to compare this object to. <br>
 	  * <b>Returns:</b>		int, a simple distance value. <br><br>
 	  *
-	  * Finds a simple, cheap distance between two Data Points.
-	  * Used in Canopy Generation phase.
+	  * Finds a simple, cheap distance between two Data Points: the largest difference of their cheap columns,
+	  * each multiplied by its scale and rounded down. Used in Canopy Generation phase.
 	  */
 	public int simpleDistance(DataPoint dataPoint)
 	{
-		return Math.abs(temperature - dataPoint.temperature);
+		int[] cheapColumns = schema.getCheapColumns();
+		double[] cheapScales = schema.getCheapScales();
+		int distance = 0;
+		for(int d = 0; d < cheapColumns.length; d++)
+		{
+			int c = cheapColumns[d];
+			distance = Math.max(distance, Math.abs((int) Math.floor((values[c] - dataPoint.values[c]) * cheapScales[d])));
+		}
+		return distance;
+	}
+
+	/**
+	  * <b>Key of the Data Point for the simple distance metric. </b><br>
+	  * <b>Parameters:</b>	None <br>
+	  * <b>Returns:</b>		double, the first cheap column. <br><br>
+	  *
+	  * Two Data Points whose keys differ by simpleKeyRadius(threshold) or more have a simple distance of at least threshold.
+	  * Used to keep Canopy Centers sorted and only visit those near a Data Point.
+	  */
+	public double simpleKey()
+	{
+		return values[schema.getCheapColumns()[0]];
+	}
+
+	/**
+	  * <b>Coordinate of the Data Point for the simple distance metric. </b><br>
+	  * <b>Parameters:</b>	int dimension, between 0 and getSimpleDimensions() - 1. <br>
+	  * <b>Returns:</b>		double, the cheap column of this dimension. <br><br>
+	  *
+	  * Two Data Points whose coordinates differ by simpleKeyRadius(threshold) or more in any dimension
+	  * have a simple distance of at least threshold. Used to place Canopy Centers in the cells of a grid.
+	  * Coordinate 0 is the simpleKey.
+	  */
+	public double simpleCoordinate(int dimension)
+	{
+		return values[schema.getCheapColumns()[dimension]];
+	}
+
+	/**
+	  * <b>Radius in key space of a simple distance threshold. </b><br>
+	  * <b>Parameters:</b>	double threshold, a threshold on simpleDistance such as T1 or T2. <br>
+	  * <b>Returns:</b>		double, the radius in key space. <br><br>
+	  *
+	  * Returns the smallest difference of simpleKey values, or of any simpleCoordinate, for which the simple distance
+	  * can no longer be below threshold. The scaled difference is rounded down, so it has to reach the next integer
+	  * at or above threshold, and the scaled radius is moved up by one ulp for the rounding of the multiplication.
+	  */
+	public static double simpleKeyRadius(double threshold)
+	{
+		double radius = 0;
+		for(double scale : schema.getCheapScales())
+		{
+			double dimensionRadius = (scale == 1 && threshold == Math.ceil(threshold) ? threshold
+				: Math.nextUp(Math.ceil(threshold) / scale));
+			radius = Math.max(radius, dimensionRadius);
+		}
+		return radius;
 	}
 
 	/**
@@ -176,13 +572,31 @@ public class DataPoint implements WritableComparable<DataPoint>
 	  * <b>Parameters:</b>	DataPoint dataPoint, the object to compare this object to. <br>
 	  * <b>Returns:</b>		double, a complex distance value. <br>
 	  *
-	  * Finds a complex, more expensive distance between two Data Points.
+	  * Finds a complex, more expensive distance between two Data Points: the Euclidean distance of their full columns.
 	  * Used in Clustering phase.
 	  */
 	public double complexDistance(DataPoint dataPoint)
 	{
-		return Math.sqrt(Math.abs((year - dataPoint.year) * (year - dataPoint.year) 
-				+ (temperature - dataPoint.temperature) * (temperature - dataPoint.temperature)));
+		double sum = 0;
+		for(int c : schema.getFullColumns())
+		{
+			double difference = values[c] - dataPoint.values[c];
+			sum += difference * difference;
+		}
+		return Math.sqrt(sum);
+	}
+
+	/**
+	  * <b>Coordinate of the Data Point for the complex distance metric. </b><br>
+	  * <b>Parameters:</b>	int dimension, between 0 and getComplexDimensions() - 1. <br>
+	  * <b>Returns:</b>		double, the full column of this dimension. <br><br>
+	  *
+	  * The complex distance is the square root of the sum of the squared differences of the coordinates.
+	  * Used to keep k-Means Centroids in columns, one array per dimension, for the distance kernels of CentroidTable.
+	  */
+	public double complexCoordinate(int dimension)
+	{
+		return values[schema.getFullColumns()[dimension]];
 	}
 
 	/**
@@ -190,11 +604,21 @@ public class DataPoint implements WritableComparable<DataPoint>
 	  * <b>Parameters:</b>	None <br>
 	  * <b>Returns:</b>		String <br><br>
 	  *
-	  * Returns a string representation of this object.
+	  * Returns a string representation of this object: the columns separated by commas, as ints or floats.
 	  */
 	public String toString()
 	{
-		return year + "," + temperature;
+		StringBuilder builder = new StringBuilder();
+		for(int c = 0; c < values.length; c++)
+		{
+			if(c > 0)
+				builder.append(',');
+			if(schema.isFloat(c))
+				builder.append((float) values[c]);
+			else
+				builder.append((int) values[c]);
+		}
+		return builder.toString();
 	}
 
 	/**
@@ -202,8 +626,7 @@ public class DataPoint implements WritableComparable<DataPoint>
 	  * <b>Parameters:</b>	Object object, the passed object to check for equality <br>
 	  * <b>Returns:</b>		boolean <br><br>
 	  *
-	  * Returns true if this object and the passed object are the same.
-	  * Similarity conditions depend on the Data Set.
+	  * Returns true if this object and the passed object have the same columns, ids included.
 	  */
 	@Override
 	public boolean equals(Object object)
@@ -211,9 +634,14 @@ public class DataPoint implements WritableComparable<DataPoint>
 		if(object == null)
 			return false;
 		DataPoint dataPoint = (DataPoint) object;
-		if(year ==  dataPoint.year && temperature == dataPoint.temperature)
-			return true;
-		return false;
+		if(values.length != dataPoint.values.length)
+			return false;
+		for(int c = 0; c < values.length; c++)
+		{
+			if(values[c] != dataPoint.values[c])
+				return false;
+		}
+		return true;
 	}
 
 	/**
@@ -221,36 +649,88 @@ public class DataPoint implements WritableComparable<DataPoint>
 	  * <b>Parameters:</b>	Nothing
 	  * <b>Returns:</b>		int, the hash code. <br><br>
 	  *
-	  * Returns a user defined hash code for the object.
+	  * Returns a user defined hash code for the object, from the integer parts of the full columns.
 	  */
 	@Override
 	public int hashCode()
 	{
-		return (17 * year + 31 * temperature);
+		int[] fullColumns = schema.getFullColumns();
+		int hash = 0;
+		for(int d = 0; d < fullColumns.length; d++)
+			hash += HASH_PRIMES[d % HASH_PRIMES.length] * (int) values[fullColumns[d]];
+		return hash;
+	}
+
+	/**
+	  * <b>Adds the attributes of this Data Point to running sums. </b><br>
+	  * <b>Parameters:</b>	double[] sums, getNumAttributes() sums of the attributes that are averaged into a k-Means Centroid. <br>
+	  * <b>Returns:</b>		Nothing <br><br>
+	  *
+	  * Used to compute partial sums of the Data Points of a cluster before they are averaged.
+	  */
+	public void addTo(double[] sums)
+	{
+		int[] fullColumns = schema.getFullColumns();
+		for(int d = 0; d < fullColumns.length; d++)
+			sums[d] += values[fullColumns[d]];
+	}
+
+	/**
+	  * <b>Method to return the average of Data Points from their sums. </b><br>
+	  * <b>Parameters:</b>	double[] sums, the sums of the attributes filled by addTo.
+	  * 					long count, the number of Data Points summed. <br>
+	  * <b>Returns:</b>		DataPoint, the average Data Point <br>
+	  * <b>Uses:</b>		void setFromSums(double[], long) <br><br>
+	  *
+	  * Divides every sum by count and converts it to the type of the attribute.
+	  */
+	public static DataPoint fromSums(double[] sums, long count)
+	{
+		DataPoint averageDataPoint =  new DataPoint();
+		averageDataPoint.setFromSums(sums, count);
+		return averageDataPoint;
+	}
+
+	/**
+	  * <b>Sets this Data Point to the average of Data Points from their sums. </b><br>
+	  * <b>Parameters:</b>	double[] sums, the sums of the attributes filled by addTo.
+	  * 					long count, the number of Data Points summed. <br>
+	  * <b>Returns:</b>		Nothing <br><br>
+	  *
+	  * Divides every sum by count and converts it to the type of the attribute. The id columns are set to 0.
+	  * Lets an object be reused for every average computed.
+	  */
+	public void setFromSums(double[] sums, long count)
+	{
+		fit();
+		for(int c = 0; c < values.length; c++)
+			values[c] = 0;
+		int[] fullColumns = schema.getFullColumns();
+		for(int d = 0; d < fullColumns.length; d++)
+		{
+			int c = fullColumns[d];
+			values[c] = (schema.isFloat(c) ? (float) (sums[d]/count) : (int) (sums[d]/count));
+		}
 	}
 
 	/**
 	  * <b>Method to return average of Data Points passed to it. </b><br>
 	  * <b>Parameters:</b>	Iterable<DataPoint> dataPoints, an iterable list of Data Points to be averaged. <br>
-	  * <b>Returns:</b>		DataPoint, the average Data Point <br><br>
+	  * <b>Returns:</b>		DataPoint, the average Data Point <br>
+	  * <b>Uses:</b>		void addTo(double[]), DataPoint fromSums(double[], long) <br><br>
 	  *
-	  * This function traverses the Tterable list of Data Points passed to it.
+	  * This function traverses the Iterable list of Data Points passed to it.
 	  * The average of all these points is found out and returned.
 	  */
 	public static DataPoint getAverageDataPoint(Iterable<DataPoint> dataPoints)
 	{
-		double yearSum = 0;
-		double temperatureSum = 0;
+		double[] sums = new double[getNumAttributes()];
 		long count = 0;
 		for(DataPoint dataPoint: dataPoints)
 		{
-			yearSum += dataPoint.year;
-			temperatureSum += dataPoint.temperature;
+			dataPoint.addTo(sums);
 			count++;
 		}
-		DataPoint averageDataPoint =  new DataPoint();
-		averageDataPoint.year = (int) (yearSum/count);
-		averageDataPoint.temperature = (int) (temperatureSum/count);
-		return averageDataPoint;
+		return fromSums(sums, count);
 	}
-}
\ No newline at end of file
+}
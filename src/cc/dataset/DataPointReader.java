@@ -0,0 +1,256 @@
+package cc.dataset;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.util.LineReader;
+import org.apache.hadoop.util.ReflectionUtils;
+
+/**
+  * Reads the small files of Data Points loaded by the mappers in setup, such as Canopy Centers and k-Means Centroids.
+  * Lines are read into a Text and parsed from its bytes with DataPoint.parse.
+  * BlockFiles written by a step are recognized by their magic bytes and read as Writables instead.
+  */
+public final class DataPointReader
+{
+	/**
+	  * Accepts the part files of an output folder, one per reducer, and skips files such as _SUCCESS.
+	  */
+	private static final PathFilter PART_FILES = new PathFilter()
+	{
+		public boolean accept(Path path)
+		{
+			return path.getName().startsWith("part-");
+		}
+	};
+
+	private DataPointReader()
+	{
+	}
+
+	/**
+	  * Reads a file of Data Points.
+	  * Parameters:	FileSystem filesystem, the file system holding the file
+	  * 			Path path, path to the file
+	  * 			boolean keyed, if every line is a (key, Data Point) pair separated by a tab, as written by a Reducer. The key is then ignored. Otherwise every
+	  * 			line is a Data Point. For a BlockFile the Data Points are always the values, and the keys are ignored
+	  * Returns:	list of Data Points in file order
+	  */
+	public static ArrayList<DataPoint> read(FileSystem filesystem, Path path, boolean keyed)
+		throws IOException
+	{
+		if(BlockFile.isBlockFile(filesystem, path))
+			return readBlockFile(filesystem, path);
+
+		ArrayList<DataPoint> dataPoints = new ArrayList<DataPoint>();
+		LineReader reader = new LineReader(filesystem.open(path));
+		try
+		{
+			Text line = new Text();
+			while(reader.readLine(line) > 0)
+			{
+				// Skip empty lines, such as a newline at the end of a hand written file
+				if(line.getLength() == 0)
+					continue;
+
+				byte[] bytes = line.getBytes();
+				int start = 0;
+				if(keyed)
+					start = ByteParser.indexOf(bytes, 0, line.getLength(), (byte) '\t') + 1;
+
+				DataPoint dataPoint = new DataPoint();
+				dataPoint.parse(bytes, start, line.getLength());
+				dataPoints.add(dataPoint);
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+		return dataPoints;
+	}
+
+	/**
+	  * Reads Data Points by id, such as the k-Means Centroids, from a file or from all the part files of an output folder.
+	  * Parameters:	FileSystem filesystem, the file system holding the file
+	  * 			Path path, path to the file or folder
+	  * 			boolean keyed, if every line is an (id, Data Point) pair separated by a tab, as written by ClusterCenterReducer. For a BlockFile the ids are
+	  * 			then the IntWritable keys. Otherwise every line is a Data Point and the ids are the line numbers, starting at 1
+	  * Returns:	Data Points by id
+	  *
+	  * The ids of a ClusterCenter output folder are spread over one part file per reducer.
+	  */
+	public static TreeMap<Integer, DataPoint> readById(FileSystem filesystem, Path path, boolean keyed)
+		throws IOException
+	{
+		TreeMap<Integer, DataPoint> dataPoints = new TreeMap<Integer, DataPoint>();
+		if(!filesystem.getFileStatus(path).isDir())
+			readById(filesystem, path, keyed, dataPoints);
+		else
+		{
+			for(FileStatus status : filesystem.listStatus(path, PART_FILES))
+				readById(filesystem, status.getPath(), keyed, dataPoints);
+		}
+		return dataPoints;
+	}
+
+	/**
+	  * Reads the counts written by the reducers of a step into a folder of BlockFiles of (IntWritable, LongWritable) pairs,
+	  * such as the number of Data Points of every k-Means Centroid.
+	  * Parameters:	FileSystem filesystem, the file system holding the folder
+	  * 			Path folder, path to the folder. A folder that does not exist holds no counts
+	  * Returns:	counts by id
+	  */
+	public static TreeMap<Integer, LongWritable> readCounts(FileSystem filesystem, Path folder)
+		throws IOException
+	{
+		TreeMap<Integer, LongWritable> counts = new TreeMap<Integer, LongWritable>();
+		if(!filesystem.exists(folder))
+			return counts;
+
+		for(FileStatus status : filesystem.listStatus(folder, PART_FILES))
+		{
+			BlockFile.Reader reader = new BlockFile.Reader(filesystem, status.getPath(), filesystem.getConf());
+			try
+			{
+				IntWritable id = new IntWritable();
+				LongWritable count = new LongWritable();
+				while(reader.next(id, count))
+				{
+					counts.put(id.get(), count);
+					count = new LongWritable();
+				}
+			}
+			finally
+			{
+				reader.close();
+			}
+		}
+		return counts;
+	}
+
+	/**
+	  * Numbers a list of Data Points from 1 in list order.
+	  * Parameters:	List<DataPoint> dataPoints, list of Data Points
+	  * Returns:	Data Points by id
+	  */
+	public static TreeMap<Integer, DataPoint> number(List<DataPoint> dataPoints)
+	{
+		TreeMap<Integer, DataPoint> numbered = new TreeMap<Integer, DataPoint>();
+		for(int i = 0; i < dataPoints.size(); i++)
+			numbered.put(i + 1, dataPoints.get(i));
+		return numbered;
+	}
+
+	/**
+	  * Reads the Data Points of one file by id into a map.
+	  * Parameters:	FileSystem filesystem, the file system holding the file
+	  * 			Path path, path to the file
+	  * 			boolean keyed, if the ids are the keys of the file rather than the line numbers
+	  * 			TreeMap<Integer, DataPoint> dataPoints, map the Data Points are added to. An id already in it is an error
+	  * Returns:	Nothing
+	  */
+	private static void readById(FileSystem filesystem, Path path, boolean keyed, TreeMap<Integer, DataPoint> dataPoints)
+		throws IOException
+	{
+		if(!keyed)
+		{
+			for(DataPoint dataPoint : read(filesystem, path, false))
+				dataPoints.put(dataPoints.size() + 1, dataPoint);
+			return;
+		}
+
+		if(BlockFile.isBlockFile(filesystem, path))
+		{
+			BlockFile.Reader reader = new BlockFile.Reader(filesystem, path, filesystem.getConf());
+			try
+			{
+				if(reader.getKeyClass() != IntWritable.class)
+					throw new IOException("Keys of " + path + " are not ids: " + reader.getKeyClass().getName());
+				IntWritable id = new IntWritable();
+				DataPoint dataPoint = new DataPoint();
+				while(reader.next(id, dataPoint))
+				{
+					put(dataPoints, id.get(), dataPoint, path);
+					dataPoint = new DataPoint();
+				}
+			}
+			finally
+			{
+				reader.close();
+			}
+			return;
+		}
+
+		LineReader reader = new LineReader(filesystem.open(path));
+		try
+		{
+			Text line = new Text();
+			while(reader.readLine(line) > 0)
+			{
+				// Skip empty lines
+				if(line.getLength() == 0)
+					continue;
+
+				// Parse the id before the tab and the Data Point after it
+				byte[] bytes = line.getBytes();
+				int tabPosition = ByteParser.indexOf(bytes, 0, line.getLength(), (byte) '\t');
+				DataPoint dataPoint = new DataPoint();
+				dataPoint.parse(bytes, tabPosition + 1, line.getLength());
+				put(dataPoints, ByteParser.parseInt(bytes, 0, tabPosition), dataPoint, path);
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	/**
+	  * Adds a Data Point to a map by id, checking that the id is not taken yet.
+	  */
+	private static void put(TreeMap<Integer, DataPoint> dataPoints, int id, DataPoint dataPoint, Path path)
+		throws IOException
+	{
+		if(dataPoints.put(id, dataPoint) != null)
+			throw new IOException("Id " + id + " found twice, the last time in " + path);
+	}
+
+	/**
+	  * Reads the values of a BlockFile of Data Points.
+	  * Parameters:	FileSystem filesystem, the file system holding the file
+	  * 			Path path, path to the file
+	  * Returns:	list of Data Points in file order
+	  */
+	private static ArrayList<DataPoint> readBlockFile(FileSystem filesystem, Path path)
+		throws IOException
+	{
+		ArrayList<DataPoint> dataPoints = new ArrayList<DataPoint>();
+		BlockFile.Reader reader = new BlockFile.Reader(filesystem, path, filesystem.getConf());
+		try
+		{
+			Writable key = (Writable) ReflectionUtils.newInstance(reader.getKeyClass(), filesystem.getConf());
+			DataPoint dataPoint = new DataPoint();
+			while(reader.next(key, dataPoint))
+			{
+				dataPoints.add(dataPoint);
+				dataPoint = new DataPoint();
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+		return dataPoints;
+	}
+}
@@ -0,0 +1,176 @@
+package cc.dataset;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+  * Partial aggregate of a set of Data Points: the sums of their attributes and their count.
+  * Partial sums of disjoint sets can be added together, and the average Data Point is computed from the total.
+  */
+public class DataPointSum implements Writable
+{
+	/**
+	  * Sums of the attributes of the Data Points, filled by DataPoint.addTo.
+	  * Resized when the number of attributes of the schema has changed.
+	  */
+	private double[] sums;
+
+	/**
+	  * Number of Data Points summed.
+	  */
+	private long count;
+
+	/**
+	  * Creates an empty sum.
+	  */
+	public DataPointSum()
+	{
+		sums = new double[DataPoint.getNumAttributes()];
+		count = 0;
+	}
+
+	/**
+	  * Creates the sum of a single Data Point.
+	  * Parameters:	DataPoint dataPoint, the Data Point
+	  */
+	public DataPointSum(DataPoint dataPoint)
+	{
+		this();
+		add(dataPoint);
+	}
+
+	/**
+	  * Returns the number of Data Points summed.
+	  * Returns:	the count
+	  */
+	public long getCount()
+	{
+		return count;
+	}
+
+	/**
+	  * Resets the sum to an empty one.
+	  */
+	public void clear()
+	{
+		fit();
+		for(int i = 0; i < sums.length; i++)
+			sums[i] = 0;
+		count = 0;
+	}
+
+	/**
+	  * Adds a Data Point to the sum.
+	  * Parameters:	DataPoint dataPoint, the Data Point
+	  * Returns:	Nothing
+	  */
+	public void add(DataPoint dataPoint)
+	{
+		fit();
+		dataPoint.addTo(sums);
+		count++;
+	}
+
+	/**
+	  * Adds a Data Point to the sum as if it had been added a number of times.
+	  * Parameters:	DataPoint dataPoint, the Data Point
+	  * 			long weight, the number of times
+	  * Returns:	Nothing
+	  */
+	public void add(DataPoint dataPoint, long weight)
+	{
+		fit();
+		double[] values = new double[sums.length];
+		dataPoint.addTo(values);
+		for(int i = 0; i < sums.length; i++)
+			sums[i] += weight * values[i];
+		count += weight;
+	}
+
+	/**
+	  * Adds another partial sum to this one.
+	  * Parameters:	DataPointSum sum, the partial sum
+	  * Returns:	Nothing
+	  */
+	public void add(DataPointSum sum)
+	{
+		for(int i = 0; i < sums.length; i++)
+			sums[i] += sum.sums[i];
+		count += sum.count;
+	}
+
+	/**
+	  * Returns the average of the Data Points summed, the same as DataPoint.getAverageDataPoint would.
+	  * Returns:	the average Data Point
+	  */
+	public DataPoint getAverageDataPoint()
+	{
+		return DataPoint.fromSums(sums, count);
+	}
+
+	/**
+	  * Sets a Data Point to the average of the Data Points summed, so that the same object can be reused for every average.
+	  * Parameters:	DataPoint averageDataPoint, the Data Point to set
+	  * Returns:	averageDataPoint
+	  */
+	public DataPoint getAverageDataPoint(DataPoint averageDataPoint)
+	{
+		averageDataPoint.setFromSums(sums, count);
+		return averageDataPoint;
+	}
+
+	/**
+	  * Serializes the sum: the count as a variable length long, followed by the sums.
+	  * Parameters:	DataOutput out, to write the fields serially
+	  * Returns:	Nothing
+	  */
+	public void write(DataOutput out)
+		throws IOException
+	{
+		WritableUtils.writeVLong(out, count);
+		for(int i = 0; i < sums.length; i++)
+			out.writeDouble(sums[i]);
+	}
+
+	/**
+	  * Reads the fields in the order they were written.
+	  * Parameters:	DataInput in, to read the fields serially
+	  * Returns:	Nothing
+	  */
+	public void readFields(DataInput in)
+		throws IOException
+	{
+		fit();
+		count = WritableUtils.readVLong(in);
+		for(int i = 0; i < sums.length; i++)
+			sums[i] = in.readDouble();
+	}
+
+	/**
+	  * Resizes the sums to the number of attributes of the schema, dropping them if it has changed.
+	  */
+	private void fit()
+	{
+		if(sums.length != DataPoint.getNumAttributes())
+		{
+			sums = new double[DataPoint.getNumAttributes()];
+			count = 0;
+		}
+	}
+
+	/**
+	  * Returns a string representation of the sum.
+	  */
+	public String toString()
+	{
+		StringBuilder builder = new StringBuilder();
+		builder.append(count);
+		for(int i = 0; i < sums.length; i++)
+			builder.append(',').append(sums[i]);
+		return builder.toString();
+	}
+}
@@ -0,0 +1,340 @@
+package cc.dataset;
+
+import java.util.ArrayList;
+
+import org.apache.hadoop.conf.Configuration;
+
+/**
+  * Layout of the Data Points of a data set, chosen when a job starts instead of when the jar is built.
+  * A Data Point is a comma separated line of columns, each parsed as an int or a float, and every column has roles:
+  * cheap columns make up the simple distance used by the Canopy steps, full columns are the coordinates of the complex distance
+  * and are averaged into the k-Means Centroids, and a column with neither role is an id that is only passed through.
+  *
+  * A schema is written as a comma separated list of name:type[:role...], where type is int or float and
+  * the roles are cheap, cheap*scale and full. The simple distance is the largest absolute difference of the cheap columns,
+  * each multiplied by its scale, 1 by default, and rounded down to an integer.
+  * Data Points are ordered by their cheap columns, then by their other full columns, in the order of the schema.
+  *
+  * The schema also gives the encoding of Data Points in the shuffle and in binary files. The fixed encoding writes every column
+  * as a 4 byte int or float. The compact encoding writes int columns as zig-zag VarInts, and lets a PointBlock
+  * write its int columns relative to their smallest value, or its id columns as indexes into a dictionary.
+  * Every step reading the Data Points must use the encoding they were written with.
+  */
+public class DataSchema
+{
+	/**
+	  * Name of the configuration parameter holding the schema, or the name of a predefined one.
+	  */
+	public static final String CONFIGURATION_KEY = "dataPointSchema";
+
+	/**
+	  * Names of the configuration parameters holding the T1 and T2 thresholds, which default to those of the predefined schema,
+	  * or to those of TEMPERATURE for a schema written out.
+	  */
+	public static final String T1_KEY = "dataPointT1", T2_KEY = "dataPointT2";
+
+	/**
+	  * Name of the configuration parameter selecting the encoding, FIXED or COMPACT.
+	  */
+	public static final String ENCODING_KEY = "dataPointEncoding";
+
+	/**
+	  * Every column written as 4 bytes. The default.
+	  */
+	public static final String FIXED = "fixed";
+
+	/**
+	  * Int columns written as variable length integers.
+	  */
+	public static final String COMPACT = "compact";
+
+	/**
+	  * Predefined schema of the [year, temperature] data set, the default. The simple distance is the temperature difference.
+	  */
+	public static final String TEMPERATURE = "temperature";
+
+	/**
+	  * Predefined schema of the smart plug data set: time, reading and four ids. The simple distance is the time difference
+	  * in tenths.
+	  */
+	public static final String SMART_PLUG = "smartplug";
+
+	/**
+	  * The predefined schemas written out, with their thresholds.
+	  */
+	private static final String TEMPERATURE_COLUMNS = "year:int:full,temperature:int:cheap:full";
+	private static final double TEMPERATURE_T1 = 10, TEMPERATURE_T2 = 6;
+	private static final String SMART_PLUG_COLUMNS = "time:float:cheap*10:full,reading:float:full,id1:int,id2:int,id3:int,id4:int";
+	private static final double SMART_PLUG_T1 = 5, SMART_PLUG_T2 = 3;
+
+	/**
+	  * The schema used until another one is configured.
+	  */
+	public static final DataSchema DEFAULT = new DataSchema(TEMPERATURE_COLUMNS, TEMPERATURE_T1, TEMPERATURE_T2);
+
+	/**
+	  * The schema as written, with the thresholds and the encoding, to tell if a configuration holds the same schema.
+	  */
+	private final String description;
+
+	/**
+	  * Names of the columns, and if every column is a float rather than an int.
+	  */
+	private final String[] names;
+	private final boolean[] floatColumns;
+
+	/**
+	  * If every column is an id, neither cheap nor full.
+	  */
+	private final boolean[] idColumns;
+
+	/**
+	  * Columns of the simple distance and their scales, columns of the complex distance, and columns in the order of compareTo.
+	  */
+	private final int[] cheapColumns;
+	private final double[] cheapScales;
+	private final int[] fullColumns;
+	private final int[] orderColumns;
+
+	/**
+	  * T1 and T2 thresholds of the data set.
+	  */
+	private final double t1, t2;
+
+	/**
+	  * If the Data Points are written in the compact encoding.
+	  */
+	private final boolean compact;
+
+	/**
+	  * Parses a schema written in the fixed encoding.
+	  * Parameters:	String columns, the columns, as a comma separated list of name:type[:role...]
+	  * 			double t1, the T1 threshold
+	  * 			double t2, the T2 threshold
+	  */
+	public DataSchema(String columns, double t1, double t2)
+	{
+		this(columns, t1, t2, false);
+	}
+
+	/**
+	  * Parses a schema.
+	  * Parameters:	String columns, the columns, as a comma separated list of name:type[:role...]
+	  * 			double t1, the T1 threshold
+	  * 			double t2, the T2 threshold
+	  * 			boolean compact, true for the compact encoding, false for the fixed one
+	  */
+	public DataSchema(String columns, double t1, double t2, boolean compact)
+	{
+		this.t1 = t1;
+		this.t2 = t2;
+		this.compact = compact;
+		description = columns + ";" + t1 + ";" + t2 + ";" + (compact ? COMPACT : FIXED);
+
+		String[] specs = columns.split(",");
+		names = new String[specs.length];
+		floatColumns = new boolean[specs.length];
+		idColumns = new boolean[specs.length];
+		ArrayList<Integer> cheap = new ArrayList<Integer>(), full = new ArrayList<Integer>();
+		ArrayList<Double> scales = new ArrayList<Double>();
+		for(int c = 0; c < specs.length; c++)
+		{
+			String[] parts = specs[c].trim().split(":");
+			if(parts.length < 2)
+				throw new IllegalArgumentException("Column without a type in schema: " + specs[c]);
+			names[c] = parts[0];
+			if(parts[1].equals("float"))
+				floatColumns[c] = true;
+			else if(!parts[1].equals("int"))
+				throw new IllegalArgumentException("Unknown type of column " + names[c] + ": " + parts[1]);
+
+			for(int i = 2; i < parts.length; i++)
+			{
+				if(parts[i].equals("full"))
+					full.add(c);
+				else if(parts[i].equals("cheap") || parts[i].startsWith("cheap*"))
+				{
+					cheap.add(c);
+					scales.add(parts[i].equals("cheap") ? 1 : Double.parseDouble(parts[i].substring("cheap*".length())));
+				}
+				else
+					throw new IllegalArgumentException("Unknown role of column " + names[c] + ": " + parts[i]);
+			}
+			idColumns[c] = (parts.length == 2);
+		}
+		if(cheap.isEmpty() || full.isEmpty())
+			throw new IllegalArgumentException("A schema needs at least one cheap and one full column: " + columns);
+
+		cheapColumns = toArray(cheap);
+		fullColumns = toArray(full);
+		cheapScales = new double[scales.size()];
+		for(int i = 0; i < cheapScales.length; i++)
+			cheapScales[i] = scales.get(i);
+
+		// Order by the cheap columns first, then by the full columns that are not cheap
+		ArrayList<Integer> order = new ArrayList<Integer>(cheap);
+		for(int c : fullColumns)
+		{
+			if(!order.contains(c))
+				order.add(c);
+		}
+		orderColumns = toArray(order);
+	}
+
+	/**
+	  * Returns the schema selected in a configuration.
+	  * Parameters:	Configuration configuration, the configuration of a job
+	  * Returns:	the schema
+	  */
+	public static DataSchema create(Configuration configuration)
+	{
+		return create(configuration.get(CONFIGURATION_KEY), configuration.get(T1_KEY), configuration.get(T2_KEY),
+			configuration.get(ENCODING_KEY));
+	}
+
+	/**
+	  * Returns a schema in the fixed encoding.
+	  * Parameters:	String schema, the name of a predefined schema, the schema written out, or null for TEMPERATURE
+	  * 			String t1, the T1 threshold, or null for the default
+	  * 			String t2, the T2 threshold, or null for the default
+	  * Returns:	the schema
+	  */
+	public static DataSchema create(String schema, String t1, String t2)
+	{
+		return create(schema, t1, t2, null);
+	}
+
+	/**
+	  * Returns a schema.
+	  * Parameters:	String schema, the name of a predefined schema, the schema written out, or null for TEMPERATURE
+	  * 			String t1, the T1 threshold, or null for the default
+	  * 			String t2, the T2 threshold, or null for the default
+	  * 			String encoding, FIXED, COMPACT, or null for FIXED
+	  * Returns:	the schema
+	  */
+	public static DataSchema create(String schema, String t1, String t2, String encoding)
+	{
+		if(encoding != null && !encoding.equals(FIXED) && !encoding.equals(COMPACT))
+			throw new IllegalArgumentException("Unknown " + ENCODING_KEY + ": " + encoding);
+
+		String columns = schema;
+		double defaultT1 = TEMPERATURE_T1, defaultT2 = TEMPERATURE_T2;
+		if(schema == null || schema.equals(TEMPERATURE))
+			columns = TEMPERATURE_COLUMNS;
+		else if(schema.equals(SMART_PLUG))
+		{
+			columns = SMART_PLUG_COLUMNS;
+			defaultT1 = SMART_PLUG_T1;
+			defaultT2 = SMART_PLUG_T2;
+		}
+		return new DataSchema(columns, (t1 == null ? defaultT1 : Double.parseDouble(t1)), (t2 == null ? defaultT2 : Double.parseDouble(t2)),
+			COMPACT.equals(encoding));
+	}
+
+	/**
+	  * Returns the number of columns.
+	  */
+	public int size()
+	{
+		return names.length;
+	}
+
+	/**
+	  * Returns the name of a column.
+	  */
+	public String getName(int column)
+	{
+		return names[column];
+	}
+
+	/**
+	  * Returns if a column is a float rather than an int.
+	  */
+	public boolean isFloat(int column)
+	{
+		return floatColumns[column];
+	}
+
+	/**
+	  * Returns if a column is an id, which is neither cheap nor full.
+	  */
+	public boolean isId(int column)
+	{
+		return idColumns[column];
+	}
+
+	/**
+	  * Returns if the Data Points are written in the compact encoding.
+	  */
+	public boolean isCompact()
+	{
+		return compact;
+	}
+
+	/**
+	  * Returns the columns of the simple distance, one per dimension.
+	  */
+	public int[] getCheapColumns()
+	{
+		return cheapColumns;
+	}
+
+	/**
+	  * Returns the scales of the columns of the simple distance.
+	  */
+	public double[] getCheapScales()
+	{
+		return cheapScales;
+	}
+
+	/**
+	  * Returns the columns of the complex distance, which are averaged into the k-Means Centroids, one per dimension.
+	  */
+	public int[] getFullColumns()
+	{
+		return fullColumns;
+	}
+
+	/**
+	  * Returns the columns compared by compareTo, in order.
+	  */
+	public int[] getOrderColumns()
+	{
+		return orderColumns;
+	}
+
+	/**
+	  * Returns the T1 threshold.
+	  */
+	public double getT1()
+	{
+		return t1;
+	}
+
+	/**
+	  * Returns the T2 threshold.
+	  */
+	public double getT2()
+	{
+		return t2;
+	}
+
+	/**
+	  * Returns the schema as written, with the thresholds and the encoding.
+	  */
+	public String getDescription()
+	{
+		return description;
+	}
+
+	/**
+	  * Converts a list of column numbers to an array.
+	  */
+	private static int[] toArray(ArrayList<Integer> list)
+	{
+		int[] array = new int[list.size()];
+		for(int i = 0; i < array.length; i++)
+			array[i] = list.get(i);
+		return array;
+	}
+}
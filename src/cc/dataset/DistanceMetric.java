@@ -0,0 +1,172 @@
+package cc.dataset;
+
+import org.apache.hadoop.conf.Configuration;
+
+/**
+  * A distance metric between Data Points used by the clustering steps in place of complexDistance.
+  * Nearest centroids are searched by comparing ranks, values with the same order as the distances that are cheaper
+  * to compute, such as the squared Euclidean distance, and the kernels computing them over the columns of a CentroidTable
+  * are implemented by every metric in a final class, so the JIT compiler can inline them in the hot loops.
+  * The k-Means Centroids are still the averages of their Data Points whatever the metric.
+  */
+public abstract class DistanceMetric
+{
+	/**
+	  * Name of the configuration parameter selecting the metric of the clustering steps.
+	  */
+	public static final String CONFIGURATION_KEY = "distanceMetric";
+
+	/**
+	  * Euclidean distance, computed by complexDistance. The default.
+	  */
+	public static final String EUCLIDEAN = "euclidean";
+
+	/**
+	  * Squared Euclidean distance.
+	  */
+	public static final String SQUARED_EUCLIDEAN = "squaredeuclidean";
+
+	/**
+	  * Manhattan distance, the sum of the absolute differences of the coordinates.
+	  */
+	public static final String MANHATTAN = "manhattan";
+
+	/**
+	  * Chebyshev distance, the largest absolute difference of the coordinates.
+	  */
+	public static final String CHEBYSHEV = "chebyshev";
+
+	/**
+	  * Cosine distance, one minus the cosine of the angle between the coordinate vectors.
+	  */
+	public static final String COSINE = "cosine";
+
+	/**
+	  * Name of the configuration parameter selecting the kernels of the Euclidean and squared Euclidean metrics.
+	  */
+	public static final String KERNEL_KEY = "distanceKernel";
+
+	/**
+	  * Kernels of plain loops, the default, and of the Vector API, see SquaredDistanceKernel.
+	  */
+	public static final String SCALAR = "scalar";
+	public static final String VECTOR = "vector";
+
+	/**
+	  * Name of the configuration parameter of Hadoop holding the options of the JVMs of the tasks, and its default in Hadoop.
+	  */
+	public static final String CHILD_JAVA_OPTS = "mapred.child.java.opts";
+	private static final String DEFAULT_CHILD_JAVA_OPTS = "-Xmx200m";
+
+	/**
+	  * Option of the JVM adding the module of the Vector API.
+	  */
+	public static final String VECTOR_MODULE_OPTION = "--add-modules=jdk.incubator.vector";
+
+	/**
+	  * Creates the metric of the given kind.
+	  * Parameters:	String type, one of the kinds above, or null for EUCLIDEAN
+	  * Returns:	the metric
+	  */
+	public static DistanceMetric create(String type)
+	{
+		return create(type, null);
+	}
+
+	/**
+	  * Creates the metric of the given kind with the given kernel
+	  * Parameters:	String type, one of the kinds above, or null for EUCLIDEAN
+	  * 			String kernel, SCALAR, VECTOR, or null for SCALAR. Only the Euclidean metrics have a VECTOR kernel
+	  * Returns:	the metric
+	  */
+	public static DistanceMetric create(String type, String kernel)
+	{
+		if(type == null || type.equals(EUCLIDEAN))
+			return new EuclideanMetric(SquaredDistanceKernel.create(kernel));
+		if(type.equals(SQUARED_EUCLIDEAN))
+			return new SquaredEuclideanMetric(SquaredDistanceKernel.create(kernel));
+		if(type.equals(MANHATTAN))
+			return new ManhattanMetric();
+		if(type.equals(CHEBYSHEV))
+			return new ChebyshevMetric();
+		if(type.equals(COSINE))
+			return new CosineMetric();
+		throw new IllegalArgumentException("Unknown distance metric: " + type);
+	}
+
+	/**
+	  * Creates the metric selected in a configuration.
+	  * Parameters:	Configuration configuration, the configuration of a job
+	  * Returns:	the metric
+	  */
+	public static DistanceMetric create(Configuration configuration)
+	{
+		return create(configuration.get(CONFIGURATION_KEY), configuration.get(KERNEL_KEY));
+	}
+
+	/**
+	  * Adds the options the kernel selected in the configuration of a job needs to the JVMs of its tasks
+	  * Parameters:	Configuration configuration, the configuration of the job
+	  * Returns:	Nothing
+	  *
+	  * The VECTOR kernel needs the module of the Vector API, which is appended to mapred.child.java.opts.
+	  */
+	public static void addChildJavaOpts(Configuration configuration)
+	{
+		if(VECTOR.equals(configuration.get(KERNEL_KEY)))
+			configuration.set(CHILD_JAVA_OPTS, configuration.get(CHILD_JAVA_OPTS, DEFAULT_CHILD_JAVA_OPTS) + " " + VECTOR_MODULE_OPTION);
+	}
+
+	/**
+	  * Returns the distance between two Data Points.
+	  * Parameters:	DataPoint dataPoint, a Data Point
+	  * 			DataPoint other, the other Data Point
+	  * Returns:	the distance
+	  */
+	public abstract double distance(DataPoint dataPoint, DataPoint other);
+
+	/**
+	  * Converts a rank into the distance it stands for.
+	  * Parameters:	double rank, a rank computed by the kernels
+	  * Returns:	the distance
+	  */
+	public abstract double rankToDistance(double rank);
+
+	/**
+	  * Converts a rank into the square of the distance it stands for, such as the weights of k-means++ seeding.
+	  * Parameters:	double rank, a rank computed by the kernels
+	  * Returns:	the squared distance
+	  */
+	public double rankToSquaredDistance(double rank)
+	{
+		double distance = rankToDistance(rank);
+		return distance * distance;
+	}
+
+	/**
+	  * Returns if the distance satisfies the triangle inequality, which the bounded assignment of ClusterCenterMapper relies on.
+	  * Returns:	true for a metric in the mathematical sense
+	  */
+	public abstract boolean isMetric();
+
+	/**
+	  * Computes the ranks of the distances from a Data Point to every centroid of a table.
+	  * Parameters:	double[][] columns, the coordinates of the centroids, one array per dimension of the complex distance
+	  * 			int size, the number of centroids
+	  * 			DataPoint dataPoint, the Data Point
+	  * 			double[] ranks, filled with the rank of the distance to every centroid, at its offset in the columns
+	  * Returns:	Nothing
+	  */
+	public abstract void ranks(double[][] columns, int size, DataPoint dataPoint, double[] ranks);
+
+	/**
+	  * Computes the ranks of the distances from every Data Point of a batch to one centroid of a table.
+	  * Parameters:	double[][] batchColumns, the coordinates of the Data Points of the batch, one array per dimension of the complex distance
+	  * 			int count, the number of Data Points in the batch
+	  * 			double[][] columns, the coordinates of the centroids
+	  * 			int offset, the offset of the centroid in the columns
+	  * 			double[] ranks, filled with the rank of the distance of every Data Point of the batch, at its offset in the batch
+	  * Returns:	Nothing
+	  */
+	public abstract void ranks(double[][] batchColumns, int count, double[][] columns, int offset, double[] ranks);
+}
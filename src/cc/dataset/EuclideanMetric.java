@@ -0,0 +1,69 @@
+package cc.dataset;
+
+/**
+  * Euclidean distance, computed by complexDistance of the Data Point.
+  * Its ranks are the squared distances, so no square root is taken while searching the nearest centroid.
+  */
+public final class EuclideanMetric extends DistanceMetric
+{
+	/**
+	  * The kernel computing the squared distances.
+	  */
+	private final SquaredDistanceKernel kernel;
+
+	/**
+	  * Creates the metric with the scalar kernel.
+	  */
+	public EuclideanMetric()
+	{
+		this(new SquaredDistanceKernel());
+	}
+
+	/**
+	  * Creates the metric with a kernel
+	  * Parameters:	SquaredDistanceKernel kernel, the kernel computing the squared distances
+	  */
+	EuclideanMetric(SquaredDistanceKernel kernel)
+	{
+		this.kernel = kernel;
+	}
+
+	@Override
+	public double distance(DataPoint dataPoint, DataPoint other)
+	{
+		return dataPoint.complexDistance(other);
+	}
+
+	@Override
+	public double rankToDistance(double rank)
+	{
+		return Math.sqrt(rank);
+	}
+
+	/**
+	  * Returns the rank itself, which is the squared distance.
+	  */
+	@Override
+	public double rankToSquaredDistance(double rank)
+	{
+		return rank;
+	}
+
+	@Override
+	public boolean isMetric()
+	{
+		return true;
+	}
+
+	@Override
+	public void ranks(double[][] columns, int size, DataPoint dataPoint, double[] ranks)
+	{
+		kernel.squaredDistances(columns, size, dataPoint, ranks);
+	}
+
+	@Override
+	public void ranks(double[][] batchColumns, int count, double[][] columns, int offset, double[] ranks)
+	{
+		kernel.squaredDistances(batchColumns, count, columns, offset, ranks);
+	}
+}
@@ -0,0 +1,266 @@
+package cc.dataset;
+
+import java.util.List;
+
+/**
+  * Canopy Centers placed in the cells of a uniform grid over the simple coordinates of DataPoint.
+  * The side of a cell is the radius of T1 in coordinate space, so every Canopy Center within T1 (or T2) distance
+  * of a Data Point lies in the cell of the Data Point or in one of its neighbours, 3^d cells in all for d simple dimensions.
+  */
+public class GridCanopyIndex extends CanopyIndex
+{
+	/**
+	  * Initial number of slots of the hash table of cells. Always a power of two.
+	  */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	  * Number of dimensions of the grid.
+	  */
+	private final int dimensions;
+
+	/**
+	  * Side of a cell.
+	  */
+	private final double cellSize;
+
+	/**
+	  * A non-empty cell of the grid, chained with the other cells in the same hash table slot.
+	  */
+	private static class Cell
+	{
+		/**
+		  * Integer coordinates of the cell.
+		  */
+		final int[] coordinates;
+
+		/**
+		  * Canopy Centers in the cell.
+		  */
+		DataPoint[] centers;
+
+		/**
+		  * Number of Canopy Centers in the cell.
+		  */
+		int size;
+
+		/**
+		  * Next cell in the same slot of the hash table.
+		  */
+		Cell next;
+
+		Cell(int[] coordinates, Cell next)
+		{
+			this.coordinates = coordinates;
+			this.centers = new DataPoint[4];
+			this.next = next;
+		}
+
+		void add(DataPoint center)
+		{
+			if(size == centers.length)
+			{
+				DataPoint[] newCenters = new DataPoint[2 * size];
+				System.arraycopy(centers, 0, newCenters, 0, size);
+				centers = newCenters;
+			}
+			centers[size++] = center;
+		}
+	}
+
+	/**
+	  * Hash table of the non-empty cells.
+	  */
+	private Cell[] table;
+
+	/**
+	  * Number of non-empty cells.
+	  */
+	private int numCells;
+
+	/**
+	  * Number of Canopy Centers in the index.
+	  */
+	private int size;
+
+	/**
+	  * Cell coordinates of the Data Point being looked up, and of the neighbour being visited.
+	  * Reused by every lookup, so an index must not be used by several threads at once.
+	  */
+	private final int[] base, neighbour;
+
+	/**
+	  * Creates an empty index.
+	  */
+	public GridCanopyIndex()
+	{
+		dimensions = DataPoint.getSimpleDimensions();
+		cellSize = DataPoint.simpleKeyRadius(DataPoint.getT1());
+		table = new Cell[INITIAL_CAPACITY];
+		base = new int[dimensions];
+		neighbour = new int[dimensions];
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public void add(DataPoint canopyCenter)
+	{
+		cellOf(canopyCenter, base);
+		Cell cell = find(base);
+		if(cell == null)
+		{
+			// Grow the table when it is three quarters full
+			if(numCells >= table.length - (table.length >> 2))
+				rehash();
+
+			int slot = hash(base) & (table.length - 1);
+			cell = new Cell(base.clone(), table[slot]);
+			table[slot] = cell;
+			numCells++;
+		}
+		cell.add(canopyCenter);
+		size++;
+	}
+
+	@Override
+	public boolean anyWithinT2(DataPoint dataPoint)
+	{
+		cellOf(dataPoint, base);
+		start();
+		do
+		{
+			Cell cell = find(neighbour);
+			if(cell != null)
+			{
+				for(int i = 0; i < cell.size; i++)
+				{
+					if(dataPoint.withinT2(cell.centers[i]))
+						return true;
+				}
+			}
+		}
+		while(advance());
+		return false;
+	}
+
+	@Override
+	public List<DataPoint> withinT1(DataPoint dataPoint, List<DataPoint> result)
+	{
+		result.clear();
+		cellOf(dataPoint, base);
+		start();
+		do
+		{
+			Cell cell = find(neighbour);
+			if(cell != null)
+			{
+				for(int i = 0; i < cell.size; i++)
+				{
+					if(dataPoint.withinT1(cell.centers[i]))
+						result.add(cell.centers[i]);
+				}
+			}
+		}
+		while(advance());
+		return result;
+	}
+
+	/**
+	  * Computes the cell coordinates of a Data Point.
+	  */
+	private void cellOf(DataPoint dataPoint, int[] coordinates)
+	{
+		for(int d = 0; d < dimensions; d++)
+			coordinates[d] = (int) Math.floor(dataPoint.simpleCoordinate(d) / cellSize);
+	}
+
+	/**
+	  * Sets neighbour to the first neighbour of base, the one with every coordinate one less.
+	  */
+	private void start()
+	{
+		for(int d = 0; d < dimensions; d++)
+			neighbour[d] = base[d] - 1;
+	}
+
+	/**
+	  * Moves neighbour to the next neighbour of base, counting like an odometer over the offsets -1, 0 and 1.
+	  * Returns:	false once every neighbour has been visited
+	  */
+	private boolean advance()
+	{
+		for(int d = 0; d < dimensions; d++)
+		{
+			if(neighbour[d] < base[d] + 1)
+			{
+				neighbour[d]++;
+				return true;
+			}
+			neighbour[d] = base[d] - 1;
+		}
+		return false;
+	}
+
+	/**
+	  * Finds the cell with the given coordinates.
+	  * Returns:	the cell, or null if it is empty
+	  */
+	private Cell find(int[] coordinates)
+	{
+		Cell cell = table[hash(coordinates) & (table.length - 1)];
+		while(cell != null && !equal(cell.coordinates, coordinates))
+			cell = cell.next;
+		return cell;
+	}
+
+	/**
+	  * Doubles the size of the hash table.
+	  */
+	private void rehash()
+	{
+		Cell[] newTable = new Cell[2 * table.length];
+		for(Cell head : table)
+		{
+			Cell cell = head;
+			while(cell != null)
+			{
+				Cell next = cell.next;
+				int slot = hash(cell.coordinates) & (newTable.length - 1);
+				cell.next = newTable[slot];
+				newTable[slot] = cell;
+				cell = next;
+			}
+		}
+		table = newTable;
+	}
+
+	/**
+	  * Hash code of cell coordinates, with the bits spread so that neighbouring cells land in different slots.
+	  */
+	private static int hash(int[] coordinates)
+	{
+		int hash = 0;
+		for(int d = 0; d < coordinates.length; d++)
+			hash = 31 * hash + coordinates[d];
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	  * Checks if two cell coordinates are equal.
+	  */
+	private static boolean equal(int[] a, int[] b)
+	{
+		for(int d = 0; d < a.length; d++)
+		{
+			if(a[d] != b[d])
+				return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,312 @@
+package cc.dataset;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+  * A block of Data Points shuffled as one value, so that the framework sorts, spills and serializes one record
+  * per block instead of one per Data Point, and the key of the block is written once for all its Data Points.
+  * The Data Points are kept in columns, one array per column of the schema, and written column by column,
+  * every attribute as a 4 byte int or float as in DataPoint.write.
+  *
+  * In the compact encoding of the schema, an int column is written as its smallest value followed by the difference
+  * of every attribute to it, as VarInts, so the attributes of Data Points near each other, such as those of a Canopy,
+  * take one or two bytes. An id column with few distinct values is written as a dictionary of the values
+  * followed by the index of every attribute in it. A byte before every int column tells which of the two it is.
+  */
+public class PointBlock implements Writable
+{
+	/**
+	  * Name of the configuration parameter giving the number of Data Points of a block in the stages that can shuffle blocks,
+	  * CanopyAssign and ClusterAssign. 0, the default, shuffles every Data Point as a record of its own.
+	  */
+	public static final String CONFIGURATION_KEY = "pointBlockSize";
+
+	/**
+	  * Attributes of the Data Points, one array per column of the schema, at the offset of the Data Point in the block.
+	  */
+	private double[][] columns;
+
+	/**
+	  * Number of Data Points the block holds at most.
+	  */
+	private int capacity;
+
+	/**
+	  * Number of Data Points in the block.
+	  */
+	private int size;
+
+	/**
+	  * Tags of the int columns in the compact encoding.
+	  */
+	private static final byte FRAME = 0, DICTIONARY = 1;
+
+	/**
+	  * Largest number of distinct values of an id column written as a dictionary.
+	  */
+	private static final int DICTIONARY_LIMIT = 32;
+
+	/**
+	  * Dictionary of an id column, and the index of every attribute of the column in it.
+	  * Allocated by the first block written in the compact encoding, and reused by every column.
+	  */
+	private long[] dictionary;
+	private int[] indexes;
+
+	/**
+	  * Returns the number of Data Points of a block selected in a configuration.
+	  * Parameters:	Configuration configuration, the configuration of a job
+	  * Returns:	the number of Data Points of a block, or 0 if Data Points are not shuffled in blocks
+	  */
+	public static int getBlockSize(Configuration configuration)
+	{
+		int blockSize = configuration.getInt(CONFIGURATION_KEY, 0);
+		if(blockSize < 0)
+			throw new IllegalArgumentException(CONFIGURATION_KEY + " must not be negative: " + blockSize);
+		return blockSize;
+	}
+
+	/**
+	  * Creates an empty block to read a block into.
+	  */
+	public PointBlock()
+	{
+		this(0);
+	}
+
+	/**
+	  * Creates an empty block.
+	  * Parameters:	int capacity, the number of Data Points the block holds at most
+	  */
+	public PointBlock(int capacity)
+	{
+		this.capacity = capacity;
+		columns = new double[DataPoint.getSchema().size()][capacity];
+		size = 0;
+	}
+
+	/**
+	  * Returns the number of Data Points in the block.
+	  */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	  * Returns if the block holds as many Data Points as it can.
+	  */
+	public boolean isFull()
+	{
+		return size == capacity;
+	}
+
+	/**
+	  * Empties the block.
+	  */
+	public void clear()
+	{
+		size = 0;
+	}
+
+	/**
+	  * Adds a Data Point at the end of the block, which must not be full.
+	  * Parameters:	DataPoint dataPoint, the Data Point, whose attributes are copied
+	  * Returns:	Nothing
+	  */
+	public void add(DataPoint dataPoint)
+	{
+		for(int c = 0; c < columns.length; c++)
+			columns[c][size] = dataPoint.get(c);
+		size++;
+	}
+
+	/**
+	  * Sets a Data Point to one of the block, so that the same object can be reused for every Data Point.
+	  * Parameters:	int index, the offset of the Data Point in the block
+	  * 			DataPoint dataPoint, the Data Point to set
+	  * Returns:	dataPoint
+	  */
+	public DataPoint get(int index, DataPoint dataPoint)
+	{
+		for(int c = 0; c < columns.length; c++)
+			dataPoint.set(c, columns[c][index]);
+		return dataPoint;
+	}
+
+	/**
+	  * Serializes the block: the number of Data Points as a variable length int, followed by the columns.
+	  * Parameters:	DataOutput out, to write the fields serially
+	  * Returns:	Nothing
+	  */
+	public void write(DataOutput out)
+		throws IOException
+	{
+		DataSchema schema = DataPoint.getSchema();
+		WritableUtils.writeVInt(out, size);
+		for(int c = 0; c < columns.length; c++)
+		{
+			double[] column = columns[c];
+			if(schema.isFloat(c))
+			{
+				for(int i = 0; i < size; i++)
+					out.writeFloat((float) column[i]);
+			}
+			else if(schema.isCompact())
+			{
+				if(!(schema.isId(c) && writeDictionary(out, column)))
+					writeFrame(out, column);
+			}
+			else
+			{
+				for(int i = 0; i < size; i++)
+					out.writeInt((int) column[i]);
+			}
+		}
+	}
+
+	/**
+	  * Writes an int column as its smallest value followed by the difference of every attribute to it.
+	  * Parameters:	DataOutput out, to write the column
+	  * 			double[] column, the attributes of the column
+	  * Returns:	Nothing
+	  */
+	private void writeFrame(DataOutput out, double[] column)
+		throws IOException
+	{
+		long min = Integer.MAX_VALUE;
+		for(int i = 0; i < size; i++)
+			min = Math.min(min, (int) column[i]);
+
+		out.writeByte(FRAME);
+		VarInt.writeSigned(out, min);
+		for(int i = 0; i < size; i++)
+			VarInt.writeUnsigned(out, (int) column[i] - min);
+	}
+
+	/**
+	  * Writes an int column as a dictionary of its distinct values followed by the index of every attribute in it,
+	  * if it has at most DICTIONARY_LIMIT distinct values.
+	  * Parameters:	DataOutput out, to write the column
+	  * 			double[] column, the attributes of the column
+	  * Returns:	false, writing nothing, if the column has too many distinct values
+	  */
+	private boolean writeDictionary(DataOutput out, double[] column)
+		throws IOException
+	{
+		if(dictionary == null || dictionary.length < DICTIONARY_LIMIT)
+			dictionary = new long[DICTIONARY_LIMIT];
+		if(indexes == null || indexes.length < size)
+			indexes = new int[capacity];
+
+		// Look up every attribute in the dictionary, adding the values not seen yet
+		int dictionarySize = 0;
+		for(int i = 0; i < size; i++)
+		{
+			long value = (int) column[i];
+			int index = 0;
+			while(index < dictionarySize && dictionary[index] != value)
+				index++;
+			if(index == dictionarySize)
+			{
+				if(dictionarySize == DICTIONARY_LIMIT)
+					return false;
+				dictionary[dictionarySize++] = value;
+			}
+			indexes[i] = index;
+		}
+
+		out.writeByte(DICTIONARY);
+		VarInt.writeUnsigned(out, dictionarySize);
+		for(int index = 0; index < dictionarySize; index++)
+			VarInt.writeSigned(out, dictionary[index]);
+		for(int i = 0; i < size; i++)
+			VarInt.writeUnsigned(out, indexes[i]);
+		return true;
+	}
+
+	/**
+	  * Reads the fields in the order they were written, growing the columns if the block holds more Data Points than they can.
+	  * Parameters:	DataInput in, to read the fields serially
+	  * Returns:	Nothing
+	  */
+	public void readFields(DataInput in)
+		throws IOException
+	{
+		DataSchema schema = DataPoint.getSchema();
+		size = WritableUtils.readVInt(in);
+		if(size > capacity || columns.length != schema.size())
+		{
+			capacity = Math.max(size, capacity);
+			columns = new double[schema.size()][capacity];
+		}
+		for(int c = 0; c < columns.length; c++)
+		{
+			double[] column = columns[c];
+			if(schema.isFloat(c))
+			{
+				for(int i = 0; i < size; i++)
+					column[i] = in.readFloat();
+			}
+			else if(schema.isCompact())
+				readCompact(in, column);
+			else
+			{
+				for(int i = 0; i < size; i++)
+					column[i] = in.readInt();
+			}
+		}
+	}
+
+	/**
+	  * Reads an int column written by writeFrame or writeDictionary.
+	  * Parameters:	DataInput in, to read the column
+	  * 			double[] column, filled with the attributes of the column
+	  * Returns:	Nothing
+	  */
+	private void readCompact(DataInput in, double[] column)
+		throws IOException
+	{
+		byte tag = in.readByte();
+		if(tag == FRAME)
+		{
+			long min = VarInt.readSigned(in);
+			for(int i = 0; i < size; i++)
+				column[i] = (int) (min + VarInt.readUnsigned(in));
+		}
+		else if(tag == DICTIONARY)
+		{
+			int dictionarySize = (int) VarInt.readUnsigned(in);
+			if(dictionary == null || dictionary.length < dictionarySize)
+				dictionary = new long[Math.max(dictionarySize, DICTIONARY_LIMIT)];
+			for(int index = 0; index < dictionarySize; index++)
+				dictionary[index] = VarInt.readSigned(in);
+			for(int i = 0; i < size; i++)
+				column[i] = (int) dictionary[(int) VarInt.readUnsigned(in)];
+		}
+		else
+			throw new IOException("Unknown encoding of a column of a PointBlock: " + tag);
+	}
+
+	/**
+	  * Returns a string representation of the block: its Data Points, one per line.
+	  */
+	public String toString()
+	{
+		StringBuilder builder = new StringBuilder();
+		DataPoint dataPoint = new DataPoint();
+		for(int i = 0; i < size; i++)
+		{
+			if(i > 0)
+				builder.append('\n');
+			builder.append(get(i, dataPoint));
+		}
+		return builder.toString();
+	}
+}
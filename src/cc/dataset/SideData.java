@@ -0,0 +1,236 @@
+package cc.dataset;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.util.ReflectionUtils;
+
+/**
+  * Small lists of Data Points every mapper needs, such as the Canopy Centers and the k-Means Centroids.
+  *
+  * The driver writes them once into a fixed-width binary file and adds it to the distributed cache,
+  * so that it is copied to every node once instead of being opened and parsed by every map task.
+  * The mappers memory-map the local copy and deserialize the Data Points from it.
+  *
+  * Every Data Point is shipped with an id, such as the id of a k-Means Centroid, which stays the same across iterations.
+  * The file is the magic bytes, the number of Data Points, the width of a Data Point in bytes
+  * and the records, each an int id followed by the Data Point as written by DataPoint.write in the fixed encoding,
+  * whatever the encoding of the schema, so that all records have the same width.
+  * Other fixed-width Writables, such as the counts of Data Points per k-Means Centroid, are shipped the same way.
+  */
+public final class SideData
+{
+	/**
+	  * Names of the side data files.
+	  */
+	public static final String CANOPY_CENTERS = "canopyCenters.bin", K_CENTROIDS = "kCentroids.bin",
+		FROZEN_K_CENTROIDS = "frozenKCentroids.bin", PREVIOUS_K_CENTROIDS = "previousKCentroids.bin",
+		K_CENTROID_COUNTS = "kCentroidCounts.bin", SEED_CANDIDATES = "seedCandidates.bin";
+
+	/**
+	  * Suffix of the folder a driver writes the side data files into, appended to its output path.
+	  */
+	public static final String FOLDER_SUFFIX = "_sidedata";
+
+	/**
+	  * First bytes of every side data file: "CCF" and the version.
+	  */
+	private static final byte[] MAGIC = { 'C', 'C', 'F', 2 };
+
+	/**
+	  * Length of the header: the magic bytes, the number of Data Points and their width.
+	  */
+	private static final int HEADER_SIZE = MAGIC.length + 4 + 4;
+
+	private SideData()
+	{
+	}
+
+	/**
+	  * Writes a list of Data Points into a side data file and adds it to the distributed cache of a job.
+	  * Parameters:	Job job, the job
+	  * 			Path folder, folder the file is written into. The file is named after the side data
+	  * 			String name, name of the side data, such as CANOPY_CENTERS
+	  * 			List<DataPoint> dataPoints, the Data Points
+	  * Returns:	Nothing
+	  *
+	  * The Data Points are numbered from 1 in list order.
+	  */
+	public static void ship(Job job, Path folder, String name, List<DataPoint> dataPoints)
+		throws IOException
+	{
+		ship(job, folder, name, DataPointReader.number(dataPoints));
+	}
+
+	/**
+	  * Writes Data Points and their ids into a side data file and adds it to the distributed cache of a job.
+	  * Parameters:	Job job, the job
+	  * 			Path folder, folder the file is written into. The file is named after the side data
+	  * 			String name, name of the side data, such as K_CENTROIDS
+	  * 			SortedMap<Integer, ? extends Writable> dataPoints, the Data Points by id
+	  * Returns:	Nothing
+	  *
+	  * Any other Writables of a fixed width can be shipped instead of Data Points.
+	  */
+	public static void ship(Job job, Path folder, String name, SortedMap<Integer, ? extends Writable> dataPoints)
+		throws IOException
+	{
+		Configuration configuration = job.getConfiguration();
+		FileSystem filesystem = folder.getFileSystem(configuration);
+		Path path = filesystem.makeQualified(new Path(folder, name));
+
+		// Serialize the first Data Point to find the width of all of them
+		DataOutputBuffer record = new DataOutputBuffer();
+		if(!dataPoints.isEmpty())
+			writeFixed(dataPoints.get(dataPoints.firstKey()), record);
+		int width = record.getLength();
+
+		FSDataOutputStream out = filesystem.create(path, true);
+		try
+		{
+			out.write(MAGIC);
+			out.writeInt(dataPoints.size());
+			out.writeInt(width);
+			for(Map.Entry<Integer, ? extends Writable> entry : dataPoints.entrySet())
+			{
+				record.reset();
+				writeFixed(entry.getValue(), record);
+				if(record.getLength() != width)
+					throw new IOException("Data Points of different widths cannot be written into " + path);
+				out.writeInt(entry.getKey());
+				out.write(record.getData(), 0, width);
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+
+		DistributedCache.addCacheFile(path.toUri(), configuration);
+	}
+
+	/**
+	  * Serializes a record of side data, in the fixed encoding for a Data Point.
+	  * Parameters:	Writable writable, the Data Point or other Writable
+	  * 			DataOutput out, to write the record
+	  * Returns:	Nothing
+	  */
+	private static void writeFixed(Writable writable, DataOutput out)
+		throws IOException
+	{
+		if(writable instanceof DataPoint)
+			((DataPoint) writable).write(out, false);
+		else
+			writable.write(out);
+	}
+
+	/**
+	  * Reads side data shipped by the driver, from the local copy in the distributed cache.
+	  * Parameters:	Configuration configuration, the task configuration
+	  * 			String name, name of the side data, such as CANOPY_CENTERS
+	  * Returns:	list of Data Points in the order of their ids
+	  */
+	public static ArrayList<DataPoint> load(Configuration configuration, String name)
+		throws IOException
+	{
+		return new ArrayList<DataPoint>(loadById(configuration, name).values());
+	}
+
+	/**
+	  * Reads side data shipped by the driver together with the ids of the Data Points.
+	  * Parameters:	Configuration configuration, the task configuration
+	  * 			String name, name of the side data, such as K_CENTROIDS
+	  * Returns:	Data Points by id
+	  */
+	public static TreeMap<Integer, DataPoint> loadById(Configuration configuration, String name)
+		throws IOException
+	{
+		return loadById(configuration, name, DataPoint.class);
+	}
+
+	/**
+	  * Reads side data of other Writables than Data Points, shipped by the driver together with their ids.
+	  * Parameters:	Configuration configuration, the task configuration
+	  * 			String name, name of the side data, such as K_CENTROID_COUNTS
+	  * 			Class<W> valueClass, class of the Writables
+	  * Returns:	Writables by id
+	  */
+	public static <W extends Writable> TreeMap<Integer, W> loadById(Configuration configuration, String name, Class<W> valueClass)
+		throws IOException
+	{
+		Path[] localFiles = DistributedCache.getLocalCacheFiles(configuration);
+		if(localFiles != null)
+		{
+			for(Path localFile : localFiles)
+			{
+				if(localFile.getName().equals(name))
+					return read(localFile, valueClass);
+			}
+		}
+		throw new IOException("Side data " + name + " not found in the distributed cache");
+	}
+
+	/**
+	  * Memory-maps a local side data file and deserializes its Data Points.
+	  * Parameters:	Path localFile, path to the file on the local disk
+	  * 			Class<W> valueClass, class of the Data Points, or of the other Writables shipped
+	  * Returns:	Data Points by id
+	  */
+	static <W extends Writable> TreeMap<Integer, W> read(Path localFile, Class<W> valueClass)
+		throws IOException
+	{
+		ByteBuffer buffer;
+		RandomAccessFile file = new RandomAccessFile(localFile.toUri().getPath(), "r");
+		try
+		{
+			// The mapping stays valid after the file is closed
+			buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+		}
+		finally
+		{
+			file.close();
+		}
+
+		// Check the header
+		byte[] magic = new byte[MAGIC.length];
+		buffer.get(magic);
+		if(!Arrays.equals(magic, MAGIC))
+			throw new IOException("Not a side data file: " + localFile);
+		int size = buffer.getInt();
+		int width = buffer.getInt();
+		if(buffer.capacity() != HEADER_SIZE + (long) size * (4 + width))
+			throw new IOException("Side data file " + localFile + " does not hold " + size + " Data Points");
+
+		TreeMap<Integer, W> dataPoints = new TreeMap<Integer, W>();
+		ByteBufferDataInput in = new ByteBufferDataInput();
+		in.reset(buffer);
+		for(int i = 0; i < size; i++)
+		{
+			int id = in.readInt();
+			W dataPoint = ReflectionUtils.newInstance(valueClass, null);
+			if(dataPoint instanceof DataPoint)
+				((DataPoint) dataPoint).readFields(in, false);
+			else
+				dataPoint.readFields(in);
+			dataPoints.put(id, dataPoint);
+		}
+		return dataPoints;
+	}
+}
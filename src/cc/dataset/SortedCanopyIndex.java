@@ -0,0 +1,170 @@
+package cc.dataset;
+
+import java.util.List;
+
+/**
+  * Canopy Centers sorted by their simpleKey.
+  * Since the simple distance only depends on the difference of the keys, the Canopy Centers within T1 or T2 distance
+  * of a Data Point all lie in a window around its key, which is found by binary search instead of scanning every center.
+  */
+public class SortedCanopyIndex extends CanopyIndex
+{
+	/**
+	  * Initial capacity of the arrays.
+	  */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	  * Radius in key space of the T1 and T2 thresholds, for the schema of the Data Points when the index was created.
+	  */
+	private final double t1Radius, t2Radius;
+
+	/**
+	  * Sorted keys of the Canopy Centers.
+	  */
+	private double[] keys;
+
+	/**
+	  * Canopy Centers, in the same order as keys.
+	  */
+	private DataPoint[] centers;
+
+	/**
+	  * Number of Canopy Centers in the index.
+	  */
+	private int size;
+
+	/**
+	  * Creates an empty index.
+	  */
+	public SortedCanopyIndex()
+	{
+		t1Radius = DataPoint.simpleKeyRadius(DataPoint.getT1());
+		t2Radius = DataPoint.simpleKeyRadius(DataPoint.getT2());
+		keys = new double[INITIAL_CAPACITY];
+		centers = new DataPoint[INITIAL_CAPACITY];
+		size = 0;
+	}
+
+	/**
+	  * Creates an index holding the given Canopy Centers.
+	  * Parameters:	List<DataPoint> canopyCenters, Canopy Centers to add
+	  */
+	public SortedCanopyIndex(List<DataPoint> canopyCenters)
+	{
+		this();
+		for(DataPoint canopyCenter : canopyCenters)
+			add(canopyCenter);
+	}
+
+	/**
+	  * Returns the number of Canopy Centers in the index.
+	  * Returns:	number of Canopy Centers
+	  */
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	  * Adds a Canopy Center to the index. Centers with equal keys are kept in insertion order.
+	  * Parameters:	DataPoint canopyCenter, the Canopy Center
+	  * Returns:	Nothing
+	  *
+	  * The object is stored as is, so it must not be modified afterwards.
+	  */
+	@Override
+	public void add(DataPoint canopyCenter)
+	{
+		// Grow the arrays if they are full
+		if(size == keys.length)
+		{
+			double[] newKeys = new double[2 * size];
+			DataPoint[] newCenters = new DataPoint[2 * size];
+			System.arraycopy(keys, 0, newKeys, 0, size);
+			System.arraycopy(centers, 0, newCenters, 0, size);
+			keys = newKeys;
+			centers = newCenters;
+		}
+
+		// Shift the centers with a greater key one place to the right and insert the new one
+		double key = canopyCenter.simpleKey();
+		int position = upperBound(key);
+		System.arraycopy(keys, position, keys, position + 1, size - position);
+		System.arraycopy(centers, position, centers, position + 1, size - position);
+		keys[position] = key;
+		centers[position] = canopyCenter;
+		size++;
+	}
+
+	/**
+	  * Checks if any Canopy Center in the index is within T2 distance of a Data Point.
+	  * Parameters:	DataPoint dataPoint, the Data Point
+	  * Returns:	true if a Canopy Center is within T2 distance, false otherwise
+	  */
+	@Override
+	public boolean anyWithinT2(DataPoint dataPoint)
+	{
+		double key = dataPoint.simpleKey();
+		for(int i = lowerBound(key - t2Radius); i < size && keys[i] <= key + t2Radius; i++)
+		{
+			if(dataPoint.withinT2(centers[i]))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	  * Finds all the Canopy Centers in the index within T1 distance of a Data Point.
+	  * Parameters:	DataPoint dataPoint, the Data Point
+	  * 			List<DataPoint> result, list the Canopy Centers are added to, in key order. It is cleared first
+	  * Returns:	result
+	  */
+	@Override
+	public List<DataPoint> withinT1(DataPoint dataPoint, List<DataPoint> result)
+	{
+		result.clear();
+		double key = dataPoint.simpleKey();
+		for(int i = lowerBound(key - t1Radius); i < size && keys[i] <= key + t1Radius; i++)
+		{
+			if(dataPoint.withinT1(centers[i]))
+				result.add(centers[i]);
+		}
+		return result;
+	}
+
+	/**
+	  * Returns the position of the first key greater than or equal to the given key.
+	  */
+	private int lowerBound(double key)
+	{
+		int low = 0, high = size;
+		while(low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if(keys[middle] < key)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	  * Returns the position of the first key strictly greater than the given key.
+	  */
+	private int upperBound(double key)
+	{
+		int low = 0, high = size;
+		while(low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if(keys[middle] <= key)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+}
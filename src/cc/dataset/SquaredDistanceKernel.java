@@ -0,0 +1,111 @@
+package cc.dataset;
+
+/**
+  * Kernels computing the squared Euclidean distances of EuclideanMetric and SquaredEuclideanMetric over the columns
+  * of a CentroidTable, one dimension at a time, in scalar loops the JIT compiler may turn into SIMD instructions.
+  * VectorSquaredDistanceKernel computes the same distances with the vectors of the Vector API instead. It is only compiled
+  * with make VECTOR=1 and only runs in a JVM started with --add-modules jdk.incubator.vector, so it is loaded by name,
+  * and these loops are used whenever it cannot be loaded.
+  */
+class SquaredDistanceKernel
+{
+	/**
+	  * Name of the class of the kernel of the Vector API.
+	  */
+	private static final String VECTOR_CLASS = "cc.dataset.VectorSquaredDistanceKernel";
+
+	/**
+	  * Creates the kernel of the given kind
+	  * Parameters:	String kernel, DistanceMetric.SCALAR, DistanceMetric.VECTOR, or null for DistanceMetric.SCALAR
+	  * Returns:	the kernel, the scalar one if the kernel of the Vector API cannot be loaded
+	  */
+	static SquaredDistanceKernel create(String kernel)
+	{
+		if(kernel == null || kernel.equals(DistanceMetric.SCALAR))
+			return new SquaredDistanceKernel();
+		if(!kernel.equals(DistanceMetric.VECTOR))
+			throw new IllegalArgumentException("Unknown distance kernel: " + kernel);
+
+		// The class is missing from a build without VECTOR=1, and its vectors are missing from a JVM without the module
+		try
+		{
+			return (SquaredDistanceKernel) Class.forName(VECTOR_CLASS).getDeclaredConstructor().newInstance();
+		}
+		catch(Exception e)
+		{
+			System.err.println("The " + DistanceMetric.VECTOR + " distance kernel is not available, using the scalar one: " + e);
+		}
+		catch(LinkageError e)
+		{
+			System.err.println("The " + DistanceMetric.VECTOR + " distance kernel is not available, using the scalar one: " + e);
+		}
+		return new SquaredDistanceKernel();
+	}
+
+	/**
+	  * Computes the squared Euclidean distances from a Data Point to every centroid of a table
+	  * Parameters:	double[][] columns, the coordinates of the centroids
+	  * 			int size, the number of centroids
+	  * 			DataPoint dataPoint, the Data Point
+	  * 			double[] squaredDistances, filled with the squared distance to every centroid
+	  * Returns:	Nothing
+	  */
+	void squaredDistances(double[][] columns, int size, DataPoint dataPoint, double[] squaredDistances)
+	{
+		for(int d = 0; d < columns.length; d++)
+		{
+			double[] column = columns[d];
+			double coordinate = dataPoint.complexCoordinate(d);
+			if(d == 0)
+			{
+				for(int i = 0; i < size; i++)
+				{
+					double difference = column[i] - coordinate;
+					squaredDistances[i] = difference * difference;
+				}
+			}
+			else
+			{
+				for(int i = 0; i < size; i++)
+				{
+					double difference = column[i] - coordinate;
+					squaredDistances[i] += difference * difference;
+				}
+			}
+		}
+	}
+
+	/**
+	  * Computes the squared Euclidean distances from every Data Point of a batch to one centroid
+	  * Parameters:	double[][] batchColumns, the coordinates of the Data Points of the batch
+	  * 			int count, the number of Data Points in the batch
+	  * 			double[][] columns, the coordinates of the centroids
+	  * 			int offset, the offset of the centroid in the columns
+	  * 			double[] squaredDistances, filled with the squared distance of every Data Point of the batch
+	  * Returns:	Nothing
+	  */
+	void squaredDistances(double[][] batchColumns, int count, double[][] columns, int offset, double[] squaredDistances)
+	{
+		for(int d = 0; d < batchColumns.length; d++)
+		{
+			double[] batchColumn = batchColumns[d];
+			double coordinate = columns[d][offset];
+			if(d == 0)
+			{
+				for(int j = 0; j < count; j++)
+				{
+					double difference = batchColumn[j] - coordinate;
+					squaredDistances[j] = difference * difference;
+				}
+			}
+			else
+			{
+				for(int j = 0; j < count; j++)
+				{
+					double difference = batchColumn[j] - coordinate;
+					squaredDistances[j] += difference * difference;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package cc.dataset;
+
+/**
+  * Squared Euclidean distance. Its ranks are the squared distances themselves.
+  * It does not satisfy the triangle inequality.
+  */
+public final class SquaredEuclideanMetric extends DistanceMetric
+{
+	/**
+	  * The kernel computing the squared distances.
+	  */
+	private final SquaredDistanceKernel kernel;
+
+	/**
+	  * Creates the metric with the scalar kernel.
+	  */
+	public SquaredEuclideanMetric()
+	{
+		this(new SquaredDistanceKernel());
+	}
+
+	/**
+	  * Creates the metric with a kernel
+	  * Parameters:	SquaredDistanceKernel kernel, the kernel computing the squared distances
+	  */
+	SquaredEuclideanMetric(SquaredDistanceKernel kernel)
+	{
+		this.kernel = kernel;
+	}
+
+	@Override
+	public double distance(DataPoint dataPoint, DataPoint other)
+	{
+		double sum = 0;
+		for(int d = 0; d < DataPoint.getComplexDimensions(); d++)
+		{
+			double difference = dataPoint.complexCoordinate(d) - other.complexCoordinate(d);
+			sum += difference * difference;
+		}
+		return sum;
+	}
+
+	@Override
+	public double rankToDistance(double rank)
+	{
+		return rank;
+	}
+
+	@Override
+	public boolean isMetric()
+	{
+		return false;
+	}
+
+	@Override
+	public void ranks(double[][] columns, int size, DataPoint dataPoint, double[] ranks)
+	{
+		kernel.squaredDistances(columns, size, dataPoint, ranks);
+	}
+
+	@Override
+	public void ranks(double[][] batchColumns, int count, double[][] columns, int offset, double[] ranks)
+	{
+		kernel.squaredDistances(batchColumns, count, columns, offset, ranks);
+	}
+}
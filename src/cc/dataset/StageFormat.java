@@ -0,0 +1,70 @@
+package cc.dataset;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+
+/**
+  * File format of the files the steps hand to each other: the Canopy Centers, the pairs (Canopy Center, Data Point)
+  * and the k-Means Centroids of every iteration.
+  * By default they are BlockFiles of the Writables themselves, which are splittable and read back without parsing.
+  * Tab separated text is kept as an option, for inspecting or exporting them.
+  */
+public final class StageFormat
+{
+	/**
+	  * Name of the configuration parameter selecting the format.
+	  */
+	public static final String CONFIGURATION_KEY = "stageFormat";
+
+	/**
+	  * Values of the configuration parameter.
+	  */
+	public static final String BLOCK = "block", TEXT = "text";
+
+	private StageFormat()
+	{
+	}
+
+	/**
+	  * Checks if the files between steps are BlockFiles.
+	  * Parameters:	Configuration configuration, the job configuration
+	  * Returns:	true for BlockFiles, false for text
+	  */
+	public static boolean isBlock(Configuration configuration)
+	{
+		String format = configuration.get(CONFIGURATION_KEY, BLOCK);
+		if(format.equals(BLOCK))
+			return true;
+		if(format.equals(TEXT))
+			return false;
+		throw new IllegalArgumentException("Unknown stage format: " + format);
+	}
+
+	/**
+	  * Sets the output format of a job writing a file read by a later step.
+	  * Parameters:	Job job, the job
+	  * Returns:	Nothing
+	  */
+	public static void setOutputFormat(Job job)
+	{
+		if(isBlock(job.getConfiguration()))
+			job.setOutputFormatClass(BlockFileOutputFormat.class);
+		else
+			job.setOutputFormatClass(TextOutputFormat.class);
+	}
+
+	/**
+	  * Sets the input format of a job reading a file written by an earlier step.
+	  * Parameters:	Job job, the job
+	  * Returns:	Nothing
+	  */
+	public static void setInputFormat(Job job)
+	{
+		if(isBlock(job.getConfiguration()))
+			job.setInputFormatClass(BlockFileInputFormat.class);
+		else
+			job.setInputFormatClass(TextInputFormat.class);
+	}
+}
@@ -0,0 +1,108 @@
+package cc.dataset;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+  * Variable length integers of the compact encoding of Data Points: 7 bits per byte, least significant first,
+  * with the high bit of a byte set when more bytes follow. Signed values are zig-zag encoded first,
+  * so that small negative values are as short as small positive ones: 0, -1, 1, -2 become 0, 1, 2, 3.
+  * A value between -64 and 63 takes one byte, and one between -8192 and 8191 two.
+  */
+public final class VarInt
+{
+	private VarInt()
+	{
+	}
+
+	/**
+	  * Writes a non-negative value.
+	  * Parameters:	DataOutput out, to write the bytes
+	  * 			long value, the value, at least 0
+	  * Returns:	Nothing
+	  */
+	public static void writeUnsigned(DataOutput out, long value)
+		throws IOException
+	{
+		while((value & ~0x7FL) != 0)
+		{
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	/**
+	  * Reads a value written by writeUnsigned.
+	  * Parameters:	DataInput in, to read the bytes
+	  * Returns:	the value
+	  */
+	public static long readUnsigned(DataInput in)
+		throws IOException
+	{
+		long value = 0;
+		for(int shift = 0; ; shift += 7)
+		{
+			int b = in.readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if((b & 0x80) == 0)
+				return value;
+		}
+	}
+
+	/**
+	  * Writes a signed value.
+	  * Parameters:	DataOutput out, to write the bytes
+	  * 			long value, the value
+	  * Returns:	Nothing
+	  */
+	public static void writeSigned(DataOutput out, long value)
+		throws IOException
+	{
+		writeUnsigned(out, (value << 1) ^ (value >> 63));
+	}
+
+	/**
+	  * Reads a value written by writeSigned.
+	  * Parameters:	DataInput in, to read the bytes
+	  * Returns:	the value
+	  */
+	public static long readSigned(DataInput in)
+		throws IOException
+	{
+		long value = readUnsigned(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	  * Returns the length of a value in serialized bytes.
+	  * Parameters:	byte[] bytes, the bytes
+	  * 			int start, position of the first byte of the value
+	  * Returns:	the number of bytes of the value
+	  */
+	public static int length(byte[] bytes, int start)
+	{
+		int position = start;
+		while((bytes[position] & 0x80) != 0)
+			position++;
+		return position - start + 1;
+	}
+
+	/**
+	  * Reads a value written by writeSigned from serialized bytes.
+	  * Parameters:	byte[] bytes, the bytes
+	  * 			int start, position of the first byte of the value
+	  * Returns:	the value
+	  */
+	public static long readSigned(byte[] bytes, int start)
+	{
+		long value = 0;
+		for(int shift = 0, position = start; ; shift += 7, position++)
+		{
+			value |= (long) (bytes[position] & 0x7F) << shift;
+			if((bytes[position] & 0x80) == 0)
+				return (value >>> 1) ^ -(value & 1);
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package cc.dataset;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+  * Kernels of SquaredDistanceKernel written with the vectors of the Vector API, selected with -D distanceKernel=vector.
+  * Every dimension is processed in vectors of the widest shape of the processor, and the rest of the column in scalar steps.
+  * The differences are squared and added up in the same order as in the scalar loops, without fused multiply-adds,
+  * so the distances are the same to the last bit.
+  * Only compiled with make VECTOR=1, as the incubator module jdk.incubator.vector must be added to the compiler
+  * and to every JVM running it.
+  */
+final class VectorSquaredDistanceKernel extends SquaredDistanceKernel
+{
+	/**
+	  * Shape of the vectors.
+	  */
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	@Override
+	void squaredDistances(double[][] columns, int size, DataPoint dataPoint, double[] squaredDistances)
+	{
+		for(int d = 0; d < columns.length; d++)
+			addSquaredDifferences(columns[d], dataPoint.complexCoordinate(d), size, squaredDistances, d == 0);
+	}
+
+	@Override
+	void squaredDistances(double[][] batchColumns, int count, double[][] columns, int offset, double[] squaredDistances)
+	{
+		for(int d = 0; d < batchColumns.length; d++)
+			addSquaredDifferences(batchColumns[d], columns[d][offset], count, squaredDistances, d == 0);
+	}
+
+	/**
+	  * Adds the squared differences between the values of a column and a coordinate to running sums
+	  * Parameters:	double[] column, the values of one dimension
+	  * 			double coordinate, the coordinate in that dimension
+	  * 			int length, the number of values
+	  * 			double[] sums, the running sums
+	  * 			boolean first, true to overwrite the sums instead of adding to them, for the first dimension
+	  * Returns:	Nothing
+	  */
+	private static void addSquaredDifferences(double[] column, double coordinate, int length, double[] sums, boolean first)
+	{
+		DoubleVector coordinates = DoubleVector.broadcast(SPECIES, coordinate);
+		int bound = SPECIES.loopBound(length);
+		int i = 0;
+		for(; i < bound; i += SPECIES.length())
+		{
+			DoubleVector difference = DoubleVector.fromArray(SPECIES, column, i).sub(coordinates);
+			DoubleVector square = difference.mul(difference);
+			if(!first)
+				square = DoubleVector.fromArray(SPECIES, sums, i).add(square);
+			square.intoArray(sums, i);
+		}
+		for(; i < length; i++)
+		{
+			double difference = column[i] - coordinate;
+			sums[i] = (first ? difference * difference : sums[i] + difference * difference);
+		}
+	}
+}
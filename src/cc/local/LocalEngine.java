@@ -0,0 +1,482 @@
+package cc.local;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import cc.dataset.CentroidTable;
+import cc.dataset.DataPoint;
+import cc.dataset.DataPointReader;
+import cc.dataset.DataPointSum;
+import cc.dataset.DistanceMetric;
+import cc.dataset.CanopyIndex;
+
+/**
+  * In-process engine for the four Canopy Clustering steps.
+  * Each step runs the same logic as the corresponding Mapper and Reducer, but over in-memory lists,
+  * with the work spread over a fork/join pool instead of separate MapReduce jobs.
+  */
+public class LocalEngine
+{
+	/**
+	  * Minimum number of Data Points handled by a single fork/join task.
+	  */
+	public static final int MIN_TASK_SIZE = 1024;
+
+	/**
+	  * Pool running all the tasks of this engine.
+	  */
+	private final ForkJoinPool pool;
+
+	/**
+	  * Number of splits the input is divided into for the Canopy Center step, one per worker thread.
+	  */
+	private final int parallelism;
+
+	/**
+	  * Kind of CanopyIndex used by the Canopy steps, null for the default.
+	  */
+	private String canopyIndexType;
+
+	/**
+	  * Metric of the distances of the Cluster steps, Euclidean by default.
+	  */
+	private DistanceMetric metric = DistanceMetric.create((String) null);
+
+	/**
+	  * Number of k-Means iterations run by the last call to clusterCenters.
+	  */
+	private int numIterations;
+
+	/**
+	  * Limit of the number of k-Means iterations.
+	  */
+	private int maxIterations = DataPoint.MAX_ITERATIONS;
+
+	/**
+	  * Creates an engine backed by a fork/join pool with the given number of worker threads.
+	  * Parameters:	int parallelism, number of worker threads
+	  */
+	public LocalEngine(int parallelism)
+	{
+		this.parallelism = parallelism;
+		this.pool = new ForkJoinPool(parallelism);
+	}
+
+	/**
+	  * Sets the kind of CanopyIndex used by the Canopy steps.
+	  * Parameters:	String canopyIndexType, CanopyIndex.SORTED, CanopyIndex.GRID or null for the default
+	  * Returns:	Nothing
+	  */
+	public void setCanopyIndexType(String canopyIndexType)
+	{
+		this.canopyIndexType = canopyIndexType;
+	}
+
+	/**
+	  * Sets the metric of the distances of the Cluster steps, like the distanceMetric parameter of the MapReduce jobs.
+	  * Parameters:	String metricType, one of the kinds of DistanceMetric, or null for the default
+	  * Returns:	Nothing
+	  */
+	public void setDistanceMetric(String metricType)
+	{
+		this.metric = DistanceMetric.create(metricType);
+	}
+
+	/**
+	  * Sets the limit of the number of k-Means iterations, like the clusterCenterMaxIterations parameter of ClusterCenterDriver.
+	  * Parameters:	int maxIterations, limit of the number of iterations, at least 1
+	  * Returns:	Nothing
+	  */
+	public void setMaxIterations(int maxIterations)
+	{
+		if(maxIterations < 1)
+			throw new IllegalArgumentException("The limit of iterations must be at least 1: " + maxIterations);
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	  * Returns the number of k-Means iterations run by the last call to clusterCenters.
+	  * Returns:	number of iterations
+	  */
+	public int getNumIterations()
+	{
+		return numIterations;
+	}
+
+	/**
+	  * Shuts down the worker threads of the engine.
+	  */
+	public void shutdown()
+	{
+		pool.shutdown();
+	}
+
+	/**
+	  * Canopy Center step.
+	  * Parameters:	List<DataPoint> dataPoints, the Data Set
+	  * Returns:	list of global Canopy Centers
+	  *
+	  * The input is split into one chunk per worker thread and each chunk is scanned like CanopyCenterMapper does for its split.
+	  * The local Canopy Centers are then merged in chunk order with the same T2 check as CanopyCenterReducer.
+	  */
+	public List<DataPoint> canopyCenters(final List<DataPoint> dataPoints)
+	{
+		final int chunkSize = Math.max(MIN_TASK_SIZE, (dataPoints.size() + parallelism - 1) / parallelism);
+
+		// Find the local Canopy Centers of every chunk in parallel
+		List<DataPoint> localCenters = pool.invoke(new RangeTask<List<DataPoint>>(0, dataPoints.size(), chunkSize, new Work<List<DataPoint>>()
+		{
+			@Override
+			public List<DataPoint> computeRange(int from, int to)
+			{
+				return selectCanopyCenters(dataPoints.subList(from, to));
+			}
+
+			@Override
+			public List<DataPoint> combine(List<DataPoint> left, List<DataPoint> right)
+			{
+				left.addAll(right);
+				return left;
+			}
+		}));
+
+		// Merge them into the global Canopy Centers
+		return selectCanopyCenters(localCenters);
+	}
+
+	/**
+	  * Canopy Assign step.
+	  * Parameters:	List<DataPoint> dataPoints, the Data Set
+	  * 			List<DataPoint> canopyCenters, the Canopy Centers found by canopyCenters
+	  * Returns:	for every Canopy Center (same order as canopyCenters), the list of Data Points in this Canopy
+	  *
+	  * Every Data Point is checked against every Canopy Center, and added to the list of each Canopy it lies within T1 distance of.
+	  */
+	public List<List<DataPoint>> canopyAssign(final List<DataPoint> dataPoints, final List<DataPoint> canopyCenters)
+	{
+		// Remember the position of each Canopy Center in the list
+		final IdentityHashMap<DataPoint, Integer> canopyOffsets = new IdentityHashMap<DataPoint, Integer>();
+		for(int c = 0; c < canopyCenters.size(); c++)
+			canopyOffsets.put(canopyCenters.get(c), c);
+
+		return pool.invoke(new RangeTask<List<List<DataPoint>>>(0, dataPoints.size(), MIN_TASK_SIZE, new Work<List<List<DataPoint>>>()
+		{
+			@Override
+			public List<List<DataPoint>> computeRange(int from, int to)
+			{
+				// Index the Canopy Centers, once per task since an index may not be shared between threads
+				CanopyIndex canopyIndex = CanopyIndex.create(canopyIndexType, canopyCenters);
+				List<List<DataPoint>> canopies = newLists(canopyCenters.size());
+				List<DataPoint> matchingCenters = new ArrayList<DataPoint>();
+				for(int i = from; i < to; i++)
+				{
+					DataPoint dataPoint = dataPoints.get(i);
+
+					// Same lookup as CanopyAssignMapper
+					for(DataPoint canopyCenter : canopyIndex.withinT1(dataPoint, matchingCenters))
+						canopies.get(canopyOffsets.get(canopyCenter)).add(dataPoint);
+				}
+				return canopies;
+			}
+
+			@Override
+			public List<List<DataPoint>> combine(List<List<DataPoint>> left, List<List<DataPoint>> right)
+			{
+				return appendAll(left, right);
+			}
+		}));
+	}
+
+	/**
+	  * Cluster Center step.
+	  * Parameters:	List<DataPoint> canopyCenters, the Canopy Centers
+	  * 			List<List<DataPoint>> canopies, for every Canopy Center, the Data Points in this Canopy
+	  * 			List<DataPoint> initialCentroids, the initial k-Means Centroids
+	  * Returns:	the converged k-Means Centroids by id, as ClusterCenterReducer would write them
+	  *
+	  * Runs k-Means iterations until the centroids converge, in the same way as ClusterCenterDriver.
+	  * A Data Point in a Canopy is only compared with the k-Means Centroids within T1 distance of the Canopy Center.
+	  * Every task keeps one partial sum per centroid, like the in-mapper aggregation of ClusterCenterMapper.
+	  * The centroids keep their ids from the initial list, numbered from 1, and a centroid without Data Points is dropped.
+	  * Stops at the limit of iterations if the centroids have not converged by then.
+	  */
+	public SortedMap<Integer, DataPoint> clusterCenters(List<DataPoint> canopyCenters, final List<List<DataPoint>> canopies,
+		List<DataPoint> initialCentroids)
+	{
+		SortedMap<Integer, DataPoint> oldCentroids = DataPointReader.number(initialCentroids);
+		numIterations = 0;
+
+		while(true)
+		{
+			// Keep the centroids and their ids in lists, in the order of the ids
+			final List<DataPoint> centroids = new ArrayList<DataPoint>(oldCentroids.values());
+			List<Integer> ids = new ArrayList<Integer>(oldCentroids.keySet());
+
+			// For each Canopy Center, find the k-Means Centroids within this Canopy (same as ClusterCenterMapper.setup)
+			final List<List<DataPoint>> canopyCentroids = new ArrayList<List<DataPoint>>(canopyCenters.size());
+			final List<int[]> canopyCentroidOffsets = new ArrayList<int[]>(canopyCenters.size());
+			for(DataPoint canopyCenter : canopyCenters)
+			{
+				List<DataPoint> centroidList = new ArrayList<DataPoint>();
+				List<Integer> offsetList = new ArrayList<Integer>();
+				for(int i = 0; i < centroids.size(); i++)
+				{
+					if(canopyCenter.withinT1(centroids.get(i)))
+					{
+						centroidList.add(centroids.get(i));
+						offsetList.add(i);
+					}
+				}
+				int[] offsets = new int[offsetList.size()];
+				for(int i = 0; i < offsets.length; i++)
+					offsets[i] = offsetList.get(i);
+				canopyCentroids.add(centroidList);
+				canopyCentroidOffsets.add(offsets);
+			}
+
+			// Assign every (Canopy, Data Point) pair to its nearest k-Means Centroid and sum up the Data Points of every cluster
+			DataPointSum[] clusterSums = pool.invoke(new RangeTask<DataPointSum[]>(0, canopies.size(), 1, new Work<DataPointSum[]>()
+			{
+				@Override
+				public DataPointSum[] computeRange(int from, int to)
+				{
+					DataPointSum[] clusterSums = newSums(centroids.size());
+					for(int c = from; c < to; c++)
+					{
+						List<DataPoint> centroidList = canopyCentroids.get(c);
+						if(centroidList.size() == 0)
+							continue;
+						int[] offsets = canopyCentroidOffsets.get(c);
+						CentroidTable centroidTable = new CentroidTable(centroidList, metric);
+						for(DataPoint dataPoint : canopies.get(c))
+							clusterSums[offsets[centroidTable.nearest(dataPoint)]].add(dataPoint);
+					}
+					return clusterSums;
+				}
+
+				@Override
+				public DataPointSum[] combine(DataPointSum[] left, DataPointSum[] right)
+				{
+					for(int i = 0; i < left.length; i++)
+						left[i].add(right[i]);
+					return left;
+				}
+			}));
+
+			// Average every non-empty cluster under the id of its old centroid, like ClusterCenterReducer
+			SortedMap<Integer, DataPoint> newCentroids = new TreeMap<Integer, DataPoint>();
+			for(int i = 0; i < centroids.size(); i++)
+			{
+				if(clusterSums[i].getCount() > 0)
+					newCentroids.put(ids.get(i), clusterSums[i].getAverageDataPoint());
+			}
+
+			// Check if the k-Means Centroids have converged (same as ClusterCenterDriver.hasConverged), with shifts in the space of the coordinates
+			boolean converged = oldCentroids.keySet().equals(newCentroids.keySet());
+			if(converged)
+			{
+				for(Map.Entry<Integer, DataPoint> entry : oldCentroids.entrySet())
+				{
+					if(entry.getValue().complexDistance(newCentroids.get(entry.getKey())) > DataPoint.CONVERGENCE_THRESHOLD)
+						converged = false;
+				}
+			}
+
+			numIterations++;
+			oldCentroids = newCentroids;
+			if(converged || numIterations >= maxIterations)
+				return newCentroids;
+		}
+	}
+
+	/**
+	  * Cluster Assign step.
+	  * Parameters:	List<DataPoint> dataPoints, the Data Set
+	  * 			List<DataPoint> centroids, the final k-Means Centroids
+	  * Returns:	for every k-Means Centroid (same order as centroids), the list of Data Points in its cluster
+	  *
+	  * Assigns every Data Point to its nearest k-Means Centroid.
+	  */
+	public List<List<DataPoint>> clusterAssign(final List<DataPoint> dataPoints, final List<DataPoint> centroids)
+	{
+		return pool.invoke(new RangeTask<List<List<DataPoint>>>(0, dataPoints.size(), MIN_TASK_SIZE, new Work<List<List<DataPoint>>>()
+		{
+			@Override
+			public List<List<DataPoint>> computeRange(int from, int to)
+			{
+				// Every task keeps its own table, since the table reuses its arrays
+				List<List<DataPoint>> clusters = newLists(centroids.size());
+				CentroidTable centroidTable = new CentroidTable(centroids, metric);
+				for(int i = from; i < to; i++)
+				{
+					DataPoint dataPoint = dataPoints.get(i);
+					clusters.get(centroidTable.nearest(dataPoint)).add(dataPoint);
+				}
+				return clusters;
+			}
+
+			@Override
+			public List<List<DataPoint>> combine(List<List<DataPoint>> left, List<List<DataPoint>> right)
+			{
+				return appendAll(left, right);
+			}
+		}));
+	}
+
+	/**
+	  * Returns the indices of the Data Points in the list, ordered by the compareTo method of DataPoint.
+	  * Parameters:	List<DataPoint> dataPoints, list of Data Points
+	  * Returns:	indices into dataPoints in sorted order
+	  */
+	public static Integer[] sortedOrder(final List<DataPoint> dataPoints)
+	{
+		Integer[] order = new Integer[dataPoints.size()];
+		for(int i = 0; i < order.length; i++)
+			order[i] = i;
+		Arrays.sort(order, new Comparator<Integer>()
+		{
+			public int compare(Integer a, Integer b)
+			{
+				return dataPoints.get(a).compareTo(dataPoints.get(b));
+			}
+		});
+		return order;
+	}
+
+	/**
+	  * Scans the Data Points in order and keeps those that are not within T2 distance of a Canopy Center kept so far.
+	  * Parameters:	List<DataPoint> dataPoints, Data Points to scan
+	  * Returns:	list of Canopy Centers
+	  */
+	List<DataPoint> selectCanopyCenters(List<DataPoint> dataPoints)
+	{
+		List<DataPoint> canopyCenters = new ArrayList<DataPoint>();
+		CanopyIndex canopyIndex = CanopyIndex.create(canopyIndexType);
+		for(DataPoint dataPoint : dataPoints)
+		{
+			if(!canopyIndex.anyWithinT2(dataPoint))
+			{
+				canopyIndex.add(dataPoint);
+				canopyCenters.add(dataPoint);
+			}
+		}
+		return canopyCenters;
+	}
+
+	/**
+	  * Allocates a list of empty lists.
+	  * Parameters:	int size, number of lists
+	  * Returns:	list of size empty lists
+	  */
+	static List<List<DataPoint>> newLists(int size)
+	{
+		List<List<DataPoint>> lists = new ArrayList<List<DataPoint>>(size);
+		for(int i = 0; i < size; i++)
+			lists.add(new ArrayList<DataPoint>());
+		return lists;
+	}
+
+	/**
+	  * Allocates an array of empty partial sums.
+	  * Parameters:	int size, number of partial sums
+	  * Returns:	array of size empty partial sums
+	  */
+	static DataPointSum[] newSums(int size)
+	{
+		DataPointSum[] sums = new DataPointSum[size];
+		for(int i = 0; i < size; i++)
+			sums[i] = new DataPointSum();
+		return sums;
+	}
+
+	/**
+	  * Appends every list in right to the list at the same position in left.
+	  * Parameters:	List<List<DataPoint>> left, lists to append to
+	  * 			List<List<DataPoint>> right, lists to append
+	  * Returns:	left
+	  */
+	static List<List<DataPoint>> appendAll(List<List<DataPoint>> left, List<List<DataPoint>> right)
+	{
+		for(int i = 0; i < left.size(); i++)
+			left.get(i).addAll(right.get(i));
+		return left;
+	}
+
+	/**
+	  * Computation over a range of indices, run by RangeTask.
+	  */
+	interface Work<R>
+	{
+		/**
+		  * Computes the result for the range [from, to) directly.
+		  */
+		R computeRange(int from, int to);
+
+		/**
+		  * Combines the results of two adjacent ranges, left coming first.
+		  */
+		R combine(R left, R right);
+	}
+
+	/**
+	  * Fork/join task over a range of indices.
+	  * The range is split in halves until it is no larger than the threshold, and the partial results are combined in order.
+	  */
+	static class RangeTask<R> extends RecursiveTask<R>
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		  * Range of indices handled by this task.
+		  */
+		private final int from, to;
+
+		/**
+		  * Ranges at most this size are computed directly.
+		  */
+		private final int threshold;
+
+		/**
+		  * The computation run over the range.
+		  */
+		private final Work<R> work;
+
+		/**
+		  * Creates a task over the range [from, to).
+		  * Parameters:	int from, start of the range (inclusive)
+		  * 			int to, end of the range (exclusive)
+		  * 			int threshold, ranges at most this size are computed directly
+		  * 			Work<R> work, the computation run over the range
+		  */
+		RangeTask(int from, int to, int threshold, Work<R> work)
+		{
+			this.from = from;
+			this.to = to;
+			this.threshold = Math.max(1, threshold);
+			this.work = work;
+		}
+
+		@Override
+		protected R compute()
+		{
+			if(to - from <= threshold)
+				return work.computeRange(from, to);
+
+			// Split the range in two halves, fork the right one and compute the left one in this thread
+			int middle = (from + to) >>> 1;
+			RangeTask<R> left = new RangeTask<R>(from, middle, threshold, work);
+			RangeTask<R> right = new RangeTask<R>(middle, to, threshold, work);
+			right.fork();
+			R leftResult = left.compute();
+			return work.combine(leftResult, right.join());
+		}
+	}
+}
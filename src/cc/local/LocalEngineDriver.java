@@ -0,0 +1,221 @@
+/**
+  * @version 1.0
+  * Package to run all the steps of Canopy Clustering inside a single JVM.
+  */
+package cc.local;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import cc.dataset.CanopyIndex;
+import cc.dataset.DataPoint;
+import cc.dataset.DataSchema;
+import cc.dataset.DistanceMetric;
+
+/**
+  * Driver class for the package. Runs Canopy Center, Canopy Assign, Cluster Center and Cluster Assign over local files
+  * with the LocalEngine, keeping the intermediate results in memory.
+  */
+public class LocalEngineDriver
+{
+	/**
+	  * Name of the output part file, same as the one written by the MapReduce jobs.
+	  */
+	public static final String partFile = "part-r-00000";
+
+	/**
+	  * Main function of LocalEngineDriver. Runs all the steps and writes the Canopy Centers, the k-Means Centroids
+	  * and the clustered Data Set in the same format as run.sh does, into output1, output3 and output4 of the output folder.
+	  * Parameters:	String[] args, arguments passed to this class. args[0] = Path to file containing the input. args[1] = Path to file containing the
+	  * 			initial k-Means Centroids. args[2] = Path to output folder. args[3] = Number of worker threads (optional, defaults to the number of
+	  * 			processors). The kind of canopy index can be chosen with the system property canopyIndex, the limit of k-Means iterations with the system
+	  * 			property clusterCenterMaxIterations, the metric of the distances with the system property distanceMetric, and the Data Point schema with the
+	  * 			system properties dataPointSchema, dataPointT1 and dataPointT2
+	  * Returns:	Nothing
+	  */
+	public static void main(String[] args)
+		throws Exception
+	{
+		// Check if a sufficient number of arguments are provided
+		if(args.length < 3)
+		{
+			System.out.println("Usage: LocalEngineDriver <input path> <k centroids file> <output path> [number of threads]");
+			System.exit(-1);
+		}
+
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		if(args.length > 3)
+			parallelism = Integer.parseInt(args[3]);
+
+		// Use the Data Point schema of the system properties, [year, temperature] by default
+		DataPoint.setSchema(DataSchema.create(System.getProperty(DataSchema.CONFIGURATION_KEY),
+			System.getProperty(DataSchema.T1_KEY), System.getProperty(DataSchema.T2_KEY)));
+
+		// Read the Data Set and the initial k-Means Centroids
+		List<DataPoint> dataPoints = readDataPoints(args[0]);
+		List<DataPoint> initialCentroids = readDataPoints(args[1]);
+
+		LocalEngine engine = new LocalEngine(parallelism);
+		engine.setCanopyIndexType(System.getProperty(CanopyIndex.CONFIGURATION_KEY));
+		engine.setDistanceMetric(System.getProperty(DistanceMetric.CONFIGURATION_KEY));
+		engine.setMaxIterations(Integer.getInteger("clusterCenterMaxIterations", DataPoint.MAX_ITERATIONS));
+		try
+		{
+			long start = System.currentTimeMillis();
+
+			// Canopy Center
+			List<DataPoint> canopyCenters = engine.canopyCenters(dataPoints);
+			System.out.println("Canopy Centers: " + canopyCenters.size());
+
+			// Canopy Assign
+			List<List<DataPoint>> canopies = engine.canopyAssign(dataPoints, canopyCenters);
+
+			// Cluster Center
+			SortedMap<Integer, DataPoint> centroidsById = engine.clusterCenters(canopyCenters, canopies, initialCentroids);
+			System.out.println("Iterations: " + engine.getNumIterations());
+
+			// Cluster Assign, with the centroids in sorted order like ClusterAssignDriver ships them
+			List<DataPoint> centroids = new ArrayList<DataPoint>(centroidsById.values());
+			Collections.sort(centroids);
+			List<List<DataPoint>> clusters = engine.clusterAssign(dataPoints, centroids);
+
+			System.out.println("Time: " + (System.currentTimeMillis() - start) + " ms");
+
+			// Write the results
+			writeKeyedDataPoints(new File(args[2], "output1"), canopyCenters);
+			writeCentroids(new File(args[2], "output3"), centroidsById);
+			writeClusters(new File(args[2], "output4"), centroids, clusters);
+		}
+		finally
+		{
+			engine.shutdown();
+		}
+	}
+
+	/**
+	  * Reads a file with one Data Point per line.
+	  * Parameters:	String fileName, path to the file
+	  * Returns:	list of Data Points in file order
+	  */
+	public static List<DataPoint> readDataPoints(String fileName)
+		throws IOException
+	{
+		List<DataPoint> dataPoints = new ArrayList<DataPoint>();
+		BufferedReader reader = new BufferedReader(new FileReader(fileName));
+		try
+		{
+			String line = reader.readLine();
+			while(line != null)
+			{
+				if(line.length() > 0)
+					dataPoints.add(new DataPoint(line));
+				line = reader.readLine();
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+		return dataPoints;
+	}
+
+	/**
+	  * Writes the pairs (1, Data Point) into the part file of a folder, like CanopyCenterReducer.
+	  * Parameters:	File folder, output folder
+	  * 			List<DataPoint> dataPoints, Data Points to write
+	  * Returns:	Nothing
+	  */
+	static void writeKeyedDataPoints(File folder, List<DataPoint> dataPoints)
+		throws IOException
+	{
+		BufferedWriter writer = openPartFile(folder);
+		try
+		{
+			for(DataPoint dataPoint : dataPoints)
+			{
+				writer.write("1\t" + dataPoint);
+				writer.newLine();
+			}
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+	/**
+	  * Writes the pairs (id, k-Means Centroid) into the part file of a folder in the order of the ids,
+	  * like ClusterCenterReducer with a single reducer.
+	  * Parameters:	File folder, output folder
+	  * 			SortedMap<Integer, DataPoint> centroids, the k-Means Centroids by id
+	  * Returns:	Nothing
+	  */
+	static void writeCentroids(File folder, SortedMap<Integer, DataPoint> centroids)
+		throws IOException
+	{
+		BufferedWriter writer = openPartFile(folder);
+		try
+		{
+			for(Map.Entry<Integer, DataPoint> entry : centroids.entrySet())
+			{
+				writer.write(entry.getKey() + "\t" + entry.getValue());
+				writer.newLine();
+			}
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+	/**
+	  * Writes the pairs (k-Means Centroid, Data Point) into the part file of a folder, sorted by centroid like ClusterAssignReducer.
+	  * Parameters:	File folder, output folder
+	  * 			List<DataPoint> centroids, the k-Means Centroids
+	  * 			List<List<DataPoint>> clusters, for every centroid, the Data Points in its cluster
+	  * Returns:	Nothing
+	  */
+	static void writeClusters(File folder, List<DataPoint> centroids, List<List<DataPoint>> clusters)
+		throws IOException
+	{
+		BufferedWriter writer = openPartFile(folder);
+		try
+		{
+			for(Integer i : LocalEngine.sortedOrder(centroids))
+			{
+				String centroid = centroids.get(i).toString();
+				for(DataPoint dataPoint : clusters.get(i))
+				{
+					writer.write(centroid + "\t" + dataPoint);
+					writer.newLine();
+				}
+			}
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+	/**
+	  * Creates the folder and opens its part file for writing.
+	  * Parameters:	File folder, output folder
+	  * Returns:	writer for the part file
+	  */
+	static BufferedWriter openPartFile(File folder)
+		throws IOException
+	{
+		if(!folder.isDirectory() && !folder.mkdirs())
+			throw new IOException("Could not create folder " + folder);
+		return new BufferedWriter(new FileWriter(new File(folder, partFile)));
+	}
+}